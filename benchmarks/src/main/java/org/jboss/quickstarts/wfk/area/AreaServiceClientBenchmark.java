@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.area;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.jboss.resteasy.client.ClientResponse;
+import org.jboss.resteasy.client.ProxyFactory;
+import org.jboss.resteasy.plugins.providers.RegisterBuiltin;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Area lookups from 200 concurrent writers against a local stub of the upstream service, comparing the shared,
+ * pooled {@link AreaServiceClient} with the former client proxy built on every call.</p>
+ *
+ * <p>The stub answers instantly, so the scores show the client side cost: building proxies and opening connections.
+ * This benchmark lives in the area package to start the client the way the container does.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(200)
+@Fork(1)
+public class AreaServiceClientBenchmark {
+
+    private static final byte[] AREA = "{\"id\":201,\"state\":\"New Jersey\",\"abbr\":\"NJ\"}".getBytes(Charset.forName("UTF-8"));
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private String url;
+
+    private AreaServiceClient client;
+
+    @Setup
+    public void setUp() throws IOException {
+        serverThreads = Executors.newFixedThreadPool(64);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.createContext("/areas", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, AREA.length);
+                OutputStream body = exchange.getResponseBody();
+                body.write(AREA);
+                body.close();
+            }
+        });
+        server.setExecutor(serverThreads);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        RegisterBuiltin.register(ResteasyProviderFactory.getInstance());
+
+        System.setProperty("area.service.url", url);
+        System.setProperty("area.service.maxConnections", "200");
+        client = new AreaServiceClient();
+        client.init();
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.destroy();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Benchmark
+    public Area sharedClient() {
+        return client.getAreaById(201);
+    }
+
+    @Benchmark
+    public Area proxyPerCall() {
+        // What ContactService used to do on every create and update.
+        AreaService service = ProxyFactory.create(AreaService.class, url);
+        ClientResponse<Area> response = service.getAreaById(201);
+        try {
+            return response.getEntity();
+        } finally {
+            response.releaseConnection();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmarks;
+
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Cost of Booking.hashCode() and Booking.equals() when bookings are kept in large hash based collections, as in
+ * the Customer and Flight booking sets.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookingSetBenchmark {
+
+    @Param({"1000", "100000"})
+    int size;
+
+    private List<Booking> bookings;
+    private Set<Booking> set;
+    private Booking[] probes;
+
+    @Setup
+    public void setUp() {
+        bookings = Fixtures.bookings(size);
+        set = new HashSet<Booking>(bookings);
+
+        // Equal to, but not the same instances as, the bookings of the set, so that equals() has to compare fields.
+        probes = new Booking[1024];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = Fixtures.booking((long) i * size / probes.length);
+        }
+    }
+
+    @Benchmark
+    public Set<Booking> buildSet() {
+        return new HashSet<Booking>(bookings);
+    }
+
+    @Benchmark
+    public int lookUp() {
+        int found = 0;
+        for (Booking probe : probes) {
+            if (set.contains(probe)) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmarks;
+
+import org.jboss.quickstarts.wfk.flight.Flight;
+import org.jboss.quickstarts.wfk.util.CompareStrings;
+import org.jboss.quickstarts.wfk.util.CompareStringsValidator;
+import org.jboss.quickstarts.wfk.util.ConstraintValidatorHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>The @CompareStrings check on a Flight, with cached method handle readers and the two value comparison, against
+ * the former introspecting implementation. Run with <code>-prof gc</code> to see the allocation rate of each.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompareStringsBenchmark {
+
+    private CompareStringsValidator validator;
+    private LegacyCompareStrings legacy;
+    private Flight flight;
+
+    @Setup
+    public void setUp() {
+        CompareStrings annotation = Flight.class.getAnnotation(CompareStrings.class);
+
+        validator = new CompareStringsValidator();
+        validator.initialize(annotation);
+        legacy = new LegacyCompareStrings(annotation.propertyNames(), annotation.matchMode(), annotation.allowNull());
+
+        flight = Fixtures.flight(1);
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return validator.isValid(flight, null);
+    }
+
+    @Benchmark
+    public boolean legacyIsValid() {
+        return legacy.isValid(flight);
+    }
+
+    @Benchmark
+    public String getPropertyValue() {
+        return ConstraintValidatorHelper.getPropertyValue(String.class, "departure", flight);
+    }
+
+    @Benchmark
+    public String legacyGetPropertyValue() {
+        return LegacyCompareStrings.getPropertyValue(String.class, "departure", flight);
+    }
+}
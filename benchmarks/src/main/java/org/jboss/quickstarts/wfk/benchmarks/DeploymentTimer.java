@@ -0,0 +1,158 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Times the deployment of wars on a running JBoss EAP 6 standalone server, to compare builds of the application,
+ * such as those before and after the Swagger specification was generated at build time rather than scanned for at
+ * startup. It complements {@link SwaggerBenchmark}, which times the scan alone, with everything a deployment does.</p>
+ *
+ * <p>Each war is deployed in turn, the given number of rounds, through the deployment scanner: it is copied into
+ * standalone/deployments and undeployed again once its <code>.deployed</code> marker appears. The time of a deployment
+ * is read from server.log, from the "Starting deployment" message to the "Deployed" one, so that it does not include
+ * the scan interval. The median and the fastest time of each war are printed once all the rounds have run.</p>
+ *
+ * <p>For example, with scanning.war built from the last commit scanning for the specification at startup, and
+ * generated.war from the current one:</p>
+ *
+ * <pre>
+ *     java -cp target/benchmarks.jar org.jboss.quickstarts.wfk.benchmarks.DeploymentTimer $JBOSS_HOME 10 \
+ *         /tmp/scanning.war /tmp/generated.war
+ * </pre>
+ */
+public final class DeploymentTimer {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+    private static final Pattern TIMESTAMP = Pattern.compile("^(\\d{2}):(\\d{2}):(\\d{2}),(\\d{3}) ");
+
+    private final File deployments;
+    private final File log;
+
+    private DeploymentTimer(File jbossHome) {
+        this.deployments = new File(jbossHome, "standalone/deployments");
+        this.log = new File(jbossHome, "standalone/log/server.log");
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: DeploymentTimer <jboss-home> <rounds> <war>...");
+            System.exit(1);
+        }
+        DeploymentTimer timer = new DeploymentTimer(new File(args[0]));
+        int rounds = Integer.parseInt(args[1]);
+
+        List<List<Long>> times = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            times.add(new ArrayList<Long>());
+        }
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 2; i < args.length; i++) {
+                long millis = timer.deploy(new File(args[i]));
+                times.get(i - 2).add(millis);
+                System.out.println("Round " + (round + 1) + ", " + args[i] + ": " + millis + " ms");
+            }
+        }
+
+        for (int i = 2; i < args.length; i++) {
+            List<Long> sorted = times.get(i - 2);
+            Collections.sort(sorted);
+            System.out.println(args[i] + ": median " + sorted.get(sorted.size() / 2) + " ms, fastest " + sorted.get(0)
+                    + " ms, over " + sorted.size() + " deployments");
+        }
+    }
+
+    /**
+     * <p>Deploys the war, waits for it to be deployed, undeploys it, and returns how long the deployment took.</p>
+     */
+    private long deploy(File war) throws IOException, InterruptedException {
+        String name = war.getName();
+        File deployed = new File(deployments, name);
+        long offset = log.length();
+
+        Files.copy(war.toPath(), deployed.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        File failed = new File(deployments, name + ".failed");
+        if (await(new File(deployments, name + ".deployed"), failed) == failed) {
+            throw new IllegalStateException(name + " failed to deploy, see " + log);
+        }
+        long millis = elapsed(offset, "Starting deployment of \"" + name + "\"", "Deployed \"" + name + "\"");
+
+        // Removing the marker undeploys the war, then the war itself can go.
+        Files.delete(new File(deployments, name + ".deployed").toPath());
+        File undeployed = new File(deployments, name + ".undeployed");
+        await(undeployed, null);
+        Files.delete(deployed.toPath());
+        Files.deleteIfExists(undeployed.toPath());
+        return millis;
+    }
+
+    private static File await(File marker, File failure) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (System.currentTimeMillis() < deadline) {
+            if (marker.exists()) {
+                return marker;
+            }
+            if (failure != null && failure.exists()) {
+                return failure;
+            }
+            Thread.sleep(50);
+        }
+        throw new IllegalStateException("Timed out waiting for " + marker);
+    }
+
+    /**
+     * <p>Reads the log written since the offset, and returns the time between the lines holding the two messages.</p>
+     */
+    private long elapsed(long offset, String start, String end) throws IOException {
+        Long started = null;
+        try (RandomAccessFile in = new RandomAccessFile(log, "r")) {
+            in.seek(offset);
+            for (String line; (line = in.readLine()) != null; ) {
+                line = new String(line.getBytes("ISO-8859-1"), UTF_8);
+                if (started == null && line.contains(start)) {
+                    started = timeOf(line);
+                } else if (started != null && line.contains(end)) {
+                    long millis = timeOf(line) - started;
+                    return millis < 0 ? millis + TimeUnit.DAYS.toMillis(1) : millis; //across midnight
+                }
+            }
+        }
+        throw new IllegalStateException("No \"" + start + "\" and \"" + end + "\" messages found in " + log);
+    }
+
+    private static long timeOf(String line) {
+        Matcher matcher = TIMESTAMP.matcher(line);
+        if (!matcher.find()) {
+            throw new IllegalStateException("No timestamp at the start of: " + line);
+        }
+        return ((Long.parseLong(matcher.group(1)) * 60 + Long.parseLong(matcher.group(2))) * 60
+                + Long.parseLong(matcher.group(3))) * 1000 + Long.parseLong(matcher.group(4));
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmarks;
+
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.jboss.quickstarts.wfk.customer.Customer;
+import org.jboss.quickstarts.wfk.flight.Flight;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * <p>Builds valid sample entities, as they would be received by or returned from the REST endpoints.</p>
+ */
+final class Fixtures {
+
+    private static final String[] AIRPORTS = {"NCL", "ATH", "NYC", "SOT", "DNK", "COH", "LHR", "CDG"};
+
+    private Fixtures() {
+    }
+
+    static Flight flight(long id) {
+        String departure = AIRPORTS[(int) (id % AIRPORTS.length)];
+        String destination = AIRPORTS[(int) ((id + 1) % AIRPORTS.length)];
+        return new Flight(id, String.format("GR%03d", id % 1000), departure, destination);
+    }
+
+    static Customer customer(long id) {
+        return new Customer(id, "Georgios Rovolis", "customer" + id + "@example.com", "07871545186");
+    }
+
+    static Booking booking(long id) {
+        // One flight per thousand bookings, each booked on a different day, so that every booking is distinct.
+        Booking booking = new Booking(customer(id % 100), flight(id / 1000), daysFromNow(1 + (int) (id % 1000)));
+        booking.setId(id);
+        return booking;
+    }
+
+    static Contact contact(long id) {
+        Contact contact = new Contact();
+        contact.setId(id);
+        contact.setFirstName("John");
+        contact.setLastName("Smith");
+        contact.setEmail("contact" + id + "@example.com");
+        contact.setPhoneNumber("(201) 555-0123");
+        contact.setBirthDate(daysFromNow(-10000));
+        contact.setState("New Jersey");
+        return contact;
+    }
+
+    static List<Booking> bookings(int size) {
+        List<Booking> bookings = new ArrayList<Booking>(size);
+        for (int i = 0; i < size; i++) {
+            bookings.add(booking(i));
+        }
+        return bookings;
+    }
+
+    static List<Customer> customers(int size) {
+        List<Customer> customers = new ArrayList<Customer>(size);
+        for (int i = 0; i < size; i++) {
+            customers.add(customer(i));
+        }
+        return customers;
+    }
+
+    static List<Flight> flights(int size) {
+        List<Flight> flights = new ArrayList<Flight>(size);
+        for (int i = 0; i < size; i++) {
+            flights.add(flight(i));
+        }
+        return flights;
+    }
+
+    static Date daysFromNow(int days) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_MONTH, days);
+        return calendar.getTime();
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Insert throughput on H2, the database of the bundled example datasource, with the statements Hibernate issues
+ * for each id generation strategy.</p>
+ *
+ * <p><code>identity</code> is the former mapping: each row is inserted on its own and its generated key read back.
+ * <code>pooledSequence</code> is the current mapping: a sequence value is fetched once per {@link #ALLOCATION_SIZE} rows,
+ * as the pooled-lo optimizer does, and the rows are sent in JDBC batches of the same size. Scores are rows per
+ * second.</p>
+ *
+ * @see PersistBenchmark the same comparison through Hibernate
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InsertBenchmark {
+
+    static final int ROWS = 1000;
+    static final int ALLOCATION_SIZE = 50;
+
+    private static final String COLUMNS = "(customer_id, flight_id, booking_date)";
+
+    private Connection connection;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:insert-benchmark;DB_CLOSE_DELAY=-1", "sa", "sa");
+        connection.setAutoCommit(false);
+
+        Statement statement = connection.createStatement();
+        statement.execute("create table booking_identity (id bigint generated by default as identity, "
+                + "customer_id bigint, flight_id bigint, booking_date date, primary key (id))");
+        statement.execute("create table booking_sequence (id bigint not null, "
+                + "customer_id bigint, flight_id bigint, booking_date date, primary key (id))");
+        statement.execute("create sequence booking_seq start with 1 increment by " + ALLOCATION_SIZE);
+        statement.close();
+        connection.commit();
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() throws SQLException {
+        Statement statement = connection.createStatement();
+        statement.execute("truncate table booking_identity");
+        statement.execute("truncate table booking_sequence");
+        statement.close();
+        connection.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        Statement statement = connection.createStatement();
+        statement.execute("shutdown");
+        statement.close();
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long identity() throws SQLException {
+        PreparedStatement insert = connection.prepareStatement(
+                "insert into booking_identity " + COLUMNS + " values (?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+        long lastId = 0;
+
+        for (int i = 0; i < ROWS; i++) {
+            bind(insert, i);
+            insert.executeUpdate();
+
+            ResultSet keys = insert.getGeneratedKeys();
+            keys.next();
+            lastId = keys.getLong(1);
+            keys.close();
+        }
+
+        insert.close();
+        connection.commit();
+        return lastId;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long pooledSequence() throws SQLException {
+        PreparedStatement nextValue = connection.prepareStatement("call next value for booking_seq");
+        PreparedStatement insert = connection.prepareStatement(
+                "insert into booking_sequence (id, customer_id, flight_id, booking_date) values (?, ?, ?, ?)");
+        long lastId = 0;
+
+        for (int i = 0; i < ROWS; i++) {
+            if (i % ALLOCATION_SIZE == 0) {
+                ResultSet value = nextValue.executeQuery();
+                value.next();
+                nextId = value.getLong(1);
+                value.close();
+            }
+
+            lastId = nextId++;
+            insert.setLong(1, lastId);
+            insert.setLong(2, i % 100);
+            insert.setLong(3, i / 100);
+            insert.setDate(4, new java.sql.Date(i * 86400000L));
+            insert.addBatch();
+
+            if ((i + 1) % ALLOCATION_SIZE == 0) {
+                insert.executeBatch();
+            }
+        }
+        insert.executeBatch();
+
+        nextValue.close();
+        insert.close();
+        connection.commit();
+        return lastId;
+    }
+
+    private static void bind(PreparedStatement insert, int i) throws SQLException {
+        insert.setLong(1, i % 100);
+        insert.setLong(2, i / 100);
+        insert.setDate(3, new java.sql.Date(i * 86400000L));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmarks;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.jboss.quickstarts.wfk.customer.Customer;
+import org.jboss.quickstarts.wfk.flight.Flight;
+import org.jboss.quickstarts.wfk.util.JacksonConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Cost of writing response bodies with the ObjectMapper the REST endpoints use, for single entities and for lists of
+ * {@link #LIST_SIZE} entities.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    static final int LIST_SIZE = 10000;
+
+    private ObjectMapper mapper;
+
+    private Flight flight;
+    private Customer customer;
+    private Booking booking;
+    private Contact contact;
+
+    private List<Flight> flights;
+    private List<Customer> customers;
+    private List<Booking> bookings;
+
+    @Setup
+    public void setUp() {
+        mapper = new JacksonConfig().getContext(Object.class);
+
+        flight = Fixtures.flight(1);
+        customer = Fixtures.customer(1);
+        booking = Fixtures.booking(1);
+        contact = Fixtures.contact(1);
+
+        flights = Fixtures.flights(LIST_SIZE);
+        customers = Fixtures.customers(LIST_SIZE);
+        bookings = Fixtures.bookings(LIST_SIZE);
+    }
+
+    @Benchmark
+    public byte[] writeFlight() throws IOException {
+        return mapper.writeValueAsBytes(flight);
+    }
+
+    @Benchmark
+    public byte[] writeCustomer() throws IOException {
+        return mapper.writeValueAsBytes(customer);
+    }
+
+    @Benchmark
+    public byte[] writeBooking() throws IOException {
+        return mapper.writeValueAsBytes(booking);
+    }
+
+    @Benchmark
+    public byte[] writeContact() throws IOException {
+        return mapper.writeValueAsBytes(contact);
+    }
+
+    @Benchmark
+    public byte[] writeFlightList() throws IOException {
+        return mapper.writeValueAsBytes(flights);
+    }
+
+    @Benchmark
+    public byte[] writeCustomerList() throws IOException {
+        return mapper.writeValueAsBytes(customers);
+    }
+
+    @Benchmark
+    public byte[] writeBookingList() throws IOException {
+        return mapper.writeValueAsBytes(bookings);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmarks;
+
+import org.jboss.quickstarts.wfk.customer.Customer;
+import org.jboss.quickstarts.wfk.flight.Flight;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.persistence.UniqueConstraint;
+import java.util.Date;
+
+/**
+ * <p>The mapping {@link org.jboss.quickstarts.wfk.booking.Booking} had before its ids came from a pooled sequence: the
+ * same columns and constraints, with an identity id, for {@link PersistBenchmark} to compare against.</p>
+ */
+@Entity
+@Table(name = "legacy_booking", uniqueConstraints = @UniqueConstraint(columnNames = {"flight_id", "booking_date"}))
+public class LegacyBooking {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "customer_id")
+    private Customer customer;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "flight_id")
+    private Flight flight;
+
+    @Temporal(TemporalType.DATE)
+    @Column(name = "booking_date", nullable = false)
+    private Date bookingDate;
+
+    public LegacyBooking() {
+    }
+
+    public LegacyBooking(Customer customer, Flight flight, Date bookingDate) {
+        this.customer = customer;
+        this.flight = flight;
+        this.bookingDate = bookingDate;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmarks;
+
+import org.jboss.quickstarts.wfk.util.StringComparisonMode;
+
+import java.beans.IntrospectionException;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>Copy of the @CompareStrings check as it was before property readers were cached, kept as the baseline of
+ * {@link CompareStringsBenchmark}. It introspects the target class and lower cases and copies the values on every
+ * call.</p>
+ */
+final class LegacyCompareStrings {
+
+    private final String[] propertyNames;
+    private final StringComparisonMode comparisonMode;
+    private final boolean allowNull;
+
+    LegacyCompareStrings(String[] propertyNames, StringComparisonMode comparisonMode, boolean allowNull) {
+        this.propertyNames = propertyNames;
+        this.comparisonMode = comparisonMode;
+        this.allowNull = allowNull;
+    }
+
+    boolean isValid(Object target) {
+        boolean isValid = true;
+        List<String> propertyValues = new ArrayList<String>(propertyNames.length);
+        for (int i = 0; i < propertyNames.length; i++) {
+            String propertyValue = getPropertyValue(String.class, propertyNames[i], target);
+            if (propertyValue == null) {
+                if (!allowNull) {
+                    isValid = false;
+                    break;
+                }
+            } else {
+                propertyValues.add(propertyValue);
+            }
+        }
+
+        if (isValid) {
+            isValid = isValid(propertyValues, comparisonMode);
+        }
+        return isValid;
+    }
+
+    static <T> T getPropertyValue(Class<T> requiredType, String propertyName, Object instance) {
+        T returnValue = null;
+        try {
+            PropertyDescriptor descriptor = new PropertyDescriptor(propertyName, instance.getClass());
+            Method readMethod = descriptor.getReadMethod();
+            if (readMethod == null) {
+                throw new IllegalStateException("Property '" + propertyName + "' of " + instance.getClass().getName() + " is not readable!");
+            }
+            if (requiredType.isAssignableFrom(readMethod.getReturnType())) {
+                try {
+                    Object propertyValue = readMethod.invoke(instance);
+                    returnValue = requiredType.cast(propertyValue);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (IntrospectionException e) {
+            throw new IllegalArgumentException("Property '" + propertyName + "' is not defined in " + instance.getClass().getName() + "!", e);
+        }
+        return returnValue;
+    }
+
+    static boolean isValid(Collection<String> propertyValues, StringComparisonMode comparisonMode) {
+        boolean ignoreCase = false;
+        switch (comparisonMode) {
+        case EQUAL_IGNORE_CASE:
+        case NOT_EQUAL_IGNORE_CASE:
+            ignoreCase = true;
+        }
+
+        List<String> values = new ArrayList<String>(propertyValues.size());
+        for (String propertyValue : propertyValues) {
+            if (ignoreCase) {
+                values.add(propertyValue.toLowerCase());
+            } else {
+                values.add(propertyValue);
+            }
+        }
+
+        switch (comparisonMode) {
+        case EQUAL:
+        case EQUAL_IGNORE_CASE:
+            Set<String> uniqueValues = new HashSet<String>(values);
+            return uniqueValues.size() == 1;
+        case NOT_EQUAL:
+        case NOT_EQUAL_IGNORE_CASE:
+            Set<String> allValues = new HashSet<String>(values);
+            return allValues.size() == values.size();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmarks;
+
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.booking.BookingView;
+import org.jboss.quickstarts.wfk.customer.Customer;
+import org.jboss.quickstarts.wfk.customer.CustomerView;
+import org.jboss.quickstarts.wfk.flight.Flight;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Cost of reading a list of {@link #ROWS} rows on H2, through Hibernate with the mappings and named queries of the
+ * application, as managed entities and as the read-only views the list endpoints return.</p>
+ *
+ * <p>Each operation runs in its own session and transaction, as a request does. The <code>*Entities</code> benchmarks
+ * load the rows as entities, which the session keeps a snapshot of and dirty checks when the transaction commits. The
+ * <code>*Views</code> benchmarks read the same columns with the constructor expression queries, so the session holds
+ * nothing. Run them with <code>-prof gc</code> to compare the heap allocated per list, reported as
+ * <code>gc.alloc.rate.norm</code>, next to the time per list.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class ListBenchmark {
+
+    static final int ROWS = 100000;
+
+    /** Number of customers and of flights the bookings are spread over. */
+    static final int OWNERS = 100;
+
+    private SessionFactory sessionFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(Customer.class)
+                .addAnnotatedClass(Flight.class)
+                .addAnnotatedClass(Booking.class)
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.connection.driver_class", "org.h2.Driver")
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:list-benchmark;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.connection.password", "sa")
+                .setProperty("hibernate.hbm2ddl.auto", "create")
+                .setProperty("hibernate.cache.use_second_level_cache", "false")
+                .setProperty("hibernate.cache.use_query_cache", "false")
+                .setProperty("javax.persistence.sharedCache.mode", "NONE")
+                .setProperty("javax.persistence.validation.mode", "none")
+                .buildSessionFactory();
+
+        Connection connection = DriverManager.getConnection("jdbc:h2:mem:list-benchmark", "sa", "sa");
+        connection.setAutoCommit(false);
+        PreparedStatement customer = connection.prepareStatement(
+                "insert into customer (id, name, email, phone_number, version) values (?, ?, ?, ?, 0)");
+        PreparedStatement flight = connection.prepareStatement(
+                "insert into flight (id, number, departure, destination, version) values (?, ?, ?, ?, 0)");
+        PreparedStatement booking = connection.prepareStatement(
+                "insert into booking (id, customer_id, flight_id, booking_date) values (?, ?, ?, ?)");
+
+        for (int i = 1; i <= ROWS; i++) {
+            customer.setLong(1, i);
+            customer.setString(2, "Customer " + (char) ('a' + i % 26));
+            customer.setString(3, "customer" + i + "@example.com");
+            customer.setString(4, "07871545186");
+            customer.addBatch();
+
+            if (i <= OWNERS) {
+                flight.setLong(1, i);
+                flight.setString(2, String.format("GR%03d", i));
+                flight.setString(3, "NCL");
+                flight.setString(4, "ATH");
+                flight.addBatch();
+            }
+
+            // Each flight is booked on ROWS / OWNERS different days, so that (flight_id, booking_date) stays unique.
+            booking.setLong(1, i);
+            booking.setLong(2, 1 + i % OWNERS);
+            booking.setLong(3, 1 + i / (ROWS / OWNERS) % OWNERS);
+            booking.setDate(4, new java.sql.Date((i % (ROWS / OWNERS)) * 86400000L));
+            booking.addBatch();
+
+            if (i % 1000 == 0) {
+                customer.executeBatch();
+                flight.executeBatch();
+                booking.executeBatch();
+            }
+        }
+        customer.executeBatch();
+        flight.executeBatch();
+        booking.executeBatch();
+        connection.commit();
+        connection.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public int customerEntities() {
+        Session session = sessionFactory.openSession();
+        return list(session, session.getNamedQuery(Customer.FIND_ALL), Customer.class);
+    }
+
+    @Benchmark
+    public int customerViews() {
+        Session session = sessionFactory.openSession();
+        return list(session, session.getNamedQuery(Customer.FIND_PAGE)
+                .setParameter("name", "")
+                .setParameter("id", Long.valueOf(0))
+                .setMaxResults(ROWS), CustomerView.class);
+    }
+
+    @Benchmark
+    public int bookingEntities() {
+        Session session = sessionFactory.openSession();
+        return list(session, session.getNamedQuery(Booking.FIND_ALL), Booking.class);
+    }
+
+    @Benchmark
+    public int bookingViews() {
+        Session session = sessionFactory.openSession();
+        return list(session, session.getNamedQuery(Booking.FIND_PAGE)
+                .setParameter("after", Long.valueOf(0))
+                .setMaxResults(ROWS), BookingView.class);
+    }
+
+    /**
+     * <p>Runs the query in a transaction, as the transaction of a request would, and closes the session.</p>
+     */
+    private static int list(Session session, Query query, Class<?> rowType) {
+        try {
+            session.beginTransaction();
+            List<?> rows = query.list();
+            if (!rowType.isInstance(rows.get(0))) {
+                throw new IllegalStateException("Expected rows of " + rowType + ", got " + rows.get(0).getClass());
+            }
+            session.getTransaction().commit(); // flushes, which dirty checks every entity loaded
+            return rows.size();
+        } finally {
+            session.close();
+        }
+    }
+}
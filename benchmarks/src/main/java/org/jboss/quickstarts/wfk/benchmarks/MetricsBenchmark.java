@@ -0,0 +1,69 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmarks;
+
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.booking.BookingRestService;
+import org.jboss.quickstarts.wfk.metrics.ApiMetrics;
+import org.jboss.quickstarts.wfk.metrics.EndpointMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Cost the metrics add to a request: what the MetricsInterceptor and the MetricsFilter do, from the first clock read
+ * to the request recorded in the histogram and status counters of its resource method. It has to stay well under a
+ * microsecond. Run it with <code>-prof gc</code> to check that it allocates nothing, and with <code>-t</code> to see
+ * the cost of concurrent requests to the same resource method.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class MetricsBenchmark {
+
+    private Method resourceMethod;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        resourceMethod = BookingRestService.class.getMethod("createBooking", Booking.class);
+    }
+
+    @Benchmark
+    public EndpointMetrics record() {
+        long start = System.nanoTime();
+        ApiMetrics.clear();
+        ApiMetrics.dispatched(resourceMethod);
+        EndpointMetrics endpoint = ApiMetrics.take();
+        endpoint.record(System.nanoTime() - start, 201);
+        return endpoint;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmarks;
+
+import org.jboss.quickstarts.wfk.search.NameIndex;
+import org.jboss.quickstarts.wfk.search.NameMatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Latency of a typeahead query on the name index, for one, two and three letter prefixes, against an index of a
+ * million two-word names. The index has to answer well under a millisecond whatever the number of names.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class NameIndexBenchmark {
+
+    private static final String[] SYLLABLES = {"an", "bel", "cor", "da", "el", "fi", "gor", "ha", "is", "jo", "ka", "lo",
+            "mar", "ne", "os", "pa", "qui", "ro", "sa", "te", "ul", "vi", "wen", "xa", "yo", "ze"};
+
+    @Param({"1000000"})
+    int size;
+
+    @Param({"r", "ro", "rob"})
+    String prefix;
+
+    private NameIndex index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        index = new NameIndex();
+        for (long id = 1; id <= size; id++) {
+            index.put(new NameMatch(NameMatch.Type.CUSTOMER, id, word(random) + " " + word(random)));
+        }
+    }
+
+    @Benchmark
+    public List<NameMatch> searchTop10() {
+        return index.search(prefix, 10);
+    }
+
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        int syllables = 2 + random.nextInt(2);
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+        return word.toString();
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmarks;
+
+import org.hibernate.ejb.Ejb3Configuration;
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.customer.Customer;
+import org.jboss.quickstarts.wfk.flight.Flight;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Insert throughput of bookings persisted through an {@link EntityManagerFactory} on H2, the database of the bundled
+ * example datasource, so that it includes what Hibernate does around the statements measured by
+ * {@link InsertBenchmark}: id generation, flushing and JDBC batching.</p>
+ *
+ * <p><code>identity</code> persists {@link LegacyBooking}, the former identity mapping, with the former persistence
+ * properties. <code>pooledSequence</code> persists {@link Booking} as it is mapped now, with the properties of
+ * persistence.xml: pooled-lo sequence ids, and inserts ordered and sent in batches of {@link #BATCH_SIZE}. Both flush
+ * and clear the persistence context every {@link #BATCH_SIZE} bookings, as {@code BookingRepository.createBatch} does,
+ * and commit once per invocation. Scores are bookings per second.</p>
+ *
+ * <p>JPA 2.0 has no programmatic bootstrap, so the two factories are built with Hibernate's {@link Ejb3Configuration}
+ * rather than from a persistence.xml, each on its own in-memory database.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistBenchmark {
+
+    static final int ROWS = 1000;
+    static final int BATCH_SIZE = 50;
+
+    private static final int CUSTOMERS = 100;
+    private static final long DAY = 86400000L;
+
+    private EntityManagerFactory legacy;
+    private EntityManagerFactory pooled;
+
+    private long[] legacyCustomers;
+    private long legacyFlight;
+    private long[] pooledCustomers;
+    private long pooledFlight;
+
+    /** Every booking is on a day of its own, so that none breaks the unique flight and date constraint. */
+    private long day;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.put("hibernate.id.new_generator_mappings", "false");
+        properties.put("hibernate.jdbc.batch_size", String.valueOf(BATCH_SIZE));
+        legacy = factory("persist-legacy", properties);
+
+        properties = new Properties();
+        properties.put("hibernate.id.new_generator_mappings", "true");
+        properties.put("hibernate.id.optimizer.pooled.prefer_lo", "true");
+        properties.put("hibernate.jdbc.batch_size", String.valueOf(BATCH_SIZE));
+        properties.put("hibernate.jdbc.batch_versioned_data", "true");
+        properties.put("hibernate.order_inserts", "true");
+        properties.put("hibernate.order_updates", "true");
+        pooled = factory("persist-pooled", properties);
+
+        legacyCustomers = customers(legacy);
+        legacyFlight = flight(legacy);
+        pooledCustomers = customers(pooled);
+        pooledFlight = flight(pooled);
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() {
+        day = 0;
+        delete(legacy, "DELETE FROM LegacyBooking");
+        delete(pooled, "DELETE FROM Booking");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        legacy.close();
+        pooled.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long identity() {
+        EntityManager em = legacy.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            long lastId = 0;
+            for (int i = 0; i < ROWS; i++) {
+                LegacyBooking booking = new LegacyBooking(em.getReference(Customer.class, legacyCustomers[i % CUSTOMERS]),
+                        em.getReference(Flight.class, legacyFlight), new Date(day++ * DAY));
+                em.persist(booking);
+                lastId = booking.getId();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            em.getTransaction().commit();
+            return lastId;
+        } finally {
+            em.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long pooledSequence() {
+        EntityManager em = pooled.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            long lastId = 0;
+            for (int i = 0; i < ROWS; i++) {
+                Booking booking = new Booking(em.getReference(Customer.class, pooledCustomers[i % CUSTOMERS]),
+                        em.getReference(Flight.class, pooledFlight), new Date(day++ * DAY));
+                em.persist(booking);
+                lastId = booking.getId();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            em.getTransaction().commit();
+            return lastId;
+        } finally {
+            em.close();
+        }
+    }
+
+    private static EntityManagerFactory factory(String database, Properties mapping) {
+        Properties properties = new Properties();
+        properties.put("hibernate.connection.driver_class", "org.h2.Driver");
+        properties.put("hibernate.connection.url", "jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1");
+        properties.put("hibernate.connection.username", "sa");
+        properties.put("hibernate.connection.password", "sa");
+        properties.put("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        properties.put("hibernate.jdbc.use_get_generated_keys", "false");
+        properties.put("javax.persistence.validation.mode", "none");
+        properties.putAll(mapping);
+
+        return new Ejb3Configuration()
+                .addAnnotatedClass(Customer.class)
+                .addAnnotatedClass(Flight.class)
+                .addAnnotatedClass(Booking.class)
+                .addAnnotatedClass(LegacyBooking.class)
+                .addProperties(properties)
+                .buildEntityManagerFactory();
+    }
+
+    private static long[] customers(EntityManagerFactory factory) {
+        EntityManager em = factory.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            long[] ids = new long[CUSTOMERS];
+            for (int i = 0; i < CUSTOMERS; i++) {
+                Customer customer = new Customer(null, "Georgios Rovolis", "customer" + i + "@example.com", "07871545186");
+                em.persist(customer);
+                ids[i] = customer.getId();
+            }
+            em.getTransaction().commit();
+            return ids;
+        } finally {
+            em.close();
+        }
+    }
+
+    private static long flight(EntityManagerFactory factory) {
+        EntityManager em = factory.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Flight flight = new Flight(null, "GR502", "NCL", "ATH");
+            em.persist(flight);
+            em.getTransaction().commit();
+            return flight.getId();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static void delete(EntityManagerFactory factory, String query) {
+        EntityManager em = factory.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createQuery(query).executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+}
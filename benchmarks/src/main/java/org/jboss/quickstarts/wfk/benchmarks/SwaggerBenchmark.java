@@ -0,0 +1,74 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmarks;
+
+import io.swagger.jaxrs.config.BeanConfig;
+import io.swagger.util.Json;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Startup cost of the Swagger specification, in a fresh JVM each time, as when the application is deployed.</p>
+ *
+ * <p><code>scan</code> is what the application used to do: build it with a scanning <code>BeanConfig</code> over the
+ * resource packages and serialize it on the first request. <code>load</code> is what SwaggerSpecRestService does with
+ * the specification generated at build time: read it and set its base path. The difference is the time saved on every
+ * deployment.</p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class SwaggerBenchmark {
+
+    private static final String RESOURCE_PACKAGES = "org.jboss.quickstarts.wfk.customer,org.jboss.quickstarts.wfk.flight,"
+            + "org.jboss.quickstarts.wfk.booking,org.jboss.quickstarts.wfk.search";
+
+    @Benchmark
+    public byte[] scan() throws IOException {
+        BeanConfig beanConfig = new BeanConfig();
+        beanConfig.setVersion("0.1.0");
+        beanConfig.setSchemes(new String[]{"http"});
+        beanConfig.setBasePath("/jboss-contacts-swagger/api");
+        beanConfig.setResourcePackage(RESOURCE_PACKAGES);
+        beanConfig.setScan(true);
+        return Json.mapper().writeValueAsBytes(beanConfig.getSwagger());
+    }
+
+    @Benchmark
+    public byte[] load() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode root;
+        try (InputStream in = SwaggerBenchmark.class.getResourceAsStream("/META-INF/swagger.json")) {
+            root = (ObjectNode) mapper.readTree(in);
+        }
+        root.put("basePath", "/jboss-contacts-swagger/api");
+        return mapper.writeValueAsBytes(root);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmarks;
+
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.jboss.quickstarts.wfk.customer.Customer;
+import org.jboss.quickstarts.wfk.flight.Flight;
+import org.jboss.quickstarts.wfk.util.CompareStrings;
+import org.jboss.quickstarts.wfk.util.CompareStringsValidator;
+import org.jboss.quickstarts.wfk.util.ConstraintValidatorHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Cost of the bean validation run on every write: the custom @CompareStrings constraint on its own, the property
+ * lookup it relies on, and a complete Hibernate Validator pass over each entity.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private Validator validator;
+    private CompareStringsValidator compareStrings;
+
+    private Flight flight;
+    private Customer customer;
+    private Booking booking;
+    private Contact contact;
+
+    @Setup
+    public void setUp() {
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+        compareStrings = new CompareStringsValidator();
+        compareStrings.initialize(Flight.class.getAnnotation(CompareStrings.class));
+
+        flight = Fixtures.flight(1);
+        customer = Fixtures.customer(1);
+        booking = Fixtures.booking(1);
+        contact = Fixtures.contact(1);
+    }
+
+    @Benchmark
+    public boolean compareStringsIsValid() {
+        // A valid Flight never touches the ConstraintValidatorContext.
+        return compareStrings.isValid(flight, null);
+    }
+
+    @Benchmark
+    public String getPropertyValue() {
+        return ConstraintValidatorHelper.getPropertyValue(String.class, "departure", flight);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Flight>> validateFlight() {
+        return validator.validate(flight);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Customer>> validateCustomer() {
+        return validator.validate(customer);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Booking>> validateBooking() {
+        return validator.validate(booking);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Contact>> validateContact() {
+        return validator.validate(contact);
+    }
+}
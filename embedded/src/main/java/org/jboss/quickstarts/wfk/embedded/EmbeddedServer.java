@@ -0,0 +1,222 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.embedded;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.FilterMapping;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.jboss.quickstarts.wfk.ContactServiceApplication;
+import org.jboss.quickstarts.wfk.metrics.MetricsFilter;
+import org.jboss.quickstarts.wfk.util.ApiOriginFilter;
+import org.jboss.quickstarts.wfk.util.IdempotencyFilter;
+import org.jboss.resteasy.plugins.server.servlet.HttpServlet30Dispatcher;
+import org.jboss.resteasy.spi.ResteasyDeployment;
+
+import javax.ejb.embeddable.EJBContainer;
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.inject.Inject;
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.ws.rs.Path;
+import java.io.File;
+import java.util.EnumSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * <p>Runs the REST API in-process, without an application server.</p>
+ *
+ * <p>The classes of the application are booted in an embedded OpenEJB container, which provides the same CDI wiring,
+ * EJBs, timers and JTA transactions as JBoss EAP, with the persistence unit on Hibernate and an in-memory H2 database.
+ * The resources and providers listed by {@link ContactServiceApplication} are then taken from the container, so that
+ * they are the same EJBs and CDI beans as in a deployment, and served by RESTEasy from an embedded Jetty under
+ * <code>/jboss-contacts-swagger/api</code>, behind the {@link MetricsFilter}, the {@link ApiOriginFilter} and the
+ * {@link IdempotencyFilter}, mapped as in web.xml.</p>
+ *
+ * <p>It starts in a fraction of the time of a deployment, for scale-out, load tests and benchmark runs: the startup
+ * singletons only start timers, and the area code table and the email filters are loaded on them once the API is
+ * served, answering from the area service and the database until then. The time taken to start is logged and
+ * available from {@link #getStartupMillis()}. The port is given as the only argument, 8080 by default.</p>
+ */
+public class EmbeddedServer {
+
+    private static final Logger log = Logger.getLogger(EmbeddedServer.class.getName());
+
+    private static final String CONTEXT_PATH = "/jboss-contacts-swagger";
+    private static final String API_PATH = "/api";
+
+    @Inject
+    private BeanManager beanManager;
+
+    private EJBContainer container;
+    private ResteasyDeployment deployment;
+    private Server server;
+    private long startupMillis;
+
+    public static void main(String[] args) throws Exception {
+        final EmbeddedServer embedded = new EmbeddedServer();
+        embedded.start(args.length > 0 ? Integer.parseInt(args[0]) : 8080);
+
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                embedded.stop();
+            }
+        });
+
+        log.info("EmbeddedServer.main() - Serving " + embedded.getApiUrl());
+        embedded.server.join();
+    }
+
+    /**
+     * <p>Boots the application and starts serving its REST API.</p>
+     *
+     * @param port The HTTP port, or 0 for any free port
+     */
+    public void start(int port) throws Exception {
+        long start = System.nanoTime();
+        container = EJBContainer.createEJBContainer(containerProperties());
+        container.getContext().bind("inject", this);
+
+        deployment = new ResteasyDeployment();
+        register(new ContactServiceApplication());
+        deployment.start();
+
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+        context.setContextPath(CONTEXT_PATH);
+        context.setAttribute(ResteasyDeployment.class.getName(), deployment);
+
+        ServletHolder servlet = new ServletHolder(HttpServlet30Dispatcher.class);
+        servlet.setInitParameter("resteasy.servlet.mapping.prefix", API_PATH);
+        servlet.setAsyncSupported(true);
+        context.addServlet(servlet, API_PATH + "/*");
+
+        FilterHolder metrics = new FilterHolder(MetricsFilter.class);
+        metrics.setAsyncSupported(true);
+        context.addFilter(metrics, API_PATH + "/*", EnumSet.of(DispatcherType.REQUEST));
+
+        FilterHolder filter = new FilterHolder(ApiOriginFilter.class);
+        filter.setAsyncSupported(true);
+        context.addFilter(filter, API_PATH + "/*", EnumSet.of(DispatcherType.REQUEST));
+
+        // The bean, since the filter is injected with its store.
+        FilterHolder idempotency = new FilterHolder((Filter) referenceOf(IdempotencyFilter.class));
+        idempotency.setName("idempotency");
+        FilterMapping idempotent = new FilterMapping();
+        idempotent.setFilterName("idempotency");
+        idempotent.setPathSpecs(new String[] { API_PATH + "/bookings", API_PATH + "/guestbookings",
+                API_PATH + "/customers" });
+        idempotent.setDispatcherTypes(EnumSet.of(DispatcherType.REQUEST));
+        context.getServletHandler().addFilter(idempotency, idempotent);
+
+        server = new Server(port);
+        server.setHandler(context);
+        server.start();
+
+        startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("EmbeddedServer.start() - Started in " + startupMillis + " ms");
+    }
+
+    public int getPort() {
+        return server.getConnectors()[0].getLocalPort();
+    }
+
+    /**
+     * @return How long {@link #start(int)} took, from booting the container to serving the API, in milliseconds
+     */
+    public long getStartupMillis() {
+        return startupMillis;
+    }
+
+    /**
+     * @return The URL the REST API is served at, such as <code>http://localhost:8080/jboss-contacts-swagger/api</code>
+     */
+    public String getApiUrl() {
+        return "http://localhost:" + getPort() + CONTEXT_PATH + API_PATH;
+    }
+
+    public void stop() {
+        try {
+            if (server != null) {
+                server.stop();
+            }
+        } catch (Exception e) {
+            log.warning("EmbeddedServer.stop() - Unable to stop the HTTP server: " + e.getMessage());
+        }
+        if (deployment != null) {
+            deployment.stop();
+        }
+        if (container != null) {
+            container.close();
+        }
+    }
+
+    /**
+     * <p>The configuration of the OpenEJB container: the classes of the application as its only module, the in-memory
+     * H2 datasource, and META-INF/embedded.persistence.xml in place of the persistence unit of JBoss EAP.</p>
+     */
+    private static Properties containerProperties() throws Exception {
+        Properties properties = new Properties();
+        properties.put(EJBContainer.MODULES,
+                new File(EmbeddedServer.class.getProtectionDomain().getCodeSource().getLocation().toURI()));
+        properties.put("openejb.altdd.prefix", "embedded");
+
+        properties.put("contactsDS", "new://Resource?type=DataSource");
+        properties.put("contactsDS.JdbcDriver", "org.h2.Driver");
+        properties.put("contactsDS.JdbcUrl", "jdbc:h2:mem:contacts;DB_CLOSE_DELAY=-1");
+        properties.put("contactsDS.UserName", "sa");
+        properties.put("contactsDS.Password", "sa");
+        properties.put("contactsDS.JtaManaged", "true");
+        return properties;
+    }
+
+    /**
+     * <p>Adds the resources and providers of the application to the RESTEasy deployment. Those which are beans of the
+     * application are registered as the references the container gives to them, the others (from libraries) as classes
+     * for RESTEasy to instantiate.</p>
+     */
+    private void register(ContactServiceApplication application) {
+        for (Class<?> type : application.getClasses()) {
+            Object reference = referenceOf(type);
+            boolean resource = type.isAnnotationPresent(Path.class);
+
+            if (reference == null) {
+                (resource ? deployment.getActualResourceClasses() : deployment.getActualProviderClasses()).add(type);
+            } else {
+                (resource ? deployment.getResources() : deployment.getProviders()).add(reference);
+            }
+        }
+        deployment.getProviders().addAll(application.getSingletons());
+    }
+
+    private Object referenceOf(Class<?> type) {
+        Set<Bean<?>> beans = beanManager.getBeans(type);
+        if (beans.isEmpty()) {
+            return null;
+        }
+
+        Bean<?> bean = beanManager.resolve(beans);
+        CreationalContext<?> creationalContext = beanManager.createCreationalContext(bean);
+        return beanManager.getReference(bean, type, creationalContext);
+    }
+}
@@ -0,0 +1,47 @@
+package org.jboss.quickstarts.wfk.embedded;
+
+import static org.junit.Assert.*;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * <p>Starts the embedded server on a free port, checks that it serves the REST API, and reports how long it took to
+ * start, failing if that exceeds <code>embedded.startup.limit</code> milliseconds (system property, default 2000).</p>
+ */
+public class EmbeddedServerTest {
+
+    private static final Logger log = Logger.getLogger(EmbeddedServerTest.class.getName());
+
+    private final EmbeddedServer server = new EmbeddedServer();
+
+    @After
+    public void stop() {
+        server.stop();
+    }
+
+    @Test
+    public void startsAndServesTheApi() throws Exception {
+        server.start(0);
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(server.getApiUrl() + "/flights").openConnection();
+        try {
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(connection.getContentType().startsWith("application/json"));
+            InputStream in = connection.getInputStream();
+            in.close();
+        } finally {
+            connection.disconnect();
+        }
+
+        long limit = Long.getLong("embedded.startup.limit", 2000);
+        log.info("EmbeddedServerTest - Started in " + server.getStartupMillis() + " ms");
+        assertTrue("Started in " + server.getStartupMillis() + " ms, more than " + limit + " ms",
+                server.getStartupMillis() <= limit);
+    }
+}
@@ -17,17 +17,20 @@
 package org.jboss.quickstarts.wfk;
 
 
-import io.swagger.jaxrs.config.BeanConfig;
 //import org.jboss.quickstarts.wfk.contact.ContactRestService;
 import org.jboss.quickstarts.wfk.booking.BookingRestService;
 import org.jboss.quickstarts.wfk.booking.GuestBookingRestService;
 import org.jboss.quickstarts.wfk.customer.CustomerRestService;
 import org.jboss.quickstarts.wfk.flight.FlightRestService;
+import org.jboss.quickstarts.wfk.metrics.MetricsInterceptor;
+import org.jboss.quickstarts.wfk.metrics.MetricsRestService;
+import org.jboss.quickstarts.wfk.search.NameSearchRestService;
 //import org.jboss.quickstarts.wfk.travelagent.TravelAgentRestService;
+import org.jboss.quickstarts.wfk.util.CacheStatisticsRestService;
 import org.jboss.quickstarts.wfk.util.JacksonConfig;
 import org.jboss.quickstarts.wfk.util.RestServiceExceptionHandler;
-import org.jboss.resteasy.plugins.providers.RegisterBuiltin;
-import org.jboss.resteasy.spi.ResteasyProviderFactory;
+import org.jboss.quickstarts.wfk.util.SerializedListWriter;
+import org.jboss.quickstarts.wfk.util.SwaggerSpecRestService;
 
 import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.core.Application;
@@ -41,53 +44,35 @@ import java.util.Set;
  * <p>
  * Resources are served relative to the servlet path specified in the {@link ApplicationPath} annotation.
  * </p>
+ *
+ * <p>
+ * The resources and providers are all listed here, so nothing is scanned for them. Neither is anything scanned for the
+ * Swagger documentation: swagger.json is generated when the application is built, from the packages listed in the
+ * configuration of the swagger-maven-plugin in pom.xml, and served by {@link SwaggerSpecRestService}.
+ * </p>
  */
 @ApplicationPath("/api")
 public class ContactServiceApplication extends Application {
 
-    public ContactServiceApplication() {
-        BeanConfig beanConfig = new BeanConfig();
-        beanConfig.setVersion("0.1.0");
-        beanConfig.setSchemes(new String[]{"http"});
-        
-        //Automatically detect the host
-        String isOpenshift = null;
- 
-        try {
-        	isOpenshift = System.getenv("IS_OPENSHIFT");
-        } catch (SecurityException e) {}
-        
-        if(isOpenshift != null) {
-        	beanConfig.setHost("contacts-810422.rhcloud.com");
-        } else {
-        	beanConfig.setHost("localhost:8080/jboss-contacts-swagger");
-        }
-        
-        beanConfig.setBasePath("/api");
-        //Add additional RESTService containing packages here, separated by commas:
-        // "org.jboss.quickstarts.wfk.contact, org.jboss.quickstarts.wfk.other"
-        beanConfig.setResourcePackage("org.jboss.quickstarts.wfk.customer,org.jboss.quickstarts.wfk.flight,org.jboss.quickstarts.wfk.booking,org.jboss.quickstarts.wfk.travelagent");
-        beanConfig.setScan(true);
-
-        //Do not edit below
-        RegisterBuiltin.register(ResteasyProviderFactory.getInstance());
-    }
-
     @Override
     public Set<Class<?>> getClasses() {
         Set<Class<?>> services = new HashSet<>();
 
-        //Add RESTful resources here as you create them
+        //Add RESTful resources here as you create them, and their package to the swagger-maven-plugin in pom.xml
         services.add(CustomerRestService.class);
         services.add(FlightRestService.class);
         services.add(BookingRestService.class);
         services.add(GuestBookingRestService.class);
+        services.add(NameSearchRestService.class);
         //services.add(TravelAgentRestService.class);
+        services.add(CacheStatisticsRestService.class);
+        services.add(MetricsRestService.class);
 
         //Do not edit below
         services.add(RestServiceExceptionHandler.class);
-        services.add(io.swagger.jaxrs.listing.ApiListingResource.class);
-        services.add(io.swagger.jaxrs.listing.SwaggerSerializers.class);
+        services.add(MetricsInterceptor.class);
+        services.add(SwaggerSpecRestService.class);
+        services.add(SerializedListWriter.class);
 
         return services;
     }
@@ -0,0 +1,155 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.area;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * <p>In-process table of US area codes, used to resolve the state of a phone number without calling the upstream
+ * {@link AreaService} on every write.</p>
+ *
+ * <p>The whole table is bulk loaded through {@link AreaServiceClient#getAreas()} in the background once the application
+ * has started, so that the deployment does not wait for the upstream service, and refreshed hourly. Lookups read a dense
+ * array indexed by the three digit code, so they neither block nor allocate. Until a load has succeeded, lookups fall
+ * back to a single {@link AreaServiceClient#getAreaById(int)} call.</p>
+ *
+ * <p>Concurrency is bean managed: a refresh builds a complete new table and publishes it with a single volatile write,
+ * so readers never see a partially populated table.</p>
+ *
+ * @see AreaServiceClient
+ * @see InvalidAreaCodeException
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class AreaCodeResolver {
+
+    /** Area codes have three digits, so a table of this size is indexed directly by the code. */
+    private static final int TABLE_SIZE = 1000;
+
+    @Inject
+    private @Named("logger") Logger log;
+
+    @Inject
+    private AreaServiceClient client;
+
+    @Resource
+    private TimerService timers;
+
+    private volatile String[] states;
+
+    @PostConstruct
+    void init() {
+        timers.createSingleActionTimer(0, new TimerConfig(null, false));
+    }
+
+    @Timeout
+    void load() {
+        refresh();
+    }
+
+    /**
+     * <p>Reloads the complete area code table from the upstream service.</p>
+     *
+     * <p>If the upstream service cannot be reached the previous table, if any, is kept.</p>
+     */
+    @Schedule(hour = "*", minute = "0", persistent = false)
+    void refresh() {
+        try {
+            List<Area> areas = client.getAreas();
+
+            String[] table = new String[TABLE_SIZE];
+            for (Area area : areas) {
+                if (area.getId() >= 0 && area.getId() < TABLE_SIZE) {
+                    table[area.getId()] = area.getState();
+                }
+            }
+            states = table;
+
+            log.info("AreaCodeResolver.refresh() - Loaded " + areas.size() + " area codes");
+        } catch (RuntimeException e) {
+            log.warning("AreaCodeResolver.refresh() - Unable to load area codes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * <p>Tells whether the area code table has been loaded, in which case lookups are answered locally.</p>
+     *
+     * @return true once a load has succeeded
+     */
+    public boolean isLoaded() {
+        return states != null;
+    }
+
+    /**
+     * <p>Returns the name of the state that the given area code belongs to.</p>
+     *
+     * @param areaCode The three digit area code, as returned by {@link #areaCodeOf(String)}
+     * @return The state of the area code
+     * @throws InvalidAreaCodeException If the area code does not exist
+     */
+    public String findStateByAreaCode(int areaCode) throws InvalidAreaCodeException {
+        String[] table = states;
+
+        if (table == null) {
+            // The table has not been loaded yet, so ask the upstream service for this one code.
+            return client.getAreaById(areaCode).getState();
+        }
+
+        String state = (areaCode >= 0 && areaCode < TABLE_SIZE) ? table[areaCode] : null;
+        if (state == null) {
+            throw new InvalidAreaCodeException("The area code provided does not exist");
+        }
+        return state;
+    }
+
+    /**
+     * <p>Extracts the area code from a phone number in the "(201) 555-0123" format accepted by Contact, without
+     * allocating.</p>
+     *
+     * @param phoneNumber The phone number
+     * @return The three digit area code, or -1 if the phone number does not start with one
+     */
+    public static int areaCodeOf(String phoneNumber) {
+        if (phoneNumber == null || phoneNumber.length() < 5 || phoneNumber.charAt(0) != '(' || phoneNumber.charAt(4) != ')') {
+            return -1;
+        }
+
+        int areaCode = 0;
+        for (int i = 1; i < 4; i++) {
+            char digit = phoneNumber.charAt(i);
+            if (digit < '0' || digit > '9') {
+                return -1;
+            }
+            areaCode = areaCode * 10 + (digit - '0');
+        }
+        return areaCode;
+    }
+}
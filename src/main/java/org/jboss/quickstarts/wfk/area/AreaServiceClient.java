@@ -0,0 +1,186 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.area;
+
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.jboss.quickstarts.wfk.util.SingleFlight;
+import org.jboss.resteasy.client.ClientResponse;
+import org.jboss.resteasy.client.ProxyFactory;
+import org.jboss.resteasy.client.core.executors.ApacheHttpClient4Executor;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.AsyncResult;
+import javax.ejb.Asynchronous;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>Application wide client for the upstream {@link AreaService}.</p>
+ *
+ * <p>A single RESTEasy client proxy is built when the application starts and shared by every caller. It runs on a
+ * pooled, keep-alive HTTP connection manager with connect and read timeouts, configured through system properties:</p>
+ *
+ * <ul>
+ *     <li><code>area.service.url</code> - base URL of the upstream service</li>
+ *     <li><code>area.service.connectTimeout</code> - connect timeout in milliseconds (default 2000)</li>
+ *     <li><code>area.service.readTimeout</code> - read timeout in milliseconds (default 5000)</li>
+ *     <li><code>area.service.maxConnections</code> - size of the connection pool (default 50)</li>
+ * </ul>
+ *
+ * <p>{@link #getAreaByIdAsync(int)} runs the lookup on the container's asynchronous EJB thread pool, so that callers
+ * can overlap the round trip with their own work and collect the result with {@link #await(Future)}.</p>
+ *
+ * <p>Concurrent lookups of the same area code, such as those of a burst of contacts written from the same area, share
+ * a single call to the upstream service through a {@link SingleFlight}.</p>
+ *
+ * @see AreaService
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class AreaServiceClient {
+
+    private static final String DEFAULT_URL = "http://states-100937864.rhcloud.com";
+
+    private final String url = System.getProperty("area.service.url", DEFAULT_URL);
+    private final int connectTimeout = Integer.getInteger("area.service.connectTimeout", 2000);
+    private final int readTimeout = Integer.getInteger("area.service.readTimeout", 5000);
+    private final int maxConnections = Integer.getInteger("area.service.maxConnections", 50);
+
+    private ClientConnectionManager connections;
+
+    private AreaService service;
+
+    private final SingleFlight<Integer, Area> lookups = new SingleFlight<>("area.lookup");
+
+    @PostConstruct
+    void init() {
+        PoolingClientConnectionManager pool = new PoolingClientConnectionManager();
+        pool.setMaxTotal(maxConnections);
+        pool.setDefaultMaxPerRoute(maxConnections);
+
+        HttpParams params = new BasicHttpParams();
+        HttpConnectionParams.setConnectionTimeout(params, connectTimeout);
+        HttpConnectionParams.setSoTimeout(params, readTimeout);
+
+        connections = pool;
+        service = ProxyFactory.create(AreaService.class, url, new ApacheHttpClient4Executor(new DefaultHttpClient(pool, params)));
+    }
+
+    @PreDestroy
+    void destroy() {
+        connections.shutdown();
+    }
+
+    /**
+     * <p>Fetches every area code known to the upstream service.</p>
+     *
+     * @return List of all Areas
+     */
+    public List<Area> getAreas() {
+        ClientResponse<List<Area>> response = service.getAreas();
+
+        try {
+            return response.getEntity();
+        } finally {
+            response.releaseConnection();
+        }
+    }
+
+    /**
+     * <p>Fetches a single area code from the upstream service.</p>
+     *
+     * @param id The three digit area code
+     * @return The Area with the given code
+     * @throws InvalidAreaCodeException If the upstream service does not know the area code
+     */
+    public Area getAreaById(final int id) throws InvalidAreaCodeException {
+        try {
+            return lookups.execute(id, new Callable<Area>() {
+                @Override
+                public Area call() {
+                    return fetchAreaById(id);
+                }
+            });
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Area lookup failed", e);
+        }
+    }
+
+    private Area fetchAreaById(int id) throws InvalidAreaCodeException {
+        ClientResponse<Area> response = service.getAreaById(id);
+
+        try {
+            if (response.getStatus() == 404) {
+                throw new InvalidAreaCodeException("The area code provided does not exist");
+            }
+            return response.getEntity();
+        } finally {
+            response.releaseConnection();
+        }
+    }
+
+    /**
+     * <p>Non-blocking variant of {@link #getAreaById(int)}.</p>
+     *
+     * @param id The three digit area code
+     * @return A Future holding the Area with the given code
+     */
+    @Asynchronous
+    public Future<Area> getAreaByIdAsync(int id) {
+        return new AsyncResult<Area>(getAreaById(id));
+    }
+
+    /**
+     * <p>Waits for a lookup started with {@link #getAreaByIdAsync(int)}, for no longer than the configured connect and
+     * read timeouts together.</p>
+     *
+     * @param pendingArea The Future returned by getAreaByIdAsync
+     * @return The Area with the requested code
+     * @throws InvalidAreaCodeException If the upstream service does not know the area code
+     */
+    public Area await(Future<Area> pendingArea) throws InvalidAreaCodeException {
+        try {
+            return pendingArea.get(connectTimeout + readTimeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Area lookup failed", e.getCause());
+        } catch (TimeoutException e) {
+            pendingArea.cancel(true);
+            throw new IllegalStateException("Area lookup timed out", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted whilst waiting for an area lookup", e);
+        }
+    }
+}
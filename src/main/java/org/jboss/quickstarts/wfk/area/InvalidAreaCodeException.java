@@ -18,6 +18,7 @@
  */
 package org.jboss.quickstarts.wfk.area;
 
+import javax.ejb.ApplicationException;
 import javax.validation.ValidationException;
 
 /**
@@ -25,10 +26,13 @@ import javax.validation.ValidationException;
  *
  * <p>In such cases the ClientResponse status should be 404 NOT_FOUND.</p>
  *
+ * <p>It is an application exception so that it reaches callers of {@link AreaCodeResolver} unwrapped.</p>
+ *
  * @author hugofirth
  * @see AreaService
  */
 @SuppressWarnings("serial")
+@ApplicationException(rollback = true)
 public class InvalidAreaCodeException extends ValidationException {
 
     public InvalidAreaCodeException(Throwable cause) {
@@ -5,6 +5,7 @@ import java.util.Date;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
@@ -12,6 +13,8 @@ import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
+import javax.persistence.QueryHint;
+import javax.persistence.SequenceGenerator;
 //import javax.persistence.OneToOne;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
@@ -21,6 +24,7 @@ import javax.validation.constraints.Future;
 import javax.validation.constraints.NotNull;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import org.hibernate.annotations.Index;
 import org.jboss.quickstarts.wfk.customer.Customer;
 import org.jboss.quickstarts.wfk.flight.Flight;
 //import org.jboss.quickstarts.wfk.travelagent.TravelAgentBooking;
@@ -35,29 +39,56 @@ import io.swagger.annotations.ApiModelProperty;
  */
 @Entity
 @NamedQueries({ //finds all bookings
-        @NamedQuery(name = Booking.FIND_ALL, query = "SELECT b FROM Booking b"),
+        //the queries whose bookings are returned to clients fetch the customer and flight in the same statement
+        @NamedQuery(name = Booking.FIND_ALL, query = "SELECT b FROM Booking b JOIN FETCH b.customer JOIN FETCH b.flight ORDER BY b.id ASC"),
         @NamedQuery(name = Booking.FIND_BY_FLIGHT, query = "SELECT b FROM Booking b where b.flight.id = :flight_id AND b.bookingDate = :bookingDate"),
-        @NamedQuery(name = Booking.FIND_BY_CUSTOMER, query= "SELECT b FROM Booking b where b.customer.id = :customer_id")
+        @NamedQuery(name = Booking.FIND_BY_CUSTOMER, query= "SELECT b FROM Booking b JOIN FETCH b.customer JOIN FETCH b.flight "
+        		+ "where b.customer.id = :customer_id ORDER BY b.id ASC"),
+        //the list is read into read-only BookingView objects rather than entities, and does not flush the persistence context
+        @NamedQuery(name = Booking.FIND_PAGE, query = "SELECT NEW " + Booking.VIEW + " FROM Booking b JOIN b.customer c JOIN b.flight f "
+        		+ "where b.id > :after ORDER BY b.id ASC", 
+        		hints = @QueryHint(name = "org.hibernate.flushMode", value = "COMMIT")),
+        @NamedQuery(name = Booking.FIND_PAGE_BY_CUSTOMER, query = "SELECT NEW " + Booking.VIEW + " FROM Booking b JOIN b.customer c JOIN b.flight f "
+        		+ "where c.id = :customer_id AND b.id > :after ORDER BY b.id ASC", 
+        		hints = @QueryHint(name = "org.hibernate.flushMode", value = "COMMIT")),
+        @NamedQuery(name = Booking.FIND_BOOKED_FLIGHT_DATES, query = "SELECT b.flight.id, b.bookingDate FROM Booking b "
+        		+ "where b.flight.id IN :flight_ids AND b.bookingDate IN :dates"),
+        @NamedQuery(name = Booking.STREAM_ALL, query = "SELECT b FROM Booking b JOIN FETCH b.customer JOIN FETCH b.flight ORDER BY b.id ASC"),
+        @NamedQuery(name = Booking.STREAM_BY_CUSTOMER, query = "SELECT b FROM Booking b JOIN FETCH b.customer JOIN FETCH b.flight "
+        		+ "where b.customer.id = :customer_id ORDER BY b.id ASC")
 })
 @XmlRootElement
 @Table(name = "booking", uniqueConstraints = @UniqueConstraint(columnNames = {"flight_id", "booking_date"})) //assigns flight id and booking date as a key to the table
+@org.hibernate.annotations.Table(appliesTo = "booking", indexes = { //the unique key above also indexes the searches by flight and date
+		@Index(name = "booking_customer_idx", columnNames = {"customer_id", "id"}) //bookings of a customer, in id order
+})
 public class Booking implements Serializable {
 	private static final long serialVersionUID = 1L; //this is a default value to remove warnings
 	
 	public static final String FIND_ALL = "Booking.findAll"; //finds all bookings 
 	public static final String FIND_BY_FLIGHT = "Booking.findByFlight"; //finds bookings by flight 
 	public static final String FIND_BY_CUSTOMER = "Booking.findByCustomer"; //finds bookings by customer
+	public static final String FIND_PAGE = "Booking.findPage"; //seeks past a booking id, see BookingRepository.findPage
+	public static final String FIND_PAGE_BY_CUSTOMER = "Booking.findPageByCustomer"; //same, for the bookings of one customer
+	public static final String FIND_BOOKED_FLIGHT_DATES = "Booking.findBookedFlightDates"; //flight and date pairs already booked, see BookingRepository
+	public static final String STREAM_ALL = "Booking.streamAll"; //all bookings with their customer and flight in one query, for streaming
+	public static final String STREAM_BY_CUSTOMER = "Booking.streamByCustomer"; //same, for the bookings of one customer
+	
+	//constructor expression of a BookingView, over the aliases b, c and f of a booking, its customer and its flight
+	static final String VIEW = "org.jboss.quickstarts.wfk.booking.BookingView(b.id, b.bookingDate, "
+			+ "c.id, c.name, c.email, c.phoneNumber, f.id, f.number, f.departure, f.destination)";
 
     @ApiModelProperty(hidden=true)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY) //sets unique ID and increment to the number
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "booking_seq") //sets unique ID and increment to the number
+    @SequenceGenerator(name = "booking_seq", sequenceName = "booking_seq", allocationSize = 50) //ids are reserved 50 at a time, so inserts can be batched
 	private Long id;
     
-    @ManyToOne //database relation to customer id
+    @ManyToOne(fetch = FetchType.LAZY) //database relation to customer id, loaded by the queries that need it (JOIN FETCH)
     @JoinColumn(name="customer_id")
 	private Customer customer;
 	
-	@ManyToOne //database relation to flight id
+	@ManyToOne(fetch = FetchType.LAZY) //database relation to flight id, loaded by the queries that need it (JOIN FETCH)
 	@JoinColumn(name="flight_id")
 	private Flight flight;
 	
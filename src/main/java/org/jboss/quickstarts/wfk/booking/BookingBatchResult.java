@@ -0,0 +1,55 @@
+package org.jboss.quickstarts.wfk.booking;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.ws.rs.core.Response;
+
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+
+//reports the outcome of one booking of a POST /bookings/batch request
+//status carries the code the single booking endpoint would have answered with (201, 400, 404 or 409)
+@JsonSerialize(include = JsonSerialize.Inclusion.NON_NULL)
+public class BookingBatchResult {
+	private final int index; //position of the booking in the request
+	private int status;
+	private Booking booking; //the stored booking, only set once it has been created
+	private Map<String, String> errors; //field and message pairs, as returned by the single booking endpoint
+	
+	BookingBatchResult(int index) {
+		this.index = index;
+	}
+	
+	void reject(Response.Status status, String field, String message) {
+		this.status = status.getStatusCode();
+		if (errors == null) {
+			errors = new HashMap<>();
+		}
+		errors.put(field, message);
+	}
+	
+	void created(Booking booking) {
+		this.status = Response.Status.CREATED.getStatusCode();
+		this.booking = booking;
+	}
+	
+	boolean isRejected() {
+		return errors != null;
+	}
+	
+	public int getIndex() {
+		return index;
+	}
+	
+	public int getStatus() {
+		return status;
+	}
+	
+	public Booking getBooking() {
+		return booking;
+	}
+	
+	public Map<String, String> getErrors() {
+		return errors;
+	}
+}
@@ -0,0 +1,89 @@
+package org.jboss.quickstarts.wfk.booking;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+import javax.enterprise.context.ApplicationScoped;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import com.google.common.util.concurrent.Striped;
+
+//serializes the bookings that compete for the same flight on the same date, and only those
+//each (flight_id, booking_date) pair maps onto one of a fixed number of striped locks, which is held from before the
+//"already booked" check until the transaction that inserts the booking has completed, so that no other transaction can
+//pass the check in between. bookings of other flights or dates take other stripes and run fully in parallel.
+//locks are local to this JVM, the unique constraint on the booking table still guards against other nodes
+@ApplicationScoped
+public class BookingEngine {
+	static final int STRIPES = Integer.getInteger("booking.engine.stripes", 1024); //more stripes, fewer unrelated collisions
+	static final long LOCK_TIMEOUT = Long.getLong("booking.engine.lockTimeout", 5000); //milliseconds
+	
+	private final Striped<Semaphore> locks = Striped.semaphore(STRIPES, 1); //semaphores, as completion may run on another thread
+	
+	@Resource(lookup = "java:comp/TransactionSynchronizationRegistry")
+	private TransactionSynchronizationRegistry transactions;
+	
+	/**
+	 * <p>Locks the given flights and dates until the current transaction commits or rolls back.</p>
+	 *
+	 * <p>Stripes are always taken in the same order, so that two batches locking overlapping flight dates cannot
+	 * deadlock.</p>
+	 *
+	 * @throws BookingLockTimeoutException if a lock could not be taken within the timeout
+	 * @throws IllegalStateException if there is no active transaction
+	 */
+	void lockUntilCompletion(Collection<FlightDate> flightDates) throws BookingLockTimeoutException {
+		if (transactions.getTransactionStatus() != Status.STATUS_ACTIVE) {
+			throw new IllegalStateException("Bookings can only be locked within an active transaction");
+		}
+		
+		final List<Semaphore> held = new ArrayList<>();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LOCK_TIMEOUT);
+		
+		try {
+			for (Semaphore lock : locks.bulkGet(flightDates)) {
+				if (held.contains(lock)) { //several flight dates may share a stripe
+					continue;
+				}
+				if (!lock.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+					release(held);
+					throw new BookingLockTimeoutException("Timed out waiting for concurrent bookings of " + flightDates);
+				}
+				held.add(lock);
+			}
+		} catch (InterruptedException e) {
+			release(held);
+			Thread.currentThread().interrupt();
+			throw new BookingLockTimeoutException("Interrupted whilst waiting for concurrent bookings of " + flightDates, e);
+		}
+		
+		try {
+			transactions.registerInterposedSynchronization(new Synchronization() {
+				@Override
+				public void beforeCompletion() {
+				}
+				
+				@Override
+				public void afterCompletion(int status) { //runs on commit and rollback alike
+					release(held);
+				}
+			});
+		} catch (RuntimeException e) {
+			release(held);
+			throw e;
+		}
+	}
+	
+	private static void release(List<Semaphore> held) {
+		for (Semaphore lock : held) {
+			lock.release();
+		}
+		held.clear();
+	}
+}
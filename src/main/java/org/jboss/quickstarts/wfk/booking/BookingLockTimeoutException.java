@@ -0,0 +1,14 @@
+package org.jboss.quickstarts.wfk.booking;
+
+//thrown when a booking waits too long for concurrent bookings of the same flight and date to complete
+public class BookingLockTimeoutException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+	
+	public BookingLockTimeoutException(String message) {
+		super(message);
+	}
+	
+	public BookingLockTimeoutException(String message, Throwable e) {
+		super(message, e);
+	}
+}
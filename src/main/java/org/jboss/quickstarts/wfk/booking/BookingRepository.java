@@ -1,20 +1,30 @@
 package org.jboss.quickstarts.wfk.booking;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.NonUniqueResultException;
+import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
+import javax.ws.rs.core.StreamingOutput;
 
+import org.hibernate.JDBCException;
 import org.jboss.quickstarts.wfk.customer.Customer;
 import org.jboss.quickstarts.wfk.flight.Flight;
+import org.jboss.quickstarts.wfk.util.ScrollingJsonOutput;
 
 public class BookingRepository {
+	static final int BATCH_SIZE = 50; //matches hibernate.jdbc.batch_size in persistence.xml
+	private static final String UNIQUE_VIOLATION = "23505"; //SQLSTATE of a unique constraint violation
+	
     @Inject
     private EntityManager em;
     
@@ -23,6 +33,46 @@ public class BookingRepository {
         return query.getResultList();
     }
     
+    /**
+     * <p>Returns one page of bookings sorted by id, seeking past the id of the last booking of the previous page
+     * rather than skipping rows with an offset.</p>
+     *
+     * @param afterId The id of the last booking of the previous page, or null for the first page
+     * @param maxResults The maximum number of bookings to return
+     * @return List of read-only BookingView objects
+     */
+    List<BookingView> findPage(Long afterId, int maxResults) {
+        TypedQuery<BookingView> query = em.createNamedQuery(Booking.FIND_PAGE, BookingView.class)
+                .setParameter("after", afterId == null ? Long.valueOf(0) : afterId)
+                .setMaxResults(maxResults);
+        return query.getResultList();
+    }
+    
+    /**
+     * <p>Same as {@link #findPage(Long, int)}, restricted to the bookings made by a specific customer.</p>
+     */
+    List<BookingView> findPageByCustomer(Customer customer, Long afterId, int maxResults) {
+        TypedQuery<BookingView> query = em.createNamedQuery(Booking.FIND_PAGE_BY_CUSTOMER, BookingView.class)
+                .setParameter("customer_id", customer.getId())
+                .setParameter("after", afterId == null ? Long.valueOf(0) : afterId)
+                .setMaxResults(maxResults);
+        return query.getResultList();
+    }
+    
+    /**
+     * <p>Returns every booking, optionally only those of one customer, as a JSON array written straight from a
+     * database cursor.</p>
+     *
+     * @param customerId The id of the customer whose bookings are wanted, or null for all bookings
+     * @see ScrollingJsonOutput
+     */
+    StreamingOutput streamAll(Long customerId) {
+        if (customerId == null) {
+            return new ScrollingJsonOutput(em, Booking.STREAM_ALL);
+        }
+        return new ScrollingJsonOutput(em, Booking.STREAM_BY_CUSTOMER).setParameter("customer_id", customerId);
+    }
+    
     Booking findById(Long id) { //returns the booking according to the id requested
     	return em.find(Booking.class, id);
     }
@@ -43,13 +93,69 @@ public class BookingRepository {
         return result;
     }
     
+    /**
+     * <p>Returns which of the given flights are already booked on which of the given dates, in a single query.</p>
+     *
+     * <p>The query matches any of the flights on any of the dates, which may include pairs that were not asked about.
+     * That is harmless, since callers only look the pairs they need up in the result.</p>
+     */
+    Set<FlightDate> findBookedFlightDates(Collection<Long> flightIds, Collection<Date> dates) {
+    	Set<FlightDate> booked = new HashSet<>();
+    	if (flightIds.isEmpty() || dates.isEmpty()) {
+    		return booked;
+    	}
+    	
+    	TypedQuery<Object[]> query = em.createNamedQuery(Booking.FIND_BOOKED_FLIGHT_DATES, Object[].class)
+    			.setParameter("flight_ids", flightIds)
+    			.setParameter("dates", dates);
+    	for (Object[] row : query.getResultList()) {
+    		booked.add(new FlightDate((Long) row[0], (Date) row[1]));
+    	}
+    	return booked;
+    }
+    
+    /**
+     * <p>Persists a batch of bookings, flushing them to the database and detaching them every {@link #BATCH_SIZE}
+     * bookings, so that the inserts are sent in JDBC batches and the persistence context stays small.</p>
+     */
+    List<Booking> createBatch(List<Booking> bookings) {
+    	for (int i = 0; i < bookings.size(); i++) {
+    		em.persist(bookings.get(i));
+    		
+    		if ((i + 1) % BATCH_SIZE == 0) {
+    			flush();
+    			em.clear();
+    		}
+    	}
+    	flush();
+    	em.clear();
+    	
+    	return bookings;
+    }
+    
     Booking create(Booking booking) throws ConstraintViolationException, ValidationException, Exception { //validates data used in booking
         //adds booking to the database
         em.persist(booking);
+        flush(); //inserts now, so that a conflict surfaces here rather than at commit
 
         return booking;
     }
     
+    /**
+     * <p>Flushes pending inserts, translating a violation of the unique (flight_id, booking_date) constraint into a
+     * {@link BookingExistsException}.</p>
+     */
+    private void flush() throws BookingExistsException {
+    	try {
+    		em.flush();
+    	} catch (PersistenceException e) {
+    		if (e.getCause() instanceof JDBCException && UNIQUE_VIOLATION.equals(((JDBCException) e.getCause()).getSQLState())) {
+    			throw new BookingExistsException("Booking already exists", e);
+    		}
+    		throw e;
+    	}
+    }
+    
     Booking delete(Booking booking) throws Exception {
     	
         if (booking.getId() != null) { //deletes booking from the database
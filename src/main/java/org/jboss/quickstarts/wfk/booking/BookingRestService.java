@@ -4,9 +4,14 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.logging.Logger;
 
+import javax.annotation.Resource;
+import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.validation.ConstraintViolation;
@@ -24,7 +29,11 @@ import javax.ws.rs.core.Response;
 
 import org.jboss.quickstarts.wfk.customer.Customer;
 import org.jboss.quickstarts.wfk.customer.CustomerService;
+import org.jboss.quickstarts.wfk.util.AsyncResponder;
+import org.jboss.quickstarts.wfk.util.PageCursor;
 import org.jboss.quickstarts.wfk.util.RestServiceException;
+import org.jboss.resteasy.annotations.Suspend;
+import org.jboss.resteasy.spi.AsynchronousResponse;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -40,6 +49,8 @@ import io.swagger.annotations.ApiResponses;
 @Stateless//It is Stateless to "inform the container that this RESTful web service should also be treated as an EJB and allow transaction
 //demarcation when accessing the database." - Antonio Goncalves
 public class BookingRestService {
+	static final int MAX_BATCH_SIZE = 1000; //largest batch accepted by POST /bookings/batch
+	
 	@Inject //assigns dependency
 	BookingService service;
 	
@@ -49,27 +60,54 @@ public class BookingRestService {
     @Inject //assigns dependency
     private @Named("logger") Logger log;
     
+    @Inject //runs the asynchronous variants off the request thread
+    AsyncResponder responder;
+    
+    @Resource //gives the EJB of this service, for the asynchronous variants to call
+    SessionContext context;
+    
     
     @GET
-    @ApiOperation(value = "Fetch all Bookings", notes = "Returns a JSON array of all stored Bookings")
+    @ApiOperation(value = "Fetch all Bookings", notes = "Returns a JSON array of stored Bookings, one page at a time. "
+    		+ "The cursor of the next page is returned in the " + PageCursor.NEXT_CURSOR_HEADER + " header. "
+    		+ "With stream=true every Booking is returned at once, streamed as it is read from the database")
 	public Response getAllBookings(
 			@ApiParam(value = "Customer's ID", allowableValues = "range[0, infinity]", required = false)
-			@QueryParam("customerId") Long customerId) {
-    	List<Booking> bookings; //lists bookings
+			@QueryParam("customerId") Long customerId,
+			@ApiParam(value = "Cursor returned with the previous page", required = false)
+			@QueryParam("after") String after,
+			@ApiParam(value = "Maximum number of Bookings to return", allowableValues = "range[1, 1000]", required = false)
+			@QueryParam("limit") Integer limit,
+			@ApiParam(value = "Stream every Booking in a single response instead of one page", required = false)
+			@QueryParam("stream") boolean stream) {
+    	if(stream) { //the whole table is written straight from a database cursor, without paging
+    		return Response.ok(service.streamAll(customerId)).build();
+    	}
     	
+    	List<BookingView> bookings; //lists bookings, read-only
+    	int pageSize = PageCursor.limit(limit);
+    	Long afterId = after == null ? null : PageCursor.decode(after, 1).getLong(0);
+    	
+    	//one extra booking is fetched to find out whether there is a next page
     	if(customerId == null) {
-    		bookings = service.findAll();
+    		bookings = service.findPage(afterId, pageSize + 1);
     	} else {
         	Customer customer = customerService.findById(customerId); //finds bookings by customer id
         	
         	if(customer != null) {
-        		bookings = service.findByCustomer(customer);
+        		bookings = service.findPageByCustomer(customer, afterId, pageSize + 1);
         	} else {
-        		bookings = new ArrayList<Booking>(0);
+        		bookings = new ArrayList<BookingView>(0);
         	}
     	}
 		
-		return Response.ok(bookings).build();
+		Response.ResponseBuilder builder = Response.ok(bookings);
+		
+		if(bookings.size() > pageSize) {
+			bookings.remove(pageSize);
+			builder.header(PageCursor.NEXT_CURSOR_HEADER, PageCursor.encode(bookings.get(pageSize - 1).getId()));
+		}
+		return builder.build();
 	}
     
     @POST
@@ -78,7 +116,8 @@ public class BookingRestService {
             @ApiResponse(code = 201, message = "Booking has been added successfully"),
             @ApiResponse(code = 400, message = "Invalid Booking details inserted"),
             @ApiResponse(code = 409, message = "Booking details inserted come in conflict with an existing Booking"),
-            @ApiResponse(code = 500, message = "Unexpected error occured")
+            @ApiResponse(code = 500, message = "Unexpected error occured"),
+            @ApiResponse(code = 503, message = "Too many concurrent Bookings of the same Flight and date, try again")
     })
 	public Response createBooking(
 		@ApiParam(value = "JSON output of the Bookings", required = true) 
@@ -121,6 +160,9 @@ public class BookingRestService {
             Map<String, String> responseObj = new HashMap<>();
             responseObj.put("number", "Flight ID inserted is already in use, use a different combination of flight ID and date");
             throw new RestServiceException("Bad Request", responseObj, Response.Status.CONFLICT, e);
+        } catch (BookingLockTimeoutException e) {
+            //too many concurrent bookings of the same flight and date, the client may retry
+            throw new RestServiceException(e.getMessage(), Response.Status.SERVICE_UNAVAILABLE, e);
         } catch (Exception e) {
         	log.warning("Internal exception upon adding a booking: " + e.getMessage());
             throw new RestServiceException(e);
@@ -129,6 +171,70 @@ public class BookingRestService {
         return builder.build();
 	}
     
+    @POST
+    @Path("/async")
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED) //the booking is made in its own transaction, by createBooking
+    @ApiOperation(value = "Adds a Booking to the Database, asynchronously", notes = "Same as POST /bookings, but the request "
+    		+ "thread is released whilst the Booking is made. Answered with 503 if it takes longer than " 
+    		+ AsyncResponder.TIMEOUT + " milliseconds")
+    @ApiResponses(value = {
+            @ApiResponse(code = 201, message = "Booking has been added successfully"),
+            @ApiResponse(code = 400, message = "Invalid Booking details inserted"),
+            @ApiResponse(code = 409, message = "Booking details inserted come in conflict with an existing Booking"),
+            @ApiResponse(code = 500, message = "Unexpected error occured"),
+            @ApiResponse(code = 503, message = "Too many pending Bookings, or the Booking timed out, try again")
+    })
+	public void createBookingAsync(
+		@ApiParam(value = "JSON output of the Bookings", required = true) 
+		final Booking booking,
+		@Suspend(AsyncResponder.TIMEOUT) AsynchronousResponse response) {
+    	
+    	final BookingRestService self = context.getBusinessObject(BookingRestService.class);
+    	responder.submit(response, new Callable<Response>() {
+			@Override
+			public Response call() {
+				return self.createBooking(booking);
+			}
+		});
+	}
+    
+    @POST
+    @Path("/batch")
+    @ApiOperation(value = "Adds a batch of Bookings to the Database", notes = "Validates the whole batch at once and stores "
+    		+ "every valid Booking. Returns one result per Booking, in the order of the request, with the status the single "
+    		+ "Booking endpoint would have answered with")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Batch has been processed, see the status of each Booking"),
+            @ApiResponse(code = 400, message = "No batch inserted"),
+            @ApiResponse(code = 413, message = "Batch holds more than " + MAX_BATCH_SIZE + " Bookings"),
+            @ApiResponse(code = 500, message = "Unexpected error occured")
+    })
+	public Response createBookings(
+		@ApiParam(value = "JSON array of the Bookings", required = true)
+		List<Booking> bookings) {
+    	
+    	if (bookings == null) {
+    		throw new RestServiceException("Bad Request", Response.Status.BAD_REQUEST);
+    	}
+    	
+    	if (bookings.size() > MAX_BATCH_SIZE) {
+    		throw new RestServiceException("A batch may hold at most " + MAX_BATCH_SIZE + " Bookings",
+    				Response.Status.REQUEST_ENTITY_TOO_LARGE);
+    	}
+    	
+    	try {
+    		return Response.ok(service.createBatch(bookings)).build();
+    	} catch (BookingLockTimeoutException e) {
+            throw new RestServiceException(e.getMessage(), Response.Status.SERVICE_UNAVAILABLE, e);
+    	} catch (BookingExistsException e) {
+    		//a concurrent booking on another node took one of the flight dates of the batch
+            throw new RestServiceException(e.getMessage(), Response.Status.CONFLICT, e);
+    	} catch (Exception e) {
+        	log.warning("Internal exception upon adding a batch of bookings: " + e.getMessage());
+            throw new RestServiceException(e);
+    	}
+    }
+    
     @DELETE
     @Path("/{id:[0-9]+}")
     @ApiOperation(value = "Deletes a Booking from the Database")
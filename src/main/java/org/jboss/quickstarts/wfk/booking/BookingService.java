@@ -1,12 +1,17 @@
 package org.jboss.quickstarts.wfk.booking;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.persistence.NonUniqueResultException;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.jboss.quickstarts.wfk.customer.Customer;
 import org.jboss.quickstarts.wfk.flight.Flight;
@@ -18,10 +23,25 @@ public class BookingService {
 	@Inject //validator dependency
 	BookingValidator validator;
 	
+	@Inject //serializes concurrent bookings of the same flight and date
+	BookingEngine engine;
+	
     public List<Booking> findAll() { //returns all booking objects sorted by booking number
         return crud.findAll();
     }
     
+    public List<BookingView> findPage(Long afterId, int maxResults) { //returns one page of bookings sorted by booking id
+        return crud.findPage(afterId, maxResults);
+    }
+    
+    public List<BookingView> findPageByCustomer(Customer customer, Long afterId, int maxResults) { //same, for a specific customer
+        return crud.findPageByCustomer(customer, afterId, maxResults);
+    }
+    
+    public StreamingOutput streamAll(Long customerId) { //writes all bookings, or those of one customer, as a json array
+        return crud.streamAll(customerId);
+    }
+    
     public Booking findById(Long id) { //returns the booking that matches the ID
     	return crud.findById(id);
     }
@@ -38,10 +58,48 @@ public class BookingService {
     	//Validates the the data to be passed to the booking entity match the parameters needed
     	validator.validate(booking);
     	
+    	//concurrent bookings of the same flight and date wait here until this transaction completes
+    	engine.lockUntilCompletion(Collections.singleton(new FlightDate(booking.getFlight().getId(), booking.getBookingDate())));
+    	validator.validateNotBooked(booking);
+    	
         //stores the booking into the database
         return crud.create(booking);
     }
     
+    /**
+     * <p>Validates a batch of bookings set-wise and stores every booking that passes, in JDBC batches.</p>
+     *
+     * @return One result per booking, in the order of the batch
+     */
+    public List<BookingBatchResult> createBatch(List<Booking> bookings) {
+    	//locks every flight and date of the batch before any of them is checked
+    	Set<FlightDate> flightDates = new HashSet<>();
+    	for (Booking booking : bookings) {
+    		if (booking != null && booking.getFlight() != null && booking.getFlight().getId() != null && booking.getBookingDate() != null) {
+    			flightDates.add(new FlightDate(booking.getFlight().getId(), booking.getBookingDate()));
+    		}
+    	}
+    	engine.lockUntilCompletion(flightDates);
+    	
+    	List<BookingBatchResult> results = validator.validateBatch(bookings);
+    	List<Booking> accepted = new ArrayList<>(bookings.size());
+    	
+    	for (BookingBatchResult result : results) {
+    		if (!result.isRejected()) {
+    			accepted.add(bookings.get(result.getIndex()));
+    		}
+    	}
+    	
+    	crud.createBatch(accepted);
+    	
+    	for (BookingBatchResult result : results) {
+    		if (!result.isRejected()) {
+    			result.created(bookings.get(result.getIndex()));
+    		}
+    	}
+    	return results;
+    }
+    
     public Booking delete(Booking booking) throws Exception {
         return crud.delete(booking); //deletes the booking for the database
     }
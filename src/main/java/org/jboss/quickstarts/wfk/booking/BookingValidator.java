@@ -1,7 +1,11 @@
 package org.jboss.quickstarts.wfk.booking;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
 
@@ -12,7 +16,9 @@ import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 import javax.validation.Validator;
+import javax.ws.rs.core.Response;
 
+import org.jboss.quickstarts.wfk.customer.Customer;
 import org.jboss.quickstarts.wfk.customer.CustomerService;
 import org.jboss.quickstarts.wfk.flight.Flight;
 import org.jboss.quickstarts.wfk.flight.FlightService;
@@ -52,12 +58,101 @@ public class BookingValidator{
         if (flightIdInvalid(booking)) {
         	throw new FlightInvalidException("Flight with given ID does not exist");
         }
-        
+    }
+    
+    /**
+     * <p>Checks that the flight is not booked yet on the date of the booking. Callers must hold the lock on the flight
+     * and date, see {@link BookingEngine}, for the outcome to stay true until the booking is stored.</p>
+     */
+    void validateNotBooked(Booking booking) throws BookingExistsException {
         if (bookingAlreadyExists(booking)) {
             throw new BookingExistsException("Booking already exists");
         }
     }
     
+    /**
+     * <p>Validates a whole batch of bookings at once, with one query each for the customers, the flights and the
+     * bookings already made on the requested flights and dates, however large the batch is.</p>
+     *
+     * <p>Bookings that pass are given the stored Customer and Flight they refer to. A booking that books the same flight
+     * on the same date as an earlier booking of the batch is rejected like one that conflicts with a stored booking.</p>
+     *
+     * @param bookings The bookings of the batch
+     * @return One result per booking, in the same order, rejected ones carrying the reason
+     */
+    List<BookingBatchResult> validateBatch(List<Booking> bookings) {
+    	List<BookingBatchResult> results = new ArrayList<>(bookings.size());
+    	Set<Long> customerIds = new HashSet<>();
+    	Set<Long> flightIds = new HashSet<>();
+    	Set<Date> dates = new HashSet<>();
+    	
+    	//bean validation, item by item, and collection of the keys to look up
+    	for (int i = 0; i < bookings.size(); i++) {
+    		Booking booking = bookings.get(i);
+    		BookingBatchResult result = new BookingBatchResult(i);
+    		results.add(result);
+    		
+    		if (booking == null || booking.getCustomer() == null || booking.getCustomer().getId() == null
+    				|| booking.getFlight() == null || booking.getFlight().getId() == null) {
+    			result.reject(Response.Status.BAD_REQUEST, "booking", "A booking needs a customer ID, a flight ID and a date");
+    			continue;
+    		}
+    		
+    		for (ConstraintViolation<Booking> violation : validator.validate(booking)) {
+    			result.reject(Response.Status.BAD_REQUEST, violation.getPropertyPath().toString(), violation.getMessage());
+    		}
+    		
+    		if (!result.isRejected()) {
+    			customerIds.add(booking.getCustomer().getId());
+    			flightIds.add(booking.getFlight().getId());
+    			dates.add(booking.getBookingDate());
+    		}
+    	}
+    	
+    	//one query per kind of reference, whatever the size of the batch
+    	Map<Long, Customer> customers = new HashMap<>();
+    	for (Customer customer : customerService.findAllById(customerIds)) {
+    		customers.put(customer.getId(), customer);
+    	}
+    	
+    	Map<Long, Flight> flights = new HashMap<>();
+    	for (Flight flight : flightService.findAllById(flightIds)) {
+    		flights.put(flight.getId(), flight);
+    	}
+    	
+    	Set<FlightDate> booked = crud.findBookedFlightDates(flightIds, dates);
+    	Set<FlightDate> inBatch = new HashSet<>();
+    	
+    	for (BookingBatchResult result : results) {
+    		if (result.isRejected()) {
+    			continue;
+    		}
+    		
+    		Booking booking = bookings.get(result.getIndex());
+    		Customer customer = customers.get(booking.getCustomer().getId());
+    		Flight flight = flights.get(booking.getFlight().getId());
+    		
+    		if (customer == null) {
+    			result.reject(Response.Status.NOT_FOUND, "customer", "Customer's ID inserted does not exist, use a valid Customer ID");
+    		} else if (flight == null) {
+    			result.reject(Response.Status.NOT_FOUND, "flight", "Flight ID inserted does not exist, use a valid Flight ID");
+    		} else {
+    			FlightDate flightDate = new FlightDate(flight.getId(), booking.getBookingDate());
+    			
+    			if (booked.contains(flightDate)) {
+    				result.reject(Response.Status.CONFLICT, "number", "Flight ID inserted is already in use, use a different combination of flight ID and date");
+    			} else if (!inBatch.add(flightDate)) {
+    				result.reject(Response.Status.CONFLICT, "number", "Flight ID and date are booked by an earlier booking of this batch");
+    			} else {
+    				booking.setCustomer(customer);
+    				booking.setFlight(flight);
+    			}
+    		}
+    	}
+    	
+    	return results;
+    }
+    
     /** 
      * <p> checks if the customer already exists in the database, based on customer id </p>
      * */
@@ -90,8 +185,8 @@ public class BookingValidator{
     	try{
     		fromDb = crud.findByFlight(flight, bookingDate);
     		
-    		//if booking is found and the objects are equal
-    		return fromDb != null && fromDb.equals(booking);
+    		//any booking of the same flight on the same date is a conflict
+    		return fromDb != null;
     	} catch (NonUniqueResultException e) {
     		log.warning("Duplicate booking found in the database: " + booking);
     		return true;
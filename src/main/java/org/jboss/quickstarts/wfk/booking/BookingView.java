@@ -0,0 +1,50 @@
+package org.jboss.quickstarts.wfk.booking;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import org.jboss.quickstarts.wfk.customer.CustomerView;
+import org.jboss.quickstarts.wfk.flight.FlightView;
+
+//read-only copy of a booking with its customer and flight, built by the list queries with a constructor expression
+//(see Booking.FIND_PAGE). the three tables are read in one statement and no entity is loaded, so hibernate neither
+//keeps snapshots of them nor dirty checks them at flush. its json is the same as the one of Booking
+public class BookingView implements Serializable {
+	private static final long serialVersionUID = 1L; //this is a default value to remove warnings
+	
+	private final Long id;
+	private final CustomerView customer;
+	private final FlightView flight;
+	private final Date bookingDate;
+	
+	//the arguments are flat columns, as constructor expressions cannot nest
+	public BookingView(Long id, Date bookingDate, 
+			Long customerId, String customerName, String customerEmail, String customerPhoneNumber, 
+			Long flightId, String flightNumber, String flightDeparture, String flightDestination) {
+		this.id = id;
+		this.bookingDate = bookingDate;
+		this.customer = new CustomerView(customerId, customerName, customerEmail, customerPhoneNumber);
+		this.flight = new FlightView(flightId, flightNumber, flightDeparture, flightDestination);
+	}
+	
+	public Long getId() {
+		return id;
+	}
+	
+	public CustomerView getCustomer() {
+		return customer;
+	}
+	
+	public FlightView getFlight() {
+		return flight;
+	}
+	
+	public Date getBookingDate() {
+		return bookingDate;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("Booking[%s]: %s on %s for %s", id, flight.getNumber(), bookingDate, customer.getEmail());
+	}
+}
@@ -0,0 +1,41 @@
+package org.jboss.quickstarts.wfk.booking;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+//identifies the seat that the unique constraint on (flight_id, booking_date) protects
+//dates are compared by calendar day, as booking_date is stored without a time of day
+final class FlightDate {
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+	
+	private final long flightId;
+	private final long day; //days since the epoch, in the default time zone
+	
+	FlightDate(Long flightId, Date date) {
+		long time = date.getTime();
+		this.flightId = flightId;
+		this.day = (time + TimeZone.getDefault().getOffset(time)) / MILLIS_PER_DAY;
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof FlightDate)) return false;
+		FlightDate other = (FlightDate) o;
+		
+		return flightId == other.flightId && day == other.day;
+	}
+	
+	@Override
+	public int hashCode() {
+		int hash = 17;
+		hash = hash * 31 + (int) (flightId ^ (flightId >>> 32));
+		hash = hash * 31 + (int) (day ^ (day >>> 32));
+		return hash;
+	}
+	
+	@Override
+	public String toString() {
+		return "flight " + flightId + " on day " + day;
+	}
+}
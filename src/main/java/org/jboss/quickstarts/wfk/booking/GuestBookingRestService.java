@@ -2,8 +2,10 @@ package org.jboss.quickstarts.wfk.booking;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.annotation.Resource;
+import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionManagement;
 import javax.ejb.TransactionManagementType;
@@ -21,7 +23,10 @@ import javax.ws.rs.core.Response;
 
 import org.jboss.quickstarts.wfk.customer.CustomerExistsException;
 import org.jboss.quickstarts.wfk.customer.CustomerService;
+import org.jboss.quickstarts.wfk.util.AsyncResponder;
 import org.jboss.quickstarts.wfk.util.RestServiceException;
+import org.jboss.resteasy.annotations.Suspend;
+import org.jboss.resteasy.spi.AsynchronousResponse;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -47,6 +52,12 @@ public class GuestBookingRestService {
 	@Inject //calls customer service dependency
 	CustomerService customerService;
 	
+	@Inject //runs the asynchronous variant off the request thread
+	AsyncResponder responder;
+	
+	@Resource //gives the EJB of this service, for the asynchronous variant to call
+	SessionContext context;
+	
 	
     @POST
     @ApiOperation(value = "Adds the booking and its customer to the database")
@@ -76,6 +87,9 @@ public class GuestBookingRestService {
         	} catch (CustomerExistsException | BookingExistsException e) { //checks if booking or customers already exists
         		userTransaction.rollback();
         		throw new RestServiceException(e.getMessage(), Response.Status.CONFLICT, e); //throws exception
+        	} catch (BookingLockTimeoutException e) { //too many concurrent bookings of the same flight and date
+        		userTransaction.rollback();
+        		throw new RestServiceException(e.getMessage(), Response.Status.SERVICE_UNAVAILABLE, e);
         	} catch (FlightInvalidException e) { //check for invalid flight information
         		userTransaction.rollback();
         		throw new RestServiceException(e.getMessage(), Response.Status.NOT_FOUND, e);
@@ -102,4 +116,30 @@ public class GuestBookingRestService {
     	Response.ResponseBuilder builder = Response.status(Response.Status.CREATED).entity(guestBooking);
     	return builder.build();
 	}
+    
+    @POST
+    @Path("/async")
+    @ApiOperation(value = "Adds the booking and its customer to the database, asynchronously", notes = "Same as POST "
+    		+ "/guestbookings, but the request thread is released whilst they are added. Answered with 503 if it takes "
+    		+ "longer than " + AsyncResponder.TIMEOUT + " milliseconds")
+    @ApiResponses(value = {
+            @ApiResponse(code = 201, message = "Guest Booking has been created successfully."),
+            @ApiResponse(code = 400, message = "Guest Booking details inserted is invalid"),
+            @ApiResponse(code = 409, message = "Guest Booking details inserted comes in conflict with an existing Guest Booking"),
+            @ApiResponse(code = 500, message = "Unexpected error occured"),
+            @ApiResponse(code = 503, message = "Too many pending Guest Bookings, or the Guest Booking timed out, try again")
+    })
+	public void createGuestBookingAsync(
+			@ApiParam(value = "JSON output of the customer and the booking to be added to the Database", required = true) 
+			final GuestBooking guestBooking,
+			@Suspend(AsyncResponder.TIMEOUT) AsynchronousResponse response) {
+    	
+    	final GuestBookingRestService self = context.getBusinessObject(GuestBookingRestService.class);
+    	responder.submit(response, new Callable<Response>() {
+			@Override
+			public Response call() {
+				return self.createGuestBooking(guestBooking);
+			}
+		});
+	}
 }
@@ -16,8 +16,11 @@
  */
 package org.jboss.quickstarts.wfk.contact;
 
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.hibernate.annotations.Index;
 import org.hibernate.validator.constraints.Email;
 import org.hibernate.validator.constraints.NotEmpty;
+import org.jboss.quickstarts.wfk.util.Versioned;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
@@ -43,20 +46,52 @@ import java.util.Date;
  */
 @Entity
 @NamedQueries({
-        @NamedQuery(name = Contact.FIND_ALL, query = "SELECT c FROM Contact c ORDER BY c.lastName ASC, c.firstName ASC"),
-        @NamedQuery(name = Contact.FIND_BY_EMAIL, query = "SELECT c FROM Contact c WHERE c.email = :email")
+        @NamedQuery(name = Contact.FIND_ALL, query = "SELECT c FROM Contact c ORDER BY c.lastName ASC, c.firstName ASC, c.id ASC"),
+        @NamedQuery(name = Contact.FIND_BY_EMAIL, query = "SELECT c FROM Contact c WHERE c.email = :email"),
+        @NamedQuery(name = Contact.FIND_NAMES, query = "SELECT c.id, c.firstName, c.lastName FROM Contact c WHERE c.id > :after "
+                + "ORDER BY c.id ASC"),
+        @NamedQuery(name = Contact.FIND_EMAILS, query = "SELECT c.email FROM Contact c WHERE c.email > :after ORDER BY c.email ASC"),
+        // The leading range on lastName lets the name index be seeked, the rest picks up the page boundary. The page is
+        // read into read-only ContactView objects rather than entities, and does not flush the persistence context.
+        @NamedQuery(name = Contact.FIND_PAGE, query = "SELECT NEW org.jboss.quickstarts.wfk.contact.ContactView(c.id, "
+                + "c.firstName, c.lastName, c.email, c.phoneNumber, c.birthDate, c.state) "
+                + "FROM Contact c WHERE c.lastName >= :lastName "
+                + "AND (c.lastName > :lastName OR c.firstName > :firstName "
+                + "OR (c.firstName = :firstName AND c.id > :id)) "
+                + "ORDER BY c.lastName ASC, c.firstName ASC, c.id ASC",
+                hints = @QueryHint(name = "org.hibernate.flushMode", value = "COMMIT")),
+        // Updates in a single statement, without reading the Contact first, see ContactRepository#update
+        @NamedQuery(name = Contact.UPDATE, query = "UPDATE Contact c SET c.firstName = :firstName, c.lastName = :lastName, "
+                + "c.email = :email, c.phoneNumber = :phoneNumber, c.birthDate = :birthDate, c.state = :state, "
+                + "c.version = c.version + 1 WHERE c.id = :id"),
+        @NamedQuery(name = Contact.UPDATE_IF_VERSION, query = "UPDATE Contact c SET c.firstName = :firstName, "
+                + "c.lastName = :lastName, c.email = :email, c.phoneNumber = :phoneNumber, c.birthDate = :birthDate, "
+                + "c.state = :state, c.version = c.version + 1 WHERE c.id = :id AND c.version = :version"),
+        @NamedQuery(name = Contact.FIND_VERSION, query = "SELECT c.version FROM Contact c WHERE c.id = :id")
 })
 @XmlRootElement
 @Table(name = "contact", uniqueConstraints = @UniqueConstraint(columnNames = "email"))
-public class Contact implements Serializable {
+@org.hibernate.annotations.Table(appliesTo = "contact", indexes = {
+        // Serves the searches by last name, and by full name, and the ordering of the contact list
+        @Index(name = "contact_name_idx", columnNames = {"last_name", "first_name", "id"}),
+        @Index(name = "contact_first_name_idx", columnNames = "first_name")
+})
+public class Contact implements Serializable, Versioned {
     /** Default value included to remove warning. Remove or modify at will. **/
     private static final long serialVersionUID = 1L;
 
     public static final String FIND_ALL = "Contact.findAll";
     public static final String FIND_BY_EMAIL = "Contact.findByEmail";
+    public static final String FIND_PAGE = "Contact.findPage";
+    public static final String FIND_EMAILS = "Contact.findEmails";
+    public static final String FIND_NAMES = "Contact.findNames";
+    public static final String UPDATE = "Contact.update";
+    public static final String UPDATE_IF_VERSION = "Contact.updateIfVersion";
+    public static final String FIND_VERSION = "Contact.findVersion";
 
     @Id
-    @GeneratedValue(strategy = GenerationType.TABLE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "contact_seq")
+    @SequenceGenerator(name = "contact_seq", sequenceName = "contact_seq", allocationSize = 50)
     private Long id;
 
     @NotNull
@@ -90,6 +125,12 @@ public class Contact implements Serializable {
     @Column(name = "state")
     private String state;
 
+    /** Incremented on every update. It is not part of the JSON, clients get it as the ETag of the Contact. */
+    @JsonIgnore
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     public Long getId() {
         return id;
     }
@@ -146,6 +187,14 @@ public class Contact implements Serializable {
         return this.state;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,147 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.contact;
+
+import org.jboss.quickstarts.wfk.util.EmailBloomFilter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * <p>Holds the {@link EmailBloomFilter} of contact emails, so that {@link ContactValidator} only queries the database
+ * for emails that may already be taken.</p>
+ *
+ * <p>The filter is loaded from the contact table in the background once the application has started, and reloaded in the background once
+ * deletes and email changes have made it stale, one load at a time. {@link ContactService} adds every email before
+ * it is written, and the filter is told when the transaction writing it completes, so that a reload running meanwhile
+ * keeps it.</p>
+ *
+ * <p>Concurrency is bean managed, the filter does its own locking.</p>
+ *
+ * @see EmailBloomFilter
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ContactEmailFilter {
+
+    /** Number of emails read per query when the filter is loaded. */
+    private static final int PAGE_SIZE = 10000;
+
+    @Inject
+    private @Named("logger") Logger log;
+
+    @Inject
+    private ContactRepository crud;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactions;
+
+    @Resource
+    private TimerService timers;
+
+    private final EmailBloomFilter filter = EmailBloomFilter.fromSystemProperties("contact");
+
+    /** Reads the contact table, whose repository methods are package scoped. */
+    private final EmailBloomFilter.EmailPages pages = new EmailBloomFilter.EmailPages() {
+        @Override
+        public List<String> findEmailPage(String afterEmail, int maxResults) {
+            return crud.findEmailPage(afterEmail, maxResults);
+        }
+    };
+
+    @PostConstruct
+    void init() {
+        timers.createSingleActionTimer(0, new TimerConfig(null, false));
+    }
+
+    @Timeout
+    void load() {
+        refresh();
+    }
+
+    /**
+     * <p>Reloads the filter from the contact table if it has grown stale, unless the first load or an earlier reload
+     * is still running.</p>
+     *
+     * <p>If the table cannot be read, the database keeps being queried for every email until a load succeeds.</p>
+     */
+    @Schedule(hour = "*", minute = "*/15", persistent = false)
+    void refresh() {
+        try {
+            if (filter.reload(pages, PAGE_SIZE)) {
+                log.info("ContactEmailFilter.refresh() - Loaded " + filter.getStatistics());
+            }
+        } catch (RuntimeException e) {
+            log.warning("ContactEmailFilter.refresh() - Unable to load contact emails: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param email The email to look up
+     * @return false if no contact can have the email, true if the database has to be checked
+     */
+    public boolean mightExist(String email) {
+        return filter.mightContain(email);
+    }
+
+    /**
+     * <p>Records the email of a contact that is about to be created.</p>
+     */
+    public void add(String email) {
+        filter.add(email);
+        filter.settleOnCompletion(email, transactions);
+    }
+
+    /**
+     * <p>Records the email of a contact that is about to be updated.</p>
+     */
+    public void replace(String email) {
+        filter.replace(email);
+        filter.settleOnCompletion(email, transactions);
+    }
+
+    /**
+     * <p>Records the email of a contact that has been deleted.</p>
+     */
+    public void remove(String email) {
+        filter.remove(email);
+    }
+
+    /**
+     * <p>Publishes the filter, so that its statistics can be reported.</p>
+     */
+    @Produces
+    @Named("contactEmailFilter")
+    public EmailBloomFilter getFilter() {
+        return filter;
+    }
+}
@@ -16,9 +16,13 @@
  */
 package org.jboss.quickstarts.wfk.contact;
 
+import org.jboss.quickstarts.wfk.util.LogThrottle;
+
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TemporalType;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
@@ -26,6 +30,7 @@ import javax.persistence.criteria.Root;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -41,6 +46,11 @@ import java.util.logging.Logger;
  */
 public class ContactRepository {
 
+    // The writes are logged through throttled call sites, see LogThrottle.
+    private static final LogThrottle CREATING = new LogThrottle(ContactRepository.class, "create", Level.INFO, 10);
+    private static final LogThrottle UPDATING = new LogThrottle(ContactRepository.class, "update", Level.INFO, 10);
+    private static final LogThrottle DELETING = new LogThrottle(ContactRepository.class, "delete", Level.INFO, 10);
+
     @Inject
     private @Named("logger") Logger log;
 
@@ -57,6 +67,27 @@ public class ContactRepository {
         return query.getResultList();
     }
 
+    /**
+     * <p>Returns one page of persisted {@link Contact} objects, sorted alphabetically by last name.</p>
+     *
+     * <p>Rather than skipping rows with an offset, the query seeks past the (lastName, firstName, id) key of the last
+     * Contact of the previous page, so every page costs the same however deep into the table it is.</p>
+     *
+     * @param afterLastName The lastName of the last Contact of the previous page, or null for the first page
+     * @param afterFirstName The firstName of the last Contact of the previous page, or null for the first page
+     * @param afterId The id of the last Contact of the previous page, or null for the first page
+     * @param maxResults The maximum number of Contacts to return
+     * @return List of read-only ContactView objects
+     */
+    List<ContactView> findPage(String afterLastName, String afterFirstName, Long afterId, int maxResults) {
+        TypedQuery<ContactView> query = em.createNamedQuery(Contact.FIND_PAGE, ContactView.class)
+                .setParameter("lastName", afterLastName == null ? "" : afterLastName)
+                .setParameter("firstName", afterFirstName == null ? "" : afterFirstName)
+                .setParameter("id", afterId == null ? Long.valueOf(0) : afterId)
+                .setMaxResults(maxResults);
+        return query.getResultList();
+    }
+
     /**
      * <p>Returns a single Contact object, specified by a Long id.<p/>
      *
@@ -80,6 +111,20 @@ public class ContactRepository {
         return query.getSingleResult();
     }
 
+    /**
+     * <p>Returns the emails that sort after the given one, in order, without loading the contacts they belong to.</p>
+     *
+     * @param afterEmail The last email of the previous page, or the empty string for the first page
+     * @param maxResults The maximum number of emails to return
+     * @return List of emails
+     */
+    List<String> findEmailPage(String afterEmail, int maxResults) {
+        TypedQuery<String> query = em.createNamedQuery(Contact.FIND_EMAILS, String.class)
+                .setParameter("after", afterEmail)
+                .setMaxResults(maxResults);
+        return query.getResultList();
+    }
+
     /**
      * <p>Returns a list of Contact objects, specified by a String firstName.<p/>
      *
@@ -112,6 +157,22 @@ public class ContactRepository {
         return em.createQuery(criteria).getResultList();
     }
 
+    /**
+     * <p>Returns the Contacts with both the given firstName and lastName, in a single query that the database answers
+     * from the (last_name, first_name) index.<p/>
+     *
+     * @param firstName The firstName field of the Contacts to be returned
+     * @param lastName The lastName field of the Contacts to be returned
+     * @return The Contacts with the specified name
+     */
+    List<Contact> findAllByName(String firstName, String lastName) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Contact> criteria = cb.createQuery(Contact.class);
+        Root<Contact> contact = criteria.from(Contact.class);
+        criteria.select(contact).where(cb.equal(contact.get("lastName"), lastName), cb.equal(contact.get("firstName"), firstName));
+        return em.createQuery(criteria).getResultList();
+    }
+
     /**
      * <p>Persists the provided Contact object to the application database using the EntityManager.</p>
      *
@@ -125,7 +186,7 @@ public class ContactRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Contact create(Contact contact) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("ContactRepository.create() - Creating " + contact.getFirstName() + " " + contact.getLastName());
+        CREATING.log(log, "ContactRepository.create() - Creating {0} {1}", contact.getFirstName(), contact.getLastName());
 
         // Write the contact to the database.
         em.persist(contact);
@@ -134,25 +195,43 @@ public class ContactRepository {
     }
 
     /**
-     * <p>Updates an existing Contact object in the application database with the provided Contact object.</p>
-     *
-     * <p>{@link javax.persistence.EntityManager#merge(Object) merge(Object)} creates a new instance of your entity,
-     * copies the state from the supplied entity, and makes the new copy managed. The instance you pass in will not be
-     * managed (any changes you make will not be part of the transaction - unless you call merge again).</p>
+     * <p>Overwrites an existing Contact in the application database with the provided Contact object.</p>
      *
-     * <p>merge(Object) however must have an object with the @Id already generated.</p>
+     * <p>Rather than reading the stored Contact and merging the changes into it, the update is a single UPDATE
+     * statement. When a version is given the statement only matches the Contact while it still has that version, so
+     * that an update made in the meantime by someone else is never overwritten. Either way the Contact is given its
+     * new version, so that it can be tagged with it.</p>
      *
-     * @param contact The Contact object to be merged with an existing Contact
-     * @return The Contact that has been merged
-     * @throws ConstraintViolationException, ValidationException, Exception
+     * @param contact The Contact object to be written, with the id of the existing Contact
+     * @param version The version the existing Contact must have, or null to update it whatever its version
+     * @return true if the Contact has been updated, false if there is no Contact with that id (and version)
      */
-    Contact update(Contact contact) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("ContactRepository.update() - Updating " + contact.getFirstName() + " " + contact.getLastName());
+    boolean update(Contact contact, Long version) {
+        UPDATING.log(log, "ContactRepository.update() - Updating {0} {1}", contact.getFirstName(), contact.getLastName());
 
-        // Either update the contact or add it if it can't be found.
-        em.merge(contact);
+        Query query = em.createNamedQuery(version == null ? Contact.UPDATE : Contact.UPDATE_IF_VERSION)
+                .setParameter("id", contact.getId())
+                .setParameter("firstName", contact.getFirstName())
+                .setParameter("lastName", contact.getLastName())
+                .setParameter("email", contact.getEmail())
+                .setParameter("phoneNumber", contact.getPhoneNumber())
+                .setParameter("birthDate", contact.getBirthDate(), TemporalType.DATE)
+                .setParameter("state", contact.getState());
+        if (version != null) {
+            query.setParameter("version", version);
+        }
 
-        return contact;
+        if (query.executeUpdate() == 0) {
+            return false;
+        }
+        if (version != null) {
+            contact.setVersion(version + 1);
+        } else {
+            // The new version is read back, so that the response can still be tagged with it.
+            contact.setVersion(em.createNamedQuery(Contact.FIND_VERSION, Long.class)
+                    .setParameter("id", contact.getId()).getSingleResult());
+        }
+        return true;
     }
 
     /**
@@ -163,7 +242,7 @@ public class ContactRepository {
      * @throws Exception
      */
     Contact delete(Contact contact) throws Exception {
-        log.info("ContactRepository.delete() - Deleting " + contact.getFirstName() + " " + contact.getLastName());
+        DELETING.log(log, "ContactRepository.delete() - Deleting {0} {1}", contact.getFirstName(), contact.getLastName());
 
         if (contact.getId() != null) {
             /*
@@ -182,7 +261,7 @@ public class ContactRepository {
             em.remove(em.merge(contact));
 
         } else {
-            log.info("ContactRepository.delete() - No ID was found so can't Delete.");
+            DELETING.log(log, "ContactRepository.delete() - No ID was found so can't Delete.");
         }
 
         return contact;
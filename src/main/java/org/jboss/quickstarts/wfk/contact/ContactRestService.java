@@ -18,23 +18,38 @@ package org.jboss.quickstarts.wfk.contact;
 
 import io.swagger.annotations.*;
 import org.jboss.quickstarts.wfk.area.InvalidAreaCodeException;
+import org.jboss.quickstarts.wfk.util.AsyncResponder;
+import org.jboss.quickstarts.wfk.util.EntityTags;
+import org.jboss.quickstarts.wfk.util.PageCursor;
 import org.jboss.quickstarts.wfk.util.RestServiceException;
+import org.jboss.resteasy.annotations.Suspend;
 import org.jboss.resteasy.annotations.cache.Cache;
+import org.jboss.resteasy.spi.AsynchronousResponse;
 
+import javax.annotation.Resource;
+import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.NoResultException;
+import javax.persistence.OptimisticLockException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.logging.Logger;
 
 /**
@@ -66,6 +81,12 @@ public class ContactRestService {
     @Inject
     private ContactService service;
 
+    @Inject
+    private AsyncResponder responder;
+
+    @Resource
+    private SessionContext context;
+
     /**
      * <p>Return all the Contacts.  They are sorted alphabetically by name.</p>
      *
@@ -73,16 +94,23 @@ public class ContactRestService {
      *
      * <p>Examples: <pre>GET api/contacts?firstname=John</pre>, <pre>GET api/contacts?firstname=John&lastname=Smith</pre></p>
      *
+     * <p>Without a name the Contacts are returned one page at a time. The size of a page is given by the
+     * <code>limit</code> query parameter, and the cursor of the next page, if there is one, is returned in the
+     * {@value PageCursor#NEXT_CURSOR_HEADER} header, to be passed back as the <code>after</code> query parameter.</p>
+     *
      * @return A Response containing a list of Contacts
      */
     @GET
-    @ApiOperation(value = "Fetch all Contacts", notes = "Returns a JSON array of all stored Contact objects.")
-    public Response retrieveAllContacts(@QueryParam("firstname") String firstname, @QueryParam("lastname") String lastname) {
+    @ApiOperation(value = "Fetch all Contacts", notes = "Returns a JSON array of stored Contact objects. Without a name "
+            + "they are returned one page at a time, with the cursor of the next page in the "
+            + PageCursor.NEXT_CURSOR_HEADER + " header.")
+    public Response retrieveAllContacts(@QueryParam("firstname") String firstname, @QueryParam("lastname") String lastname,
+            @QueryParam("after") String after, @QueryParam("limit") Integer limit) {
         //Create an empty collection to contain the intersection of Contacts to be returned
         List<Contact> contacts;
 
         if(firstname == null && lastname == null) {
-            contacts = service.findAllOrderedByName();
+            return retrieveContactPage(after, limit);
         } else if(lastname == null) {
             try {
                 contacts = service.findAllByFirstName(firstname);
@@ -101,8 +129,7 @@ public class ContactRestService {
             }
         } else {
             try {
-                contacts = service.findAllByFirstName(firstname);
-                contacts.retainAll(service.findAllByLastName(lastname));
+                contacts = service.findAllByName(firstname, lastname);
             } catch(NoResultException e) {
                 // Verify that a contact exists with the firstname. Return 404, if not present.
                 throw new RestServiceException("No Contact with the name " + firstname + " " + lastname + " was found!",
@@ -113,6 +140,25 @@ public class ContactRestService {
         return Response.ok(contacts).build();
     }
 
+    private Response retrieveContactPage(String after, Integer limit) {
+        int pageSize = PageCursor.limit(limit);
+        PageCursor cursor = after == null ? null : PageCursor.decode(after, 3);
+
+        // One extra Contact is fetched to find out whether there is a next page.
+        List<ContactView> contacts = cursor == null
+                ? service.findPage(null, null, null, pageSize + 1)
+                : service.findPage(cursor.getString(0), cursor.getString(1), cursor.getLong(2), pageSize + 1);
+        Response.ResponseBuilder builder = Response.ok(contacts);
+
+        if (contacts.size() > pageSize) {
+            contacts.remove(pageSize);
+            ContactView last = contacts.get(pageSize - 1);
+            builder.header(PageCursor.NEXT_CURSOR_HEADER,
+                    PageCursor.encode(last.getLastName(), last.getFirstName(), last.getId()));
+        }
+        return builder.build();
+    }
+
     /**
      * <p>Search for and return a Contact identified by email address.<p/>
      *
@@ -152,7 +198,11 @@ public class ContactRestService {
     /**
      * <p>Search for and return a Contact identified by id.</p>
      *
+     * <p>The Contact is tagged with a strong ETag derived from its version. A request whose If-None-Match header holds
+     * the current ETag is answered with 304 Not Modified, without writing the Contact.</p>
+     *
      * @param id The long parameter value provided as a Contact's id
+     * @param request The request, used to evaluate its conditional headers
      * @return A Response containing a single Contact
      */
     @GET
@@ -160,16 +210,19 @@ public class ContactRestService {
     @Path("/{id:[0-9]+}")
     @ApiOperation(
             value = "Fetch a Contact by id",
-            notes = "Returns a JSON representation of the Contact object with the provided id."
+            notes = "Returns a JSON representation of the Contact object with the provided id, tagged with an ETag that "
+                    + "can be sent back in the If-None-Match header of a later GET or in the If-Match header of a PUT."
     )
     @ApiResponses(value = {
             @ApiResponse(code = 200, message ="Contact found"),
+            @ApiResponse(code = 304, message ="Contact has not changed since the ETag in If-None-Match"),
             @ApiResponse(code = 404, message = "Contact with id not found")
     })
     public Response retrieveContactById(
             @ApiParam(value = "Id of Contact to be fetched", allowableValues = "range[0, infinity]", required = true)
             @PathParam("id")
-            long id) {
+            long id,
+            @Context Request request) {
 
         Contact contact = service.findById(id);
         if (contact == null) {
@@ -178,7 +231,13 @@ public class ContactRestService {
         }
         log.info("findById " + id + ": found Contact = " + contact.toString());
 
-        return Response.ok(contact).build();
+        EntityTag tag = EntityTags.of(contact);
+        Response.ResponseBuilder notModified = EntityTags.evaluatePreconditions(request, tag);
+        if (notModified != null) {
+            // The client's copy is up to date, so the Contact is not written.
+            return notModified.build();
+        }
+        return Response.ok(contact).tag(tag).build();
     }
 
     /**
@@ -213,7 +272,7 @@ public class ContactRestService {
             service.create(contact);
 
             // Create a "Resource Created" 201 Response and pass the contact back in case it is needed.
-            builder = Response.status(Response.Status.CREATED).entity(contact);
+            builder = Response.status(Response.Status.CREATED).entity(contact).tag(EntityTags.of(contact));
 
 
         } catch (ConstraintViolationException ce) {
@@ -243,13 +302,53 @@ public class ContactRestService {
         return builder.build();
     }
 
+    /**
+     * <p>Asynchronous variant of {@link #createContact(Contact)}, which releases the request thread whilst the Contact is
+     * created, including the lookup of its area code.</p>
+     *
+     * <p>The request is answered with 503 Service Unavailable if it takes longer than {@link AsyncResponder#TIMEOUT}
+     * milliseconds.</p>
+     *
+     * @param contact The Contact object, constructed automatically from JSON input
+     * @param response The suspended request, answered as createContact would
+     */
+    @POST
+    @Path("/async")
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    @ApiOperation(value = "Add a new Contact to the database, asynchronously")
+    @ApiResponses(value = {
+            @ApiResponse(code = 201, message = "Contact created successfully."),
+            @ApiResponse(code = 400, message = "Invalid Contact supplied in request body"),
+            @ApiResponse(code = 409, message = "Contact supplied in request body conflicts with an existing Contact"),
+            @ApiResponse(code = 500, message = "An unexpected error occurred whilst processing the request"),
+            @ApiResponse(code = 503, message = "Too many pending requests, or the request timed out")
+    })
+    public void createContactAsync(
+            @ApiParam(value = "JSON representation of Contact object to be added to the database", required = true)
+            final Contact contact,
+            @Suspend(AsyncResponder.TIMEOUT) AsynchronousResponse response) {
+
+        final ContactRestService self = context.getBusinessObject(ContactRestService.class);
+        responder.submit(response, new Callable<Response>() {
+            @Override
+            public Response call() {
+                return self.createContact(contact);
+            }
+        });
+    }
+
     /**
      * <p>Updates the contact with the ID provided in the database. Performs validation, and will return a JAX-RS response
      * with either 200 (ok), or with a map of fields, and related errors.</p>
      *
+     * <p>With an If-Match header the update is conditional: it is made only if the Contact still has the version of
+     * that ETag, and is otherwise answered with 412 Precondition Failed. Either way the updated Contact is tagged with its
+     * new ETag.</p>
+     *
      * @param contact The Contact object, constructed automatically from JSON input, to be <i>updated</i> via
-     * {@link ContactService#update(Contact)}
+     * {@link ContactService#update(Contact, Long)}
      * @param id The long parameter value provided as the id of the Contact to be updated
+     * @param ifMatch The ETag of the Contact as last fetched by the client, or null
      * @return A Response indicating the outcome of the create operation
      */
     @PUT
@@ -260,12 +359,16 @@ public class ContactRestService {
             @ApiResponse(code = 400, message = "Invalid Contact supplied in request body"),
             @ApiResponse(code = 404, message = "Contact with id not found"),
             @ApiResponse(code = 409, message = "Contact details supplied in request body conflict with another existing Contact"),
+            @ApiResponse(code = 412, message = "Contact has changed since the ETag in If-Match"),
             @ApiResponse(code = 500, message = "An unexpected error occurred whilst processing the request")
     })
     public Response updateContact(
             @ApiParam(value = "Id of Contact to be updated", allowableValues = "range[0, infinity]", required = true)
             @PathParam("id")
             long id,
+            @ApiParam(value = "ETag of the Contact as last fetched", required = false)
+            @HeaderParam(HttpHeaders.IF_MATCH)
+            String ifMatch,
             @ApiParam(value = "JSON representation of Contact object to be updated in the database", required = true)
             Contact contact) {
 
@@ -281,20 +384,25 @@ public class ContactRestService {
                     responseObj, Response.Status.CONFLICT);
         }
 
-        if (service.findById(contact.getId()) == null) {
-            // Verify that the contact exists. Return 404, if not present.
-            throw new RestServiceException("No Contact with the id " + id + " was found!", Response.Status.NOT_FOUND);
-        }
+        contact.setId(id);
+        Long version = EntityTags.versionToMatch(ifMatch, id);
 
         Response.ResponseBuilder builder;
 
         try {
-            // Apply the changes the Contact.
-            service.update(contact);
+            // Apply the changes the Contact, in a single statement that does not match if it is missing or has changed.
+            service.update(contact, version);
 
             // Create an OK Response and pass the ccontact back in case it is needed.
-            builder = Response.ok(contact);
+            builder = Response.ok(contact).tag(EntityTags.of(contact));
 
+        } catch (OptimisticLockException e) {
+            if (service.findById(id) == null) {
+                // Verify that the contact exists. Return 404, if not present.
+                throw new RestServiceException("No Contact with the id " + id + " was found!", Response.Status.NOT_FOUND, e);
+            }
+            throw new RestServiceException("The Contact with the id " + id + " has changed since " + ifMatch,
+                    Response.Status.PRECONDITION_FAILED, e);
 
         } catch (ConstraintViolationException ce) {
             //Handle bean validation issues
@@ -323,6 +431,51 @@ public class ContactRestService {
         return builder.build();
     }
 
+    /**
+     * <p>Asynchronous variant of {@link #updateContact(long, String, Contact)}, which releases the request thread whilst
+     * the Contact is updated, including the lookup of its area code.</p>
+     *
+     * <p>The request is answered with 503 Service Unavailable if it takes longer than {@link AsyncResponder#TIMEOUT}
+     * milliseconds.</p>
+     *
+     * @param id The long parameter value provided as the id of the Contact to be updated
+     * @param ifMatch The ETag of the Contact as last fetched by the client, or null
+     * @param contact The Contact object, constructed automatically from JSON input
+     * @param response The suspended request, answered as updateContact would
+     */
+    @PUT
+    @Path("/{id:[0-9]+}/async")
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    @ApiOperation(value = "Update a Contact in the database, asynchronously")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Contact updated successfully"),
+            @ApiResponse(code = 400, message = "Invalid Contact supplied in request body"),
+            @ApiResponse(code = 404, message = "Contact with id not found"),
+            @ApiResponse(code = 409, message = "Contact details supplied in request body conflict with another existing Contact"),
+            @ApiResponse(code = 412, message = "Contact has changed since the ETag in If-Match"),
+            @ApiResponse(code = 500, message = "An unexpected error occurred whilst processing the request"),
+            @ApiResponse(code = 503, message = "Too many pending requests, or the request timed out")
+    })
+    public void updateContactAsync(
+            @ApiParam(value = "Id of Contact to be updated", allowableValues = "range[0, infinity]", required = true)
+            @PathParam("id")
+            final long id,
+            @ApiParam(value = "ETag of the Contact as last fetched", required = false)
+            @HeaderParam(HttpHeaders.IF_MATCH)
+            final String ifMatch,
+            @ApiParam(value = "JSON representation of Contact object to be updated in the database", required = true)
+            final Contact contact,
+            @Suspend(AsyncResponder.TIMEOUT) AsynchronousResponse response) {
+
+        final ContactRestService self = context.getBusinessObject(ContactRestService.class);
+        responder.submit(response, new Callable<Response>() {
+            @Override
+            public Response call() {
+                return self.updateContact(id, ifMatch, contact);
+            }
+        });
+    }
+
     /**
      * <p>Deletes a contact using the ID provided. If the ID is not present then nothing can be deleted.</p>
      *
@@ -17,19 +17,22 @@
 package org.jboss.quickstarts.wfk.contact;
 
 import org.jboss.quickstarts.wfk.area.Area;
-import org.jboss.quickstarts.wfk.area.AreaService;
-import org.jboss.quickstarts.wfk.area.InvalidAreaCodeException;
-import org.jboss.resteasy.client.ClientResponse;
-import org.jboss.resteasy.client.ClientResponseFailure;
-import org.jboss.resteasy.client.ProxyFactory;
+import org.jboss.quickstarts.wfk.area.AreaCodeResolver;
+import org.jboss.quickstarts.wfk.area.AreaServiceClient;
+import org.jboss.quickstarts.wfk.search.NameMatch;
+import org.jboss.quickstarts.wfk.search.NameSearch;
+import org.jboss.quickstarts.wfk.util.AsyncResponder;
+import org.jboss.quickstarts.wfk.util.LogThrottle;
 
 import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.persistence.OptimisticLockException;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
-import javax.ws.rs.core.Response;
 import java.util.List;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -45,11 +48,18 @@ import java.util.logging.Logger;
  * @author Joshua Wilson
  * @see ContactValidator
  * @see ContactRepository
+ * @see AreaCodeResolver
+ * @see AreaServiceClient
  */
 //The @Dependent is the default scope is listed here so that you know what scope is being used.
 @Dependent
 public class ContactService {
 
+    // The writes are logged through throttled call sites, so that a burst of them does not turn into a burst of logging.
+    private static final LogThrottle CREATING = new LogThrottle(ContactService.class, "create", Level.INFO, 10);
+    private static final LogThrottle UPDATING = new LogThrottle(ContactService.class, "update", Level.INFO, 10);
+    private static final LogThrottle DELETING = new LogThrottle(ContactService.class, "delete", Level.INFO, 10);
+
     @Inject
     private @Named("logger") Logger log;
 
@@ -59,6 +69,18 @@ public class ContactService {
     @Inject
     private ContactRepository crud;
 
+    @Inject
+    private ContactEmailFilter emails;
+
+    @Inject
+    private NameSearch names;
+
+    @Inject
+    private AreaCodeResolver areaCodes;
+
+    @Inject
+    private AreaServiceClient areaClient;
+
     /**
      * <p>Returns a List of all persisted {@link Contact} objects, sorted alphabetically by last name.<p/>
      *
@@ -68,6 +90,16 @@ public class ContactService {
         return crud.findAllOrderedByName();
     }
 
+    /**
+     * <p>Returns one page of persisted {@link Contact} objects as read-only {@link ContactView}s, sorted alphabetically by
+     * last name.<p/>
+     *
+     * @see ContactRepository#findPage(String, String, Long, int)
+     */
+    List<ContactView> findPage(String afterLastName, String afterFirstName, Long afterId, int maxResults) {
+        return crud.findPage(afterLastName, afterFirstName, afterId, maxResults);
+    }
+
     /**
      * <p>Returns a single Contact object, specified by a Long id.<p/>
      *
@@ -107,7 +139,18 @@ public class ContactService {
      * @return The Contacts with the specified lastName
      */
     List<Contact> findAllByLastName(String lastName) {
-        return crud.findAllByFirstName(lastName);
+        return crud.findAllByLastName(lastName);
+    }
+
+    /**
+     * <p>Returns the Contacts with both the given firstName and lastName.<p/>
+     *
+     * @param firstName The firstName field of the Contacts to be returned
+     * @param lastName The lastName field of the Contacts to be returned
+     * @return The Contacts with the specified name
+     */
+    List<Contact> findAllByName(String firstName, String lastName) {
+        return crud.findAllByName(firstName, lastName);
     }
 
     /**
@@ -120,29 +163,18 @@ public class ContactService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Contact create(Contact contact) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("ContactService.create() - Creating " + contact.getFirstName() + " " + contact.getLastName());
+        CREATING.log(log, "ContactService.create() - Creating {0} {1}", contact.getFirstName(), contact.getLastName());
         
-        // Check to make sure the data fits with the parameters in the Contact model and passes validation.
-        validator.validateContact(contact);
-
-        //Create client service instance to make REST requests to upstream service
-        AreaService service = ProxyFactory.create(AreaService.class, "http://states-100937864.rhcloud.com");
+        // Check to make sure the data fits with the parameters in the Contact model and resolve its state.
+        validateAndResolveState(contact);
 
-        ClientResponse<Area> response = service.getAreaById(Integer.parseInt(contact.getPhoneNumber().substring(1, 4)));
-
-        try {
-            Area area = response.getEntity();
-            contact.setState(area.getState());
-        } catch (ClientResponseFailure e) {
-            if(e.getResponse().getResponseStatus() == Response.Status.NOT_FOUND) {
-                throw new InvalidAreaCodeException("The area code provided does not exist", e);
-            } else {
-                throw e;
-            }
-        }
+        // The email filter must know the email before the contact is written.
+        emails.add(contact.getEmail());
 
         // Write the contact to the database.
-        return crud.create(contact);
+        crud.create(contact);
+        names.saved(NameMatch.of(contact));
+        return contact;
     }
 
     /**
@@ -151,33 +183,26 @@ public class ContactService {
      * <p>Validates the data in the provided Contact object using a ContactValidator object.<p/>
      *
      * @param contact The Contact object to be passed as an update to the application database
+     * @param version The version the stored Contact must still have, or null to update it whatever its version
      * @return The Contact object that has been successfully updated in the application database
+     * @throws OptimisticLockException If there is no Contact with the id of the provided one, or not with that version
      * @throws ConstraintViolationException, ValidationException, Exception
      */
-    Contact update(Contact contact) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("ContactService.update() - Updating " + contact.getFirstName() + " " + contact.getLastName());
+    Contact update(Contact contact, Long version) throws ConstraintViolationException, ValidationException, Exception {
+        UPDATING.log(log, "ContactService.update() - Updating {0} {1}", contact.getFirstName(), contact.getLastName());
         
-        // Check to make sure the data fits with the parameters in the Contact model and passes validation.
-        validator.validateContact(contact);
-
-        //Create client service instance to make REST requests to upstream service
-        AreaService service = ProxyFactory.create(AreaService.class, "http://states-100937864.rhcloud.com");
+        // Check to make sure the data fits with the parameters in the Contact model and resolve its state.
+        validateAndResolveState(contact);
 
-        ClientResponse<Area> response = service.getAreaById(Integer.parseInt(contact.getPhoneNumber().substring(1, 4)));
+        emails.replace(contact.getEmail());
 
-        try {
-            Area area = response.getEntity();
-            contact.setState(area.getState());
-        } catch (ClientResponseFailure e) {
-            if(e.getResponse().getResponseStatus() == Response.Status.NOT_FOUND) {
-                throw new InvalidAreaCodeException("The area code provided does not exist", e);
-            } else {
-                throw e;
-            }
+        // Update the contact, if it still exists (with that version).
+        if (!crud.update(contact, version)) {
+            throw new OptimisticLockException("Contact " + contact.getId() + " not found with version " + version, null,
+                    contact);
         }
-
-        // Either update the contact or add it if it can't be found.
-        return crud.update(contact);
+        names.saved(NameMatch.of(contact));
+        return contact;
     }
 
     /**
@@ -188,16 +213,51 @@ public class ContactService {
      * @throws Exception
      */
     Contact delete(Contact contact) throws Exception {
-        log.info("delete() - Deleting " + contact.toString());
+        DELETING.log(log, "ContactService.delete() - Deleting {0} {1}", contact.getFirstName(), contact.getLastName());
 
         Contact deletedContact = null;
 
         if (contact.getId() != null) {
             deletedContact = crud.delete(contact);
+            emails.remove(contact.getEmail());
+            names.deleted(NameMatch.Type.CONTACT, contact.getId());
         } else {
-            log.info("delete() - No ID was found so can't Delete.");
+            DELETING.log(log, "ContactService.delete() - No ID was found so can't Delete.");
         }
 
         return deletedContact;
     }
+
+    /**
+     * <p>Validates the provided Contact object using a {@link ContactValidator} object and sets its state from the area
+     * code of its phone number.</p>
+     *
+     * <p>When the area code table has not been loaded yet the upstream lookup is started before bean validation, so
+     * that the remote round trip overlaps with it. Asynchronous requests already run on the asynchronous EJB thread pool
+     * though, and make the lookup on their own thread: started on the same pool and waited for, it could be left without
+     * a thread once every thread of the pool waits for a lookup.</p>
+     *
+     * @param contact The Contact object to be validated
+     * @throws ConstraintViolationException, ValidationException
+     */
+    private void validateAndResolveState(Contact contact) throws ConstraintViolationException, ValidationException {
+        int areaCode = AreaCodeResolver.areaCodeOf(contact.getPhoneNumber());
+        boolean overlap = areaCode >= 0 && !areaCodes.isLoaded() && !AsyncResponder.isResponding();
+        Future<Area> pendingArea = overlap ? areaClient.getAreaByIdAsync(areaCode) : null;
+
+        try {
+            validator.validateContact(contact);
+        } catch (ValidationException e) {
+            if (pendingArea != null) {
+                pendingArea.cancel(true);
+            }
+            throw e;
+        }
+
+        if (pendingArea == null) {
+            contact.setState(areaCodes.findStateByAreaCode(areaCode));
+        } else {
+            contact.setState(areaClient.await(pendingArea).getState());
+        }
+    }
 }
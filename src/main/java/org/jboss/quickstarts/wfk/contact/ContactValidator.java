@@ -40,6 +40,9 @@ public class ContactValidator {
     @Inject
     private ContactRepository crud;
 
+    @Inject
+    private ContactEmailFilter emails;
+
     /**
      * <p>Validates the given Contact object and throws validation exceptions based on the type of error. If the error is standard
      * bean validation errors then it will throw a ConstraintValidationException with the set of the constraints violated.<p/>
@@ -74,11 +77,17 @@ public class ContactValidator {
      * <p>Since Update will being using an email that is already in the database we need to make sure that it is the email
      * from the record being updated.</p>
      *
+     * <p>Emails that {@link ContactEmailFilter} has never seen are known to be unique without a query.</p>
+     *
      * @param email The email to check is unique
      * @param id The user id to check the email against if it was found
      * @return boolean which represents whether the email was found, and if so if it belongs to the user with id
      */
     boolean emailAlreadyExists(String email, Long id) {
+        if (!emails.mightExist(email)) {
+            return false;
+        }
+
         Contact contact = null;
         Contact contactWithID = null;
         try {
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -11,18 +12,23 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
+import javax.persistence.QueryHint;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
 import javax.xml.bind.annotation.XmlRootElement;
 
 import org.codehaus.jackson.annotate.JsonIgnore;
+import org.hibernate.annotations.Index;
 import org.hibernate.validator.constraints.Email;
 import org.hibernate.validator.constraints.NotEmpty;
 import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.util.Versioned;
 
 //This class illustrates the customer information stored in the database
 //it also retrieves customer info from the database (@NamedQueries) and sets constraints for the table fields
@@ -31,20 +37,46 @@ import org.jboss.quickstarts.wfk.booking.Booking;
  * form of query in JPA though is it more error prone due to the syntax being in a String.  This makes it harder to debug.
  */
 @Entity
+@Cacheable //customers are kept in the second-level cache, see persistence.xml
 @NamedQueries({ //finds all customers by name or email 
-        @NamedQuery(name = Customer.FIND_ALL, query = "SELECT c FROM Customer c ORDER BY c.name ASC"),
-        @NamedQuery(name = Customer.FIND_BY_EMAIL, query = "SELECT c FROM Customer c WHERE c.email = :email")
+        @NamedQuery(name = Customer.FIND_ALL, query = "SELECT c FROM Customer c ORDER BY c.name ASC, c.id ASC"), //also used for streaming
+        @NamedQuery(name = Customer.FIND_BY_EMAIL, query = "SELECT c FROM Customer c WHERE c.email = :email"),
+        @NamedQuery(name = Customer.FIND_ALL_BY_ID, query = "SELECT c FROM Customer c WHERE c.id IN :ids"),
+        @NamedQuery(name = Customer.FIND_NAMES, query = "SELECT c.id, c.name FROM Customer c WHERE c.id > :after ORDER BY c.id ASC"),
+        @NamedQuery(name = Customer.FIND_EMAILS, query = "SELECT c.email FROM Customer c WHERE c.email > :after ORDER BY c.email ASC"),
+        //the list is read into read-only CustomerView objects rather than entities, and does not flush the persistence context
+        @NamedQuery(name = Customer.FIND_PAGE, query = "SELECT NEW org.jboss.quickstarts.wfk.customer.CustomerView(c.id, c.name, c.email, c.phoneNumber) "
+        		+ "FROM Customer c WHERE c.name >= :name " //the leading range lets the name index be seeked
+        		+ "AND (c.name > :name OR c.id > :id) ORDER BY c.name ASC, c.id ASC",
+        		hints = @QueryHint(name = "org.hibernate.flushMode", value = "COMMIT")),
+        //updates in a single statement, without reading the customer first, see CustomerRepository.update
+        @NamedQuery(name = Customer.UPDATE, query = "UPDATE Customer c SET c.name = :name, c.email = :email, "
+        		+ "c.phoneNumber = :phoneNumber, c.version = c.version + 1 WHERE c.id = :id"),
+        @NamedQuery(name = Customer.UPDATE_IF_VERSION, query = "UPDATE Customer c SET c.name = :name, c.email = :email, "
+        		+ "c.phoneNumber = :phoneNumber, c.version = c.version + 1 WHERE c.id = :id AND c.version = :version"),
+        @NamedQuery(name = Customer.FIND_VERSION, query = "SELECT c.version FROM Customer c WHERE c.id = :id")
 })
 @XmlRootElement
 @Table(name = "customer", uniqueConstraints = @UniqueConstraint(columnNames = "email")) //assigns email as unique key to the table
-public class Customer implements Serializable {
+@org.hibernate.annotations.Table(appliesTo = "customer", indexes = {
+		@Index(name = "customer_name_idx", columnNames = {"name", "id"}) //the customer list, in name order
+})
+public class Customer implements Serializable, Versioned {
 	private static final long serialVersionUID = 1L; //this is a default value to remove warnings
 	
     public static final String FIND_ALL = "Customer.findAll";
     public static final String FIND_BY_EMAIL = "Customer.findByEmail";
+    public static final String FIND_ALL_BY_ID = "Customer.findAllById"; //loads a set of customers in one query
+    public static final String FIND_PAGE = "Customer.findPage"; //seeks past a (name, id) pair, see CustomerRepository.findPage
+    public static final String FIND_NAMES = "Customer.findNames"; //pages through the names only, see NameSearch
+    public static final String FIND_EMAILS = "Customer.findEmails"; //pages through the emails only, see CustomerEmailFilter
+    public static final String UPDATE = "Customer.update"; //overwrites a customer whatever its version
+    public static final String UPDATE_IF_VERSION = "Customer.updateIfVersion"; //same, only if it still has the expected version
+    public static final String FIND_VERSION = "Customer.findVersion"; //reads the version an unconditional update has set
 	
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY) //sets unique ID and increment to the number
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_seq") //sets unique ID and increment to the number
+    @SequenceGenerator(name = "customer_seq", sequenceName = "customer_seq", allocationSize = 50) //ids are reserved 50 at a time, so inserts can be batched
 	private Long id;
 	
     @NotNull //sets name constraints
@@ -63,6 +95,11 @@ public class Customer implements Serializable {
     @Column(name = "phone_number")
 	private String phoneNumber;
     
+    @JsonIgnore //not part of the json, clients get it as the ETag of the customer
+    @Version //incremented on every update, for optimistic locking
+    @Column(name = "version", nullable = false)
+    private Long version;
+    
     @JsonIgnore
     @OneToMany(mappedBy="customer", orphanRemoval=true) //when is removed applies cascade removal to the booking
     private Set<Booking> bookings = new HashSet<Booking>();
@@ -108,6 +145,14 @@ public class Customer implements Serializable {
         this.phoneNumber = phoneNumber;
     }
     
+    public Long getVersion() {
+    	return version;
+    }
+    
+    public void setVersion(Long version) {
+    	this.version = version;
+    }
+    
     public Set<Booking> getBookings() {
     	return bookings;
     }
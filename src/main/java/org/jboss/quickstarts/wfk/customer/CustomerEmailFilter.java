@@ -0,0 +1,103 @@
+package org.jboss.quickstarts.wfk.customer;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.jboss.quickstarts.wfk.util.EmailBloomFilter;
+
+/**
+ * <p>Holds the {@link EmailBloomFilter} of customer emails, so that {@link CustomerValidator} only queries the database
+ * for emails that may already be taken.</p>
+ *
+ * <p>The filter is loaded from the customer table in the background once the application has started, and reloaded in the background once
+ * deletes and email changes have made it stale, one load at a time. {@link CustomerService} adds every email before
+ * it is written, and the filter is told when the transaction writing it completes, so that a reload running meanwhile
+ * keeps it.</p>
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN) //the filter does its own locking
+public class CustomerEmailFilter {
+	private static final int PAGE_SIZE = 10000; //emails read per query when loading
+	
+    @Inject //automatic logging dependency
+    private @Named("logger") Logger log;
+
+    @Inject //calls crud dependency
+    private CustomerRepository crud;
+    
+    @Resource //tells when the transactions writing emails complete
+    private TransactionSynchronizationRegistry transactions;
+    
+    @Resource //loads the filter after startup
+    private TimerService timers;
+    
+    private final EmailBloomFilter filter = EmailBloomFilter.fromSystemProperties("customer");
+    
+    private final EmailBloomFilter.EmailPages pages = new EmailBloomFilter.EmailPages() { //reads the customer table
+    	@Override
+    	public List<String> findEmailPage(String afterEmail, int maxResults) {
+    		return crud.findEmailPage(afterEmail, maxResults);
+    	}
+    };
+    
+    @PostConstruct
+    void init() { //the first load runs on a timer thread, so that the deployment does not wait for it
+    	timers.createSingleActionTimer(0, new TimerConfig(null, false));
+    }
+    
+    @Timeout
+    void load() {
+    	refresh();
+    }
+    
+    @Schedule(hour = "*", minute = "*/15", persistent = false) //reloads the filter if it has grown stale
+    void refresh() { //skipped while the first load or an earlier refresh is still running
+    	try {
+    		if (filter.reload(pages, PAGE_SIZE)) {
+    			log.info("CustomerEmailFilter.refresh() - Loaded " + filter.getStatistics());
+    		}
+    	} catch (RuntimeException e) { //the database is still queried for every email until a load succeeds
+    		log.warning("CustomerEmailFilter.refresh() - Unable to load customer emails: " + e.getMessage());
+    	}
+    }
+    
+    public boolean mightExist(String email) { //false if no customer can have this email
+    	return filter.mightContain(email);
+    }
+    
+    public void add(String email) { //called before a customer with this email is written
+    	filter.add(email);
+    	filter.settleOnCompletion(email, transactions);
+    }
+    
+    public void replace(String email) { //called before an existing customer is written with this email
+    	filter.replace(email);
+    	filter.settleOnCompletion(email, transactions);
+    }
+    
+    public void remove(String email) { //called when a customer is deleted
+    	filter.remove(email);
+    }
+    
+    @Produces
+    @Named("customerEmailFilter") //published for the cache statistics
+    public EmailBloomFilter getFilter() {
+    	return filter;
+    }
+}
@@ -1,5 +1,7 @@
 package org.jboss.quickstarts.wfk.customer;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -7,7 +9,11 @@ import javax.persistence.EntityExistsException;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.NonUniqueResultException;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.jboss.quickstarts.wfk.util.ScrollingJsonOutput;
 
 
 public class CustomerRepository {
@@ -19,6 +25,32 @@ public class CustomerRepository {
         return query.getResultList();
     }
     
+    /**
+     * <p>Returns one page of customers sorted by name, seeking past the (name, id) pair of the last customer of the
+     * previous page rather than skipping rows with an offset.</p>
+     *
+     * @param afterName The name of the last customer of the previous page, or null for the first page
+     * @param afterId The id of the last customer of the previous page, or null for the first page
+     * @param maxResults The maximum number of customers to return
+     * @return List of read-only CustomerView objects
+     */
+    List<CustomerView> findPage(String afterName, Long afterId, int maxResults) {
+        TypedQuery<CustomerView> query = em.createNamedQuery(Customer.FIND_PAGE, CustomerView.class)
+                .setParameter("name", afterName == null ? "" : afterName)
+                .setParameter("id", afterId == null ? Long.valueOf(0) : afterId)
+                .setMaxResults(maxResults);
+        return query.getResultList();
+    }
+    
+    /**
+     * <p>Returns every customer, sorted by name, as a JSON array written straight from a database cursor.</p>
+     *
+     * @see ScrollingJsonOutput
+     */
+    StreamingOutput streamAll() {
+        return new ScrollingJsonOutput(em, Customer.FIND_ALL);
+    }
+    
     Customer findByEmail(String email) throws NonUniqueResultException { //returns customer that uses the requested email
         TypedQuery<Customer> query = em.createNamedQuery(Customer.FIND_BY_EMAIL, Customer.class).setParameter("email", email);
         Customer result = null; //if email not found then result is null
@@ -34,6 +66,21 @@ public class CustomerRepository {
     	return em.find(Customer.class, id);
     }
     
+    List<Customer> findAllById(Collection<Long> ids) { //returns the customers with the given ids in a single query, missing ids are skipped
+    	if (ids.isEmpty()) {
+    		return new ArrayList<Customer>(0);
+    	}
+    	TypedQuery<Customer> query = em.createNamedQuery(Customer.FIND_ALL_BY_ID, Customer.class).setParameter("ids", ids);
+    	return query.getResultList();
+    }
+    
+    List<String> findEmailPage(String afterEmail, int maxResults) { //returns the next emails in order, without loading the customers
+    	TypedQuery<String> query = em.createNamedQuery(Customer.FIND_EMAILS, String.class)
+    			.setParameter("after", afterEmail)
+    			.setMaxResults(maxResults);
+    	return query.getResultList();
+    }
+    
     Customer create(Customer customer) throws EntityExistsException {
         // stores customer to the Database
         em.persist(customer);
@@ -41,11 +88,37 @@ public class CustomerRepository {
         return customer;
     }
     
-    public Customer update(Customer customer) {
-    	// if the customer is already stores in the database it gets updated otherwise it is just added
-        em.merge(customer);
+    /**
+     * <p>Overwrites a stored customer in a single UPDATE statement, without reading it first. When a version is given the
+     * statement only matches the customer while it still has that version, so a concurrent update is never lost.</p>
+     * 
+     * <p>The customer is given its new version either way, so that it can be tagged with it.</p>
+     *
+     * @param customer The new state of the customer, with the id of the stored customer
+     * @param version The version the stored customer must have, or null to update it whatever its version
+     * @return true if the customer has been updated, false if no customer has that id (and version)
+     */
+    boolean update(Customer customer, Long version) {
+        Query query = em.createNamedQuery(version == null ? Customer.UPDATE : Customer.UPDATE_IF_VERSION)
+                .setParameter("id", customer.getId())
+                .setParameter("name", customer.getName())
+                .setParameter("email", customer.getEmail())
+                .setParameter("phoneNumber", customer.getPhoneNumber());
+        if (version != null) {
+        	query.setParameter("version", version);
+        }
         
-        return customer;
+        if (query.executeUpdate() == 0) {
+        	return false;
+        }
+        
+        if (version != null) {
+        	customer.setVersion(version + 1);
+        } else { //the new version is read back, so that the response can still be tagged with it
+        	customer.setVersion(em.createNamedQuery(Customer.FIND_VERSION, Long.class)
+        			.setParameter("id", customer.getId()).getSingleResult());
+        }
+        return true;
     }
     
     Customer delete(Customer customer) { //deletes the customer from the database
@@ -8,19 +8,28 @@ import java.util.logging.Logger;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.persistence.OptimisticLockException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
+import org.jboss.quickstarts.wfk.util.EntityTags;
+import org.jboss.quickstarts.wfk.util.PageCursor;
 import org.jboss.quickstarts.wfk.util.RestServiceException;
 
 import io.swagger.annotations.Api;
@@ -44,22 +53,51 @@ public class CustomerRestService {
     private @Named("logger") Logger log;
     
 	
-    @GET //returns all stored customers in a array
-    @ApiOperation(value = "Fetch all Customers", notes = "Returns a JSON array of all stored Customers")
-	public Response getAllCustomers() {
-		List<Customer> customers = service.findAllOrderedByName();
-		return Response.ok(customers).build();
+    @GET //returns one page of stored customers in a array
+    @ApiOperation(value = "Fetch all Customers", notes = "Returns a JSON array of stored Customers, one page at a time. "
+    		+ "The cursor of the next page is returned in the " + PageCursor.NEXT_CURSOR_HEADER + " header. "
+    		+ "With stream=true every Customer is returned at once, streamed as it is read from the database")
+	public Response getAllCustomers(
+			@ApiParam(value = "Cursor returned with the previous page", required = false)
+			@QueryParam("after") String after,
+			@ApiParam(value = "Maximum number of Customers to return", allowableValues = "range[1, 1000]", required = false)
+			@QueryParam("limit") Integer limit,
+			@ApiParam(value = "Stream every Customer in a single response instead of one page", required = false)
+			@QueryParam("stream") boolean stream) {
+    	if(stream) { //the whole table is written straight from a database cursor, without paging
+    		return Response.ok(service.streamAll()).build();
+    	}
+    	
+    	int pageSize = PageCursor.limit(limit);
+    	PageCursor cursor = after == null ? null : PageCursor.decode(after, 2);
+    	
+    	//one extra customer is fetched to find out whether there is a next page
+		List<CustomerView> customers = cursor == null
+				? service.findPage(null, null, pageSize + 1)
+				: service.findPage(cursor.getString(0), cursor.getLong(1), pageSize + 1);
+		Response.ResponseBuilder builder = Response.ok(customers);
+		
+		if(customers.size() > pageSize) {
+			customers.remove(pageSize);
+			CustomerView last = customers.get(pageSize - 1);
+			builder.header(PageCursor.NEXT_CURSOR_HEADER, PageCursor.encode(last.getName(), last.getId()));
+		}
+		return builder.build();
 	}
     
     @GET
     @Path("/{id:[0-9]+}") //returns customer by a specific ID
-    @ApiOperation(value = "Fetch Customer's information by ID", notes = "Returns a Customer")
+    @ApiOperation(value = "Fetch Customer's information by ID", notes = "Returns a Customer, tagged with an ETag "
+    		+ "that can be sent back in the If-None-Match header of a later GET or in the If-Match header of a PUT")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Customer's ID is found"),
+            @ApiResponse(code = 304, message = "Customer has not changed since the ETag in If-None-Match"),
             @ApiResponse(code = 400, message = "ID Format is invalid"),
             @ApiResponse(code = 404, message = "No Customer found with the specified ID")
     })
-	public Response getCustomer(@PathParam("ID") Long id) {
+	public Response getCustomer(
+			@PathParam("id") Long id,
+			@Context Request request) {
     	
     	Customer customer = null;
     	
@@ -67,7 +105,12 @@ public class CustomerRestService {
     		throw new RestServiceException("ID: " + id + " does not belong to any customers", Response.Status.NOT_FOUND);
     	}
     	
-		return Response.ok(customer).build();
+    	EntityTag tag = EntityTags.of(customer);
+    	Response.ResponseBuilder notModified = EntityTags.evaluatePreconditions(request, tag);
+    	if(notModified != null) { //the client's copy is up to date, the customer is not serialized
+    		return notModified.build();
+    	}
+		return Response.ok(customer).tag(tag).build();
 	}
     
     
@@ -94,7 +137,7 @@ public class CustomerRestService {
             service.create(customer);
 
             //The request has been fulfilled and resulted in a new resource being created
-            builder = Response.status(Response.Status.CREATED).entity(customer);
+            builder = Response.status(Response.Status.CREATED).entity(customer).tag(EntityTags.of(customer));
 
         } catch (ConstraintViolationException ce) {
             //bean validation - throws rest service exception
@@ -123,16 +166,21 @@ public class CustomerRestService {
     
     @PUT
     @Path("/{id:[0-9]+}")
-    @ApiOperation(value= "Updates Customer's details in the database")
+    @ApiOperation(value= "Updates Customer's details in the database", notes = "With an If-Match header, the Customer is "
+    		+ "only updated if it has not changed since it was fetched with that ETag. The updated Customer is tagged with "
+    		+ "its new ETag")
     @ApiResponses(value = {
     		@ApiResponse(code = 200, message = "Customer has been updated successfuly"),
     		@ApiResponse(code = 400, message = "Invalid Customer ID inserted"),
     		@ApiResponse(code = 404, message = "ID inserted does not match any customers"),
-    		@ApiResponse(code = 409, message = "Customer's email already in use")
+    		@ApiResponse(code = 409, message = "Customer's email already in use"),
+    		@ApiResponse(code = 412, message = "Customer has changed since the ETag in If-Match")
     })
     public Response updateCustomer(
     	@ApiParam(value = "Customer ID has been updated", allowableValues = "range[0, infinity]", required = true)
     	@PathParam("id") Long id,
+    	@ApiParam(value = "ETag of the Customer as last fetched", required = false)
+    	@HeaderParam(HttpHeaders.IF_MATCH) String ifMatch,
     	@ApiParam(value = "JSON output of the customer to be updated", required = true)
     	Customer updatedCustomer) {
     	
@@ -148,17 +196,22 @@ public class CustomerRestService {
                     responseObj, Response.Status.NOT_FOUND);
     	}
     	
-    	if(service.findById(id) == null) { //verifies that the customer ID exists in the DB
-            throw new RestServiceException("Customer ID: " + id + " not found in the Database", Response.Status.NOT_FOUND);
-    	}
+    	updatedCustomer.setId(id);
+    	Long version = EntityTags.versionToMatch(ifMatch, id);
         
         Response.ResponseBuilder builder;
 
         try {
-            //updates the customer
-            service.update(updatedCustomer);
-            builder = Response.ok(updatedCustomer);
+            //updates the customer in a single statement, which does not match if it is missing or has changed since
+            service.update(updatedCustomer, version);
+            builder = Response.ok(updatedCustomer).tag(EntityTags.of(updatedCustomer));
 
+        } catch (OptimisticLockException e) {
+        	if(service.findById(id) == null) { //verifies that the customer ID exists in the DB
+        		throw new RestServiceException("Customer ID: " + id + " not found in the Database", Response.Status.NOT_FOUND, e);
+        	}
+        	throw new RestServiceException("Customer ID: " + id + " has changed since " + ifMatch, 
+        			Response.Status.PRECONDITION_FAILED, e);
         } catch (ConstraintViolationException ce) {
             //bean validation - throws rest service exception
             Map<String, String> responseObj = new HashMap<>();
@@ -1,9 +1,15 @@
 package org.jboss.quickstarts.wfk.customer;
 
+import java.util.Collection;
 import java.util.List;
 
 import javax.inject.Inject;
+import javax.persistence.OptimisticLockException;
 import javax.validation.ConstraintViolationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.jboss.quickstarts.wfk.search.NameMatch;
+import org.jboss.quickstarts.wfk.search.NameSearch;
 
 public class CustomerService {
 	
@@ -13,30 +19,63 @@ public class CustomerService {
 	@Inject //call retrieve update delete dependency
 	CustomerRepository crud;
 	
+	@Inject //keeps the email filter up to date
+	CustomerEmailFilter emails;
+	
+	@Inject //keeps the name search up to date
+	NameSearch names;
+	
     public List<Customer> findAllOrderedByName() { //returns all customer objects sorted by last name
         return crud.findAllOrderedByName();
     }
     
+    public List<CustomerView> findPage(String afterName, Long afterId, int maxResults) { //returns one page of customers sorted by name
+        return crud.findPage(afterName, afterId, maxResults);
+    }
+    
+    public StreamingOutput streamAll() { //writes all customers as a json array
+        return crud.streamAll();
+    }
+    
     public Customer findById(Long id) { //returns the customer that matches the ID
         return crud.findById(id);
     }
     
+    public List<Customer> findAllById(Collection<Long> ids) { //returns the customers that match any of the IDs
+        return crud.findAllById(ids);
+    }
+    
     public Customer create(Customer customer) throws ConstraintViolationException, CustomerExistsException { //linked to CustomerRepository
     	//Validates the the data to be passed to the customer entity match the parameters needed
         validator.validate(customer);
+        emails.add(customer.getEmail()); //the email filter must know the email before the customer is stored
 
         //stores customer to the database
-        return crud.create(customer);
+        crud.create(customer);
+        names.saved(NameMatch.of(customer));
+        return customer;
     }
     
-    public Customer update(Customer customer) throws ConstraintViolationException, CustomerExistsException { //updates customer to the database if it exists
+    //updates customer to the database if it exists, and if a version is given only while it still has that version
+    public Customer update(Customer customer, Long version) throws ConstraintViolationException, CustomerExistsException, 
+    		OptimisticLockException {
     	//Validates the the data to be passed to the customer entity match the parameters needed
         validator.validateExisting(customer);
+        emails.replace(customer.getEmail());
         //updates the customer's entry in the database
-        return crud.update(customer);
+        if (!crud.update(customer, version)) { //either the customer does not exist or it has been updated since
+        	throw new OptimisticLockException("Customer " + customer.getId() + " not found with version " + version, null, customer);
+        }
+        names.saved(NameMatch.of(customer));
+        return customer;
     }
     
     public Customer delete(Customer customer) { 
-        return crud.delete(customer); //deletes customer from the database if it exists
+        Customer deleted = crud.delete(customer); //deletes customer from the database if it exists
+        if (deleted != null) {
+        	emails.remove(deleted.getEmail());
+        	names.deleted(NameMatch.Type.CUSTOMER, deleted.getId());
+        }
+        return deleted;
     }
 }
@@ -24,6 +24,9 @@ public class CustomerValidator{
     @Inject //calls crud dependency
     private CustomerRepository crud;
     
+    @Inject //rules out new emails without a query
+    private CustomerEmailFilter emails;
+    
     private void commonValidate(Customer customer) throws ConstraintViolationException {
         //creates a bean to validate customer data.
         Set<ConstraintViolation<Customer>> violations = validator.validate(customer);
@@ -45,7 +48,7 @@ public class CustomerValidator{
         commonValidate(customer);
         //if customer's email has changed, check the new ones existence in the database
         // if customer is already in the database, then check if the new email provided (if changed), doesn't exists in the database yet
-        Customer fromDb = crud.findByEmail(customer.getEmail());
+        Customer fromDb = emails.mightExist(customer.getEmail()) ? crud.findByEmail(customer.getEmail()) : null;
         
         //check for duplicate email
         if(fromDb != null && (!fromDb.getId().equals(customer.getId()))) {
@@ -61,6 +64,10 @@ public class CustomerValidator{
     	
     	Customer fromDb = null;
     	String email = customer.getEmail();
+    	
+    	if (!emails.mightExist(email)) { //no customer has ever been stored with this email
+    		return false;
+    	}
 
     	try{
     		fromDb = crud.findByEmail(email);
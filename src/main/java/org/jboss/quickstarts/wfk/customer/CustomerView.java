@@ -0,0 +1,43 @@
+package org.jboss.quickstarts.wfk.customer;
+
+import java.io.Serializable;
+
+//read-only copy of a customer, built by the list queries with a constructor expression (see Customer.FIND_PAGE)
+//it is not an entity, so hibernate neither keeps a snapshot of it nor dirty checks it at flush
+//its json is the same as the one of Customer
+public class CustomerView implements Serializable {
+	private static final long serialVersionUID = 1L; //this is a default value to remove warnings
+	
+	private final Long id;
+	private final String name;
+	private final String email;
+	private final String phoneNumber;
+	
+	public CustomerView(Long id, String name, String email, String phoneNumber) {
+		this.id = id;
+		this.name = name;
+		this.email = email;
+		this.phoneNumber = phoneNumber;
+	}
+	
+	public Long getId() {
+		return id;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public String getEmail() {
+		return email;
+	}
+	
+	public String getPhoneNumber() {
+		return phoneNumber;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("Customer[%s]: %s, %s", id, name, email);
+	}
+}
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -11,9 +12,12 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
+import javax.persistence.QueryHint;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
@@ -24,6 +28,7 @@ import org.hibernate.validator.constraints.NotEmpty;
 import org.jboss.quickstarts.wfk.booking.Booking;
 import org.jboss.quickstarts.wfk.util.CompareStrings;
 import org.jboss.quickstarts.wfk.util.StringComparisonMode;
+import org.jboss.quickstarts.wfk.util.Versioned;
 
 //This class illustrates the flight information is stored in the database
 //it also retrieves flight info from the database (@NamedQueries) and sets constraints for the table fields
@@ -33,23 +38,35 @@ import org.jboss.quickstarts.wfk.util.StringComparisonMode;
  * form of query in JPA though is it more error prone due to the syntax being in a String.  This makes it harder to debug.
  */
 @Entity
+@Cacheable //flights are kept in the second-level cache, see persistence.xml
 @NamedQueries({ //finds all fights or by number
-        @NamedQuery(name = Flight.FIND_ALL, query = "SELECT f FROM Flight f ORDER BY f.number ASC"),
-        @NamedQuery(name = Flight.FIND_BY_NUMBER, query = "SELECT f FROM Flight f WHERE f.number = :number")
+        @NamedQuery(name = Flight.FIND_ALL, query = "SELECT f FROM Flight f ORDER BY f.number ASC", 
+        		hints = @QueryHint(name = "org.hibernate.cacheable", value = "true")), //results kept in the query cache
+        @NamedQuery(name = Flight.FIND_BY_NUMBER, query = "SELECT f FROM Flight f WHERE f.number = :number", 
+        		hints = @QueryHint(name = "org.hibernate.cacheable", value = "true")),
+        @NamedQuery(name = Flight.FIND_PAGE, query = "SELECT f FROM Flight f WHERE f.number > :after ORDER BY f.number ASC", 
+        		hints = { //the list is served from the caches, its flights are loaded read-only so that no snapshot of them is kept
+        				@QueryHint(name = "org.hibernate.cacheable", value = "true"), 
+        				@QueryHint(name = "org.hibernate.readOnly", value = "true"), 
+        				@QueryHint(name = "org.hibernate.flushMode", value = "COMMIT")}),
+        @NamedQuery(name = Flight.FIND_ALL_BY_ID, query = "SELECT f FROM Flight f WHERE f.id IN :ids")
 })
 @XmlRootElement
 @Table(name = "flight", uniqueConstraints = @UniqueConstraint(columnNames = "number")) //assigns flight number as unique key to the table
 @CompareStrings(propertyNames={"departure", "destination"}, 
 				matchMode=StringComparisonMode.NOT_EQUAL_IGNORE_CASE, 
 				message="The departure and destination must be different")
-public class Flight implements Serializable {
+public class Flight implements Serializable, Versioned {
 	private static final long serialVersionUID = 1L; //this is a default value to remove warnings
 	
     public static final String FIND_ALL = "Flight.findAll";
     public static final String FIND_BY_NUMBER = "Flight.findByNumber";
+    public static final String FIND_PAGE = "Flight.findPage"; //seeks past a flight number, see FlightRepository.findPage
+    public static final String FIND_ALL_BY_ID = "Flight.findAllById"; //loads a set of flights in one query
 	
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY) //sets unique ID and increment to the number
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "flight_seq") //sets unique ID and increment to the number
+    @SequenceGenerator(name = "flight_seq", sequenceName = "flight_seq", allocationSize = 50) //ids are reserved 50 at a time, so inserts can be batched
 	private Long id; 
 	
     @NotEmpty //sets flight number constraints 
@@ -72,6 +89,11 @@ public class Flight implements Serializable {
     @Column(name = "destination")
 	private String destination;
     
+    @JsonIgnore //not part of the json, the flight list is tagged with a hash of the versions of its flights
+    @Version //incremented on every update, for optimistic locking
+    @Column(name = "version", nullable = false)
+    private Long version;
+    
     @JsonIgnore
     @OneToMany(mappedBy="flight", orphanRemoval=true) //when object is removed applies cascade removal to the flight
     private Set<Booking> bookings = new HashSet<Booking>();
@@ -117,6 +139,14 @@ public class Flight implements Serializable {
         this.destination = destination;
     }
     
+    public Long getVersion() {
+    	return version;
+    }
+    
+    public void setVersion(Long version) {
+    	this.version = version;
+    }
+    
     public Set<Booking> getBookings() {
     	return bookings;
     }
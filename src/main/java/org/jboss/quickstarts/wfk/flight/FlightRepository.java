@@ -1,5 +1,7 @@
 package org.jboss.quickstarts.wfk.flight;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -19,6 +21,21 @@ public class FlightRepository {
         return query.getResultList();
     }
 
+    /**
+     * <p>Returns one page of flights sorted by flight number, seeking past the given number on the unique number
+     * column rather than skipping rows with an offset.</p>
+     *
+     * @param afterNumber The flight number of the last flight of the previous page, or null for the first page
+     * @param maxResults The maximum number of flights to return
+     * @return List of Flight objects
+     */
+    List<Flight> findPage(String afterNumber, int maxResults) {
+        TypedQuery<Flight> query = em.createNamedQuery(Flight.FIND_PAGE, Flight.class)
+                .setParameter("after", afterNumber == null ? "" : afterNumber)
+                .setMaxResults(maxResults);
+        return query.getResultList();
+    }
+
     Flight findByNumber(String number) throws NonUniqueResultException { //returns flight with the requested flight number
         TypedQuery<Flight> query = em.createNamedQuery(Flight.FIND_BY_NUMBER, Flight.class).setParameter("number", number);
         Flight result = null;
@@ -34,6 +51,14 @@ public class FlightRepository {
     	return em.find(Flight.class, id);
     }
     
+    List<Flight> findAllById(Collection<Long> ids) { //returns the flights with the given ids in a single query, missing ids are skipped
+    	if (ids.isEmpty()) {
+    		return new ArrayList<Flight>(0);
+    	}
+    	TypedQuery<Flight> query = em.createNamedQuery(Flight.FIND_ALL_BY_ID, Flight.class).setParameter("ids", ids);
+    	return query.getResultList();
+    }
+    
     
     /**
      * <p>Writes the provided Flight object to the application database.<p/>
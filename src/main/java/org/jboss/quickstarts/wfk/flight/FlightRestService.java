@@ -3,6 +3,7 @@ package org.jboss.quickstarts.wfk.flight;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.logging.Logger;
 
 import javax.ejb.Stateless;
@@ -17,10 +18,18 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
+import org.jboss.quickstarts.wfk.util.EntityTags;
+import org.jboss.quickstarts.wfk.util.PageCursor;
 import org.jboss.quickstarts.wfk.util.RestServiceException;
+import org.jboss.quickstarts.wfk.util.SerializedList;
+import org.jboss.quickstarts.wfk.util.SingleFlight;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -36,6 +45,10 @@ import io.swagger.annotations.ApiResponses;
 @Stateless //It is Stateless to "inform the container that this RESTful web service should also be treated as an EJB and allow transaction
 //demarcation when accessing the database." - Antonio Goncalves
 public class FlightRestService {
+	//coalesces the concurrent requests for the same page, across every instance of the bean
+	private static final SingleFlight<String, Page> PAGES = new SingleFlight<>("flights.page");
+	private static final String PAGE_KEY_SEPARATOR = "\u001f"; //cannot be part of a flight number
+	
 	@Inject //calls the flight service dependency
 	FlightService service;
 	
@@ -43,11 +56,74 @@ public class FlightRestService {
     private @Named("logger") Logger log;
     
 	
-    @GET //returns all stored flights in a array
-    @ApiOperation(value = "Fetch all flights", notes = "Returns a JSON array of all stored Flights")
-	public Response getAllFlights() {
-		List<Flight> flights = service.findAll();
-		return Response.ok(flights).build();
+    @GET //returns one page of stored flights in a array
+    @ApiOperation(value = "Fetch all flights", notes = "Returns a JSON array of stored Flights, one page at a time. "
+    		+ "The cursor of the next page is returned in the " + PageCursor.NEXT_CURSOR_HEADER + " header. "
+    		+ "The page is tagged with an ETag, a GET with that ETag in If-None-Match is answered with 304 until it changes")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Page of Flights"),
+            @ApiResponse(code = 304, message = "Page has not changed since the ETag in If-None-Match")
+    })
+	public Response getAllFlights(
+			@ApiParam(value = "Cursor returned with the previous page", required = false)
+			@QueryParam("after") String after,
+			@ApiParam(value = "Maximum number of Flights to return", allowableValues = "range[1, 1000]", required = false)
+			@QueryParam("limit") Integer limit,
+			@Context Request request) {
+    	final int pageSize = PageCursor.limit(limit);
+    	final String afterNumber = after == null ? null : PageCursor.decode(after, 1).getString(0);
+    	
+    	Page page;
+    	try { //identical concurrent requests share a single read, and a single serialization of the page
+    		page = PAGES.execute(afterNumber + PAGE_KEY_SEPARATOR + pageSize, new Callable<Page>() {
+    			@Override
+    			public Page call() {
+    				return readPage(afterNumber, pageSize);
+    			}
+    		});
+    	} catch (RuntimeException e) {
+    		throw e;
+    	} catch (Exception e) {
+    		throw new RestServiceException(e);
+    	}
+		
+		Response.ResponseBuilder notModified = EntityTags.evaluatePreconditions(request, page.tag);
+		if(notModified != null) { //the client's copy is up to date, the page is not serialized
+			return notModified.build();
+		}
+		
+		Response.ResponseBuilder builder = Response.ok(page.flights).tag(page.tag);
+		if(page.next != null) {
+			builder.header(PageCursor.NEXT_CURSOR_HEADER, page.next);
+		}
+		return builder.build();
+	}
+	
+	private Page readPage(String afterNumber, int pageSize) {
+    	//one extra flight is fetched to find out whether there is a next page
+		List<Flight> flights = service.findPage(afterNumber, pageSize + 1);
+		String next = null;
+		
+		if(flights.size() > pageSize) {
+			flights.remove(pageSize);
+			next = PageCursor.encode(flights.get(pageSize - 1).getNumber());
+		}
+		
+		EntityTag tag = EntityTags.of(flights, next); //a hash of the ids and versions of the flights of the page
+		return new Page(new SerializedList<>(flights), tag, next);
+	}
+	
+	//a page of flights, shared by the requests for it which run at the same time
+	private static final class Page {
+		final SerializedList<Flight> flights; //read-only, serialized once for all of the requests
+		final EntityTag tag;
+		final String next;
+		
+		Page(SerializedList<Flight> flights, EntityTag tag, String next) {
+			this.flights = flights;
+			this.tag = tag;
+			this.next = next;
+		}
 	}
     
     @POST
@@ -1,5 +1,6 @@
 package org.jboss.quickstarts.wfk.flight;
 
+import java.util.Collection;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -18,10 +19,18 @@ public class FlightService {
     }
     
 
+    public List<Flight> findPage(String afterNumber, int maxResults) { //returns one page of flights sorted by flight number
+        return crud.findPage(afterNumber, maxResults);
+    }
+
     public Flight findById(Long id) { //returns the flight that matches the ID
     	return crud.findById(id);
     }
     
+    public List<Flight> findAllById(Collection<Long> ids) { //returns the flights that match any of the IDs
+    	return crud.findAllById(ids);
+    }
+    
     public Flight create(Flight flight) throws ConstraintViolationException, ValidationException, Exception {
     	//Validates the the data to be passed to the flight entity match the parameters needed
     	validator.validate(flight);
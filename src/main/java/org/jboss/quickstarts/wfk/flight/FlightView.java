@@ -0,0 +1,43 @@
+package org.jboss.quickstarts.wfk.flight;
+
+import java.io.Serializable;
+
+//read-only copy of a flight, built by the booking list queries with a constructor expression
+//it is not an entity, so hibernate neither keeps a snapshot of it nor dirty checks it at flush
+//its json is the same as the one of Flight
+public class FlightView implements Serializable {
+	private static final long serialVersionUID = 1L; //this is a default value to remove warnings
+	
+	private final Long id;
+	private final String number;
+	private final String departure;
+	private final String destination;
+	
+	public FlightView(Long id, String number, String departure, String destination) {
+		this.id = id;
+		this.number = number;
+		this.departure = departure;
+		this.destination = destination;
+	}
+	
+	public Long getId() {
+		return id;
+	}
+	
+	public String getNumber() {
+		return number;
+	}
+	
+	public String getDeparture() {
+		return departure;
+	}
+	
+	public String getDestination() {
+		return destination;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("Flight[%s]: %s from %s to %s", id, number, departure, destination);
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.metrics;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Latency histograms and response status counters of every resource method of the API, since the application was
+ * deployed.</p>
+ *
+ * <p>A request is recorded by a pair of filters. The {@link MetricsFilter} in front of the API times it and records it
+ * once the response is complete, and the {@link MetricsInterceptor} tells it which resource method the request was
+ * dispatched to, through a per-thread slot. The metrics of a resource method are created on its first request. From
+ * then on recording a request only reads the clock twice and increments a few counters, and allocates nothing. Requests
+ * which reach no resource method are recorded as those of an {@link #UNMATCHED} endpoint.</p>
+ *
+ * <p>The metrics are kept for the JVM rather than in a bean, so that the filters, which the container creates, and the
+ * embedded runtime share them.</p>
+ *
+ * @see MetricsRestService
+ */
+public final class ApiMetrics {
+
+    /** The endpoint of the requests not dispatched to any resource method, such as CORS preflights and 404s. */
+    static final EndpointMetrics UNMATCHED = new EndpointMetrics("none", "none");
+
+    private static final ConcurrentMap<Method, EndpointMetrics> ENDPOINTS = new ConcurrentHashMap<>();
+
+    /** The endpoint of the request the current thread is serving, set by the interceptor and taken by the filter. */
+    private static final ThreadLocal<EndpointMetrics[]> CURRENT = new ThreadLocal<EndpointMetrics[]>() {
+        @Override
+        protected EndpointMetrics[] initialValue() {
+            return new EndpointMetrics[1];
+        }
+    };
+
+    private ApiMetrics() {
+    }
+
+    /**
+     * <p>Marks the request the current thread is serving as dispatched to the given resource method.</p>
+     */
+    public static void dispatched(Method resourceMethod) {
+        EndpointMetrics endpoint = ENDPOINTS.get(resourceMethod);
+        if (endpoint == null) {
+            endpoint = new EndpointMetrics(resourceMethod.getDeclaringClass().getSimpleName(), resourceMethod.getName());
+            EndpointMetrics existing = ENDPOINTS.putIfAbsent(resourceMethod, endpoint);
+            if (existing != null) {
+                endpoint = existing;
+            }
+        }
+        CURRENT.get()[0] = endpoint;
+    }
+
+    /**
+     * <p>Clears the endpoint of the current thread, before it starts serving a request.</p>
+     */
+    public static void clear() {
+        CURRENT.get()[0] = null;
+    }
+
+    /**
+     * <p>Takes the endpoint the request the current thread has served was dispatched to.</p>
+     *
+     * @return The endpoint, or {@link #UNMATCHED} if it was not dispatched to any
+     */
+    public static EndpointMetrics take() {
+        EndpointMetrics[] current = CURRENT.get();
+        EndpointMetrics endpoint = current[0];
+        current[0] = null;
+        return endpoint == null ? UNMATCHED : endpoint;
+    }
+
+    /**
+     * <p>Writes every metric in the Prometheus text exposition format (version 0.0.4).</p>
+     *
+     * <p>The latencies are written as the <code>api_request_duration_seconds</code> histogram, with a bucket for every
+     * other power of two of microseconds from 16 microseconds to about 67 seconds. The statuses are written as the
+     * <code>api_responses_total</code> counter, for the status codes that have been answered.</p>
+     *
+     * @param out Where to write the metrics
+     */
+    public static void writePrometheus(StringBuilder out) {
+        List<EndpointMetrics> endpoints = new ArrayList<>(ENDPOINTS.values());
+        Collections.sort(endpoints, new Comparator<EndpointMetrics>() {
+            @Override
+            public int compare(EndpointMetrics a, EndpointMetrics b) {
+                int byResource = a.getResource().compareTo(b.getResource());
+                return byResource != 0 ? byResource : a.getMethod().compareTo(b.getMethod());
+            }
+        });
+        endpoints.add(UNMATCHED);
+
+        out.append("# HELP api_request_duration_seconds Time taken by the API requests, until the response is complete\n");
+        out.append("# TYPE api_request_duration_seconds histogram\n");
+        for (EndpointMetrics endpoint : endpoints) {
+            writeHistogram(out, endpoint);
+        }
+
+        out.append("# HELP api_responses_total Responses of the API, by status code\n");
+        out.append("# TYPE api_responses_total counter\n");
+        for (EndpointMetrics endpoint : endpoints) {
+            for (int status = 0; status < EndpointMetrics.getMaxStatus(); status++) {
+                long count = endpoint.getStatusCount(status);
+                if (count > 0) {
+                    out.append("api_responses_total");
+                    labels(out, endpoint).append(",status=\"").append(status).append("\"} ").append(count).append('\n');
+                }
+            }
+        }
+    }
+
+    private static void writeHistogram(StringBuilder out, EndpointMetrics endpoint) {
+        LatencyHistogram latency = endpoint.getLatency();
+        long[] counts = latency.getCounts();
+
+        long cumulative = 0;
+        int bucket = 0;
+        for (int exponent = 4; exponent <= 26; exponent += 2) {
+            for (int end = LatencyHistogram.firstBucketOf(exponent); bucket < end; bucket++) {
+                cumulative += counts[bucket];
+            }
+            out.append("api_request_duration_seconds_bucket");
+            labels(out, endpoint).append(",le=\"").append((1L << exponent) / 1e6).append("\"} ").append(cumulative)
+                    .append('\n');
+        }
+        for (; bucket < counts.length; bucket++) {
+            cumulative += counts[bucket];
+        }
+
+        out.append("api_request_duration_seconds_bucket");
+        labels(out, endpoint).append(",le=\"+Inf\"} ").append(cumulative).append('\n');
+        out.append("api_request_duration_seconds_sum");
+        labels(out, endpoint).append("} ").append(latency.getSum() / 1e6).append('\n');
+        out.append("api_request_duration_seconds_count");
+        labels(out, endpoint).append("} ").append(cumulative).append('\n');
+    }
+
+    /** Opens the label set of an endpoint, for the caller to add to and close. */
+    private static StringBuilder labels(StringBuilder out, EndpointMetrics endpoint) {
+        return out.append("{resource=\"").append(endpoint.getResource()).append("\",method=\"")
+                .append(endpoint.getMethod()).append('"');
+    }
+}
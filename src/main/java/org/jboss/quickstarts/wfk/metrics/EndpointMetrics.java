@@ -0,0 +1,74 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>The latencies and response statuses of one resource method.</p>
+ *
+ * @see ApiMetrics
+ */
+public final class EndpointMetrics {
+
+    /** Response statuses are counted in an array indexed by the status code. */
+    private static final int MAX_STATUS = 600;
+
+    private final String resource;
+    private final String method;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLongArray statuses = new AtomicLongArray(MAX_STATUS);
+
+    EndpointMetrics(String resource, String method) {
+        this.resource = resource;
+        this.method = method;
+    }
+
+    /**
+     * <p>Records one request, without allocating.</p>
+     *
+     * @param nanos The time the request took, in nanoseconds
+     * @param status The status code of the response
+     */
+    public void record(long nanos, int status) {
+        latency.record(nanos / 1000);
+        if (status >= 0 && status < MAX_STATUS) {
+            statuses.incrementAndGet(status);
+        }
+    }
+
+    public String getResource() {
+        return resource;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    long getStatusCount(int status) {
+        return statuses.get(status);
+    }
+
+    static int getMaxStatus() {
+        return MAX_STATUS;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Histogram of latencies in microseconds, in the manner of an HDR histogram: buckets are log-linear, so every value
+ * is counted with the same relative precision of 1/{@value #SUB_BUCKETS} (12.5%) from one microsecond up to about 19
+ * hours.</p>
+ *
+ * <p>Each power of two is split into {@value #SUB_BUCKETS} linear sub-buckets, and the bucket of a value is found from its
+ * leading bit with a couple of shifts. Recording a value is then two atomic increments into preallocated arrays, so it
+ * neither locks nor allocates, and can be done concurrently by any number of threads.</p>
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Largest power of two of microseconds told apart, longer latencies are counted in the last bucket. */
+    private static final int MAX_EXPONENT = 36;
+
+    static final int BUCKETS = (MAX_EXPONENT - 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * <p>Counts one latency.</p>
+     *
+     * @param micros The latency in microseconds
+     */
+    public void record(long micros) {
+        counts.incrementAndGet(bucketOf(micros));
+        sum.addAndGet(micros);
+    }
+
+    /**
+     * @return The sum of every latency recorded, in microseconds
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * <p>Copies the count of every bucket, in order. The count of the bucket at index <code>i</code> is that of the
+     * latencies below {@link #upperBoundOf(int) upperBoundOf(i)} and at or above that of the previous bucket.</p>
+     *
+     * @return The counts, indexed by bucket
+     */
+    public long[] getCounts() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return micros < 0 ? 0 : (int) micros;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return The latency, in microseconds, which every latency of the bucket is below
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @return The index of the first bucket of latencies at or above 2^exponent microseconds
+     */
+    static int firstBucketOf(int exponent) {
+        return bucketOf(1L << exponent);
+    }
+}
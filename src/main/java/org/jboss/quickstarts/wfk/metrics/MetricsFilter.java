@@ -0,0 +1,103 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.metrics;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * <p>Times every API request and records it in {@link ApiMetrics}, against the resource method that the
+ * {@link MetricsInterceptor} found it was dispatched to.</p>
+ *
+ * <p>It is mapped in web.xml rather than by annotation, so that it comes first in the chain and the time it records
+ * includes that of the other filters, such as the compression of the response by the ApiOriginFilter. The request is
+ * recorded once its response is complete, which for an asynchronous request is when it completes, on another thread.
+ * Recording allocates for those only, for the listener that records them.</p>
+ *
+ * <p>It also opens the {@link SqlAccounting} of every request, for as long as the request thread serves it, which
+ * costs a few small objects per request. In debug mode the statements of each request are logged once it is
+ * served.</p>
+ */
+public class MetricsFilter implements Filter {
+
+    private static final Logger log = Logger.getLogger(MetricsFilter.class.getName());
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        final long start = System.nanoTime();
+        final HttpServletResponse res = (HttpServletResponse) response;
+        boolean failed = true;
+
+        ApiMetrics.clear();
+        SqlAccounting.begin();
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            final EndpointMetrics endpoint = ApiMetrics.take();
+            RequestStatements statements = SqlAccounting.end();
+            if (SqlAccounting.isDebug() && statements.getCount() > 0) {
+                HttpServletRequest req = (HttpServletRequest) request;
+                log.info(req.getMethod() + " " + req.getRequestURI() + " - " + statements);
+            }
+
+            if (!failed && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        endpoint.record(System.nanoTime() - start, res.getStatus());
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                // An exception escaping the chain is answered with a 500 by the container.
+                endpoint.record(System.nanoTime() - start, failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR
+                        : res.getStatus());
+            }
+        }
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.metrics;
+
+import org.jboss.resteasy.annotations.interception.ServerInterceptor;
+import org.jboss.resteasy.core.ResourceMethod;
+import org.jboss.resteasy.core.ServerResponse;
+import org.jboss.resteasy.spi.HttpRequest;
+import org.jboss.resteasy.spi.interception.PostProcessInterceptor;
+import org.jboss.resteasy.spi.interception.PreProcessInterceptor;
+
+import javax.ws.rs.ext.Provider;
+
+/**
+ * <p>Tells the {@link MetricsFilter} which resource method a request has been dispatched to, so that its time and
+ * status are recorded against that method.</p>
+ *
+ * <p>RESTEasy calls it on the request thread, before the resource method, including for asynchronous requests.</p>
+ *
+ * <p>In debug mode it also adds the statement count and the query time of the request to its response, after the
+ * resource method and its transaction are done, see {@link SqlAccounting}.</p>
+ */
+@Provider
+@ServerInterceptor
+public class MetricsInterceptor implements PreProcessInterceptor, PostProcessInterceptor {
+
+    @Override
+    public ServerResponse preProcess(HttpRequest request, ResourceMethod method) {
+        ApiMetrics.dispatched(method.getMethod());
+        return null;
+    }
+
+    @Override
+    public void postProcess(ServerResponse response) {
+        if (SqlAccounting.isDebug()) {
+            RequestStatements statements = SqlAccounting.current();
+            if (statements != null) {
+                response.getMetadata().putSingle(SqlAccounting.COUNT_HEADER, statements.getCount());
+                response.getMetadata().putSingle(SqlAccounting.TIME_HEADER, statements.getMillis());
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.metrics;
+
+import org.jboss.quickstarts.wfk.util.LogPipeline;
+import org.jboss.quickstarts.wfk.util.LogThrottle;
+import org.jboss.quickstarts.wfk.util.SingleFlight;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+/**
+ * <p>Publishes the {@link ApiMetrics} in the Prometheus text format, for Prometheus to scrape, along with the log
+ * messages suppressed by every {@link LogThrottle}, the log records dropped by the {@link LogPipeline}, and how many
+ * reads every {@link SingleFlight} has coalesced.</p>
+ *
+ * <p>The full path for accessing endpoints defined herein is: api/metrics</p>
+ */
+@Path("/metrics")
+public class MetricsRestService {
+
+    /** The content type of the Prometheus text exposition format. */
+    static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4";
+
+    @Inject
+    private LogPipeline logPipeline;
+
+    @GET
+    @Produces(PROMETHEUS_TEXT)
+    public String getMetrics() {
+        StringBuilder out = new StringBuilder(16384);
+        ApiMetrics.writePrometheus(out);
+        writeLogging(out);
+        writeCoalescing(out);
+        return out.toString();
+    }
+
+    private void writeLogging(StringBuilder out) {
+        out.append("# HELP log_messages_suppressed_total Log messages suppressed by the rate limit of their call site\n");
+        out.append("# TYPE log_messages_suppressed_total counter\n");
+        for (LogThrottle callSite : LogThrottle.getCallSites()) {
+            out.append("log_messages_suppressed_total{class=\"").append(callSite.getSourceClass()).append("\",method=\"")
+                    .append(callSite.getSourceMethod()).append("\",level=\"").append(callSite.getLevel())
+                    .append("\"} ").append(callSite.getSuppressed()).append('\n');
+        }
+
+        out.append("# HELP log_records_dropped_total Log records dropped because the log buffer was full\n");
+        out.append("# TYPE log_records_dropped_total counter\n");
+        out.append("log_records_dropped_total ").append(logPipeline.getDropped()).append('\n');
+    }
+
+    private static void writeCoalescing(StringBuilder out) {
+        out.append("# HELP coalesced_reads_total Reads asked for, by the name of their single flight\n");
+        out.append("# TYPE coalesced_reads_total counter\n");
+        for (SingleFlight<?, ?> flight : SingleFlight.getInstances()) {
+            out.append("coalesced_reads_total{name=\"").append(flight.getName()).append("\"} ").append(flight.getCalls())
+                    .append('\n');
+        }
+
+        out.append("# HELP coalesced_executions_total Reads run, the others having shared their results\n");
+        out.append("# TYPE coalesced_executions_total counter\n");
+        for (SingleFlight<?, ?> flight : SingleFlight.getInstances()) {
+            out.append("coalesced_executions_total{name=\"").append(flight.getName()).append("\"} ")
+                    .append(flight.getExecutions()).append('\n');
+        }
+
+        out.append("# HELP coalescing_ratio Reads asked for per read run, since the application started\n");
+        out.append("# TYPE coalescing_ratio gauge\n");
+        for (SingleFlight<?, ?> flight : SingleFlight.getInstances()) {
+            long executions = flight.getExecutions();
+            out.append("coalescing_ratio{name=\"").append(flight.getName()).append("\"} ")
+                    .append(executions == 0 ? 1.0 : (double) flight.getCalls() / executions).append('\n');
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.metrics;
+
+/**
+ * <p>Thrown when a request runs the same shape of statement more times than the limit set with the
+ * <code>api.sql.maxRepeats</code> system property, or by the test calling {@link SqlAccounting#begin(int)}.</p>
+ *
+ * <p>It is meant to make tests fail on N+1 selects, and is only ever thrown when a limit is set.</p>
+ *
+ * @see RequestStatements
+ */
+public class RepeatedStatementException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    private final String sql;
+
+    public RepeatedStatementException(String sql, int runs, int maxRepeats) {
+        super("The same statement was run " + runs + " times in one request, no more than " + maxRepeats
+                + " are allowed: " + sql);
+        this.sql = sql;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>The SQL statements run while serving one request: how many were prepared, how many of each shape, the time spent
+ * in the queries, and the slowest of them.</p>
+ *
+ * <p>The shape of a statement is its SQL, in which Hibernate leaves a placeholder for every parameter, so the same
+ * lookup run for different ids has the same shape. A shape run over and over within one request usually is an N+1
+ * select: a lazy association, or a lookup in a loop, that should have been a join or a single query by ids. With a
+ * limit of repeats set, the statement exceeding it is failed with a {@link RepeatedStatementException}.</p>
+ *
+ * <p>Instances are confined to the thread serving the request, see {@link SqlAccounting}.</p>
+ */
+public final class RequestStatements {
+
+    /** How many of the slowest queries are kept. */
+    static final int SLOWEST = 3;
+
+    private final int maxRepeats;
+
+    private final Map<String, int[]> shapes = new HashMap<>();
+    private int count;
+    private long millis;
+
+    private final String[] slowest = new String[SLOWEST];
+    private final long[] slowestMillis = new long[SLOWEST];
+
+    RequestStatements(int maxRepeats) {
+        this.maxRepeats = maxRepeats;
+    }
+
+    /**
+     * <p>Counts a statement Hibernate is about to prepare.</p>
+     *
+     * @param sql The SQL of the statement
+     * @throws RepeatedStatementException If a limit of repeats is set and the statement exceeds it
+     */
+    void prepared(String sql) {
+        count++;
+
+        int[] runs = shapes.get(sql);
+        if (runs == null) {
+            runs = new int[1];
+            shapes.put(sql, runs);
+        }
+        runs[0]++;
+
+        if (maxRepeats > 0 && runs[0] > maxRepeats) {
+            throw new RepeatedStatementException(sql, runs[0], maxRepeats);
+        }
+    }
+
+    /**
+     * <p>Adds the time taken by a query, keeping it if it is one of the {@value #SLOWEST} slowest.</p>
+     *
+     * @param query The HQL or SQL of the query
+     * @param queryMillis The time it took, in milliseconds
+     */
+    void executed(String query, long queryMillis) {
+        millis += queryMillis;
+
+        for (int i = 0; i < SLOWEST; i++) {
+            if (slowest[i] == null || queryMillis > slowestMillis[i]) {
+                System.arraycopy(slowest, i, slowest, i + 1, SLOWEST - i - 1);
+                System.arraycopy(slowestMillis, i, slowestMillis, i + 1, SLOWEST - i - 1);
+                slowest[i] = query;
+                slowestMillis[i] = queryMillis;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return The number of statements prepared, each batch of inserts or updates counting once
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return The time spent in the queries, in milliseconds
+     */
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * @return The number of times the most repeated shape of statement was run
+     */
+    public int getMaxRepeats() {
+        int max = 0;
+        for (int[] runs : shapes.values()) {
+            max = Math.max(max, runs[0]);
+        }
+        return max;
+    }
+
+    /**
+     * @return The number of times each shape of statement was run
+     */
+    public Map<String, Integer> getShapes() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Map.Entry<String, int[]> shape : shapes.entrySet()) {
+            counts.put(shape.getKey(), shape.getValue()[0]);
+        }
+        return counts;
+    }
+
+    /**
+     * @return The slowest queries, slowest first, each as its time in milliseconds followed by the query
+     */
+    public List<String> getSlowest() {
+        List<String> queries = new ArrayList<>(SLOWEST);
+        for (int i = 0; i < SLOWEST && slowest[i] != null; i++) {
+            queries.add(slowestMillis[i] + " ms: " + slowest[i]);
+        }
+        return queries;
+    }
+
+    @Override
+    public String toString() {
+        return count + " statements, " + millis + " ms in queries, slowest " + getSlowest();
+    }
+}
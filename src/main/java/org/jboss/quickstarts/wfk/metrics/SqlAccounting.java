@@ -0,0 +1,122 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.metrics;
+
+import java.util.logging.Logger;
+
+/**
+ * <p>Accounts for the SQL statements run by each request.</p>
+ *
+ * <p>The {@link MetricsFilter} opens a {@link RequestStatements} for every API request, on the thread serving it, and
+ * closes it once the request is served. In between, Hibernate reports to it every statement it prepares, through the
+ * {@link StatementInterceptor}, and the time taken by every query, through the {@link StatementStatistics}. Both are
+ * set in persistence.xml. Statements run outside of a request, by the scheduled jobs for example, are not accounted
+ * for, other than by the slow query log.</p>
+ *
+ * <p>It is configured through system properties:</p>
+ *
+ * <ul>
+ *     <li><code>api.sql.slowQueryMillis</code> - queries taking at least this many milliseconds are logged as a warning
+ *     (default 500)</li>
+ *     <li><code>api.sql.debug</code> - when true, the responses tell how many statements they took in the
+ *     {@value #COUNT_HEADER} header and the time spent in queries in the {@value #TIME_HEADER} header, and every
+ *     request is logged with its slowest queries (default false)</li>
+ *     <li><code>api.sql.maxRepeats</code> - when set, a request running the same shape of statement more than this
+ *     many times is failed with a {@link RepeatedStatementException}; meant for test environments, to catch N+1
+ *     selects (default unset)</li>
+ * </ul>
+ */
+public final class SqlAccounting {
+
+    public static final String COUNT_HEADER = "X-SQL-Count";
+    public static final String TIME_HEADER = "X-SQL-Time";
+
+    private static final Logger log = Logger.getLogger(SqlAccounting.class.getName());
+
+    private static final long SLOW_QUERY_MILLIS = Long.getLong("api.sql.slowQueryMillis", 500);
+    private static final boolean DEBUG = Boolean.getBoolean("api.sql.debug");
+    private static final int MAX_REPEATS = Integer.getInteger("api.sql.maxRepeats", 0);
+
+    private static final ThreadLocal<RequestStatements> CURRENT = new ThreadLocal<>();
+
+    private SqlAccounting() {
+    }
+
+    /**
+     * <p>Starts accounting for the statements run by the current thread, with the configured limit of repeats.</p>
+     *
+     * @return The accounting of the request, until {@link #end()}
+     */
+    public static RequestStatements begin() {
+        return begin(MAX_REPEATS);
+    }
+
+    /**
+     * <p>Starts accounting for the statements run by the current thread.</p>
+     *
+     * @param maxRepeats How many times the same shape of statement may run, or 0 for no limit
+     * @return The accounting of the request, until {@link #end()}
+     */
+    public static RequestStatements begin(int maxRepeats) {
+        RequestStatements statements = new RequestStatements(maxRepeats);
+        CURRENT.set(statements);
+        return statements;
+    }
+
+    /**
+     * <p>Stops accounting for the statements run by the current thread.</p>
+     *
+     * @return The accounting of the request, or null if none was started
+     */
+    public static RequestStatements end() {
+        RequestStatements statements = CURRENT.get();
+        CURRENT.remove();
+        return statements;
+    }
+
+    /**
+     * @return The accounting of the request the current thread is serving, or null if there is none
+     */
+    public static RequestStatements current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return Whether the responses carry their statement count and query time, see <code>api.sql.debug</code>
+     */
+    public static boolean isDebug() {
+        return DEBUG;
+    }
+
+    static void prepared(String sql) {
+        RequestStatements statements = CURRENT.get();
+        if (statements != null) {
+            statements.prepared(sql);
+        }
+    }
+
+    static void executed(String query, long millis) {
+        if (millis >= SLOW_QUERY_MILLIS) {
+            log.warning("Slow query, " + millis + " ms: " + query);
+        }
+
+        RequestStatements statements = CURRENT.get();
+        if (statements != null) {
+            statements.executed(query, millis);
+        }
+    }
+}
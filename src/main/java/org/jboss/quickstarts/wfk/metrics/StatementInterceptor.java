@@ -0,0 +1,35 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.metrics;
+
+import org.hibernate.EmptyInterceptor;
+
+/**
+ * <p>Reports every statement Hibernate prepares to the {@link SqlAccounting} of the current request.</p>
+ *
+ * <p>A single instance is shared by every session, set with the <code>hibernate.ejb.interceptor</code> property in
+ * persistence.xml. It holds no state, the statements being accounted for on the thread preparing them.</p>
+ */
+public class StatementInterceptor extends EmptyInterceptor {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public String onPrepareStatement(String sql) {
+        SqlAccounting.prepared(sql);
+        return sql;
+    }
+}
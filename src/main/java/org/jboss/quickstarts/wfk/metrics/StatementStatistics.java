@@ -0,0 +1,54 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.metrics;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.ConcurrentStatisticsImpl;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.hibernate.stat.spi.StatisticsImplementor;
+
+/**
+ * <p>The Hibernate statistics, which also report the time taken by every query to the {@link SqlAccounting} of the
+ * current request.</p>
+ *
+ * <p>They are built by the {@link Factory} set with the <code>hibernate.stats.factory</code> property in
+ * persistence.xml, and otherwise are the standard ones, still published at /api/cache. Hibernate times its queries
+ * only while <code>hibernate.generate_statistics</code> is on, and to the millisecond.</p>
+ */
+public class StatementStatistics extends ConcurrentStatisticsImpl {
+
+    public StatementStatistics(SessionFactoryImplementor sessionFactory) {
+        super(sessionFactory);
+    }
+
+    @Override
+    public void queryExecuted(String hql, int rows, long time) {
+        super.queryExecuted(hql, rows, time);
+        SqlAccounting.executed(hql, time);
+    }
+
+    /**
+     * <p>Builds the {@link StatementStatistics} of a session factory.</p>
+     */
+    public static class Factory implements StatisticsFactory {
+
+        @Override
+        public StatisticsImplementor buildStatistics(SessionFactoryImplementor sessionFactory) {
+            return new StatementStatistics(sessionFactory);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * <p>In-memory sorted index of names, answering prefix (typeahead) queries.</p>
+ *
+ * <p>Every name is indexed under each of its words, lower-cased, so that "Georgios Rovolis" is found by "geo", by
+ * "georgios r" and by "rov". The entries live in a skip list, so a query seeks to the first entry with the prefix and
+ * reads forward until it has enough matches: its cost grows with the logarithm of the index size and the number of
+ * matches returned, not with the number of names. An entry points into the lower-cased name rather than copying the
+ * rest of it. A million two-word names take about 350MB.</p>
+ *
+ * <p>Queries do not lock. Changes are serialized, and a query running alongside a change sees the entries of the
+ * changed name either before or after it, word by word.</p>
+ *
+ * <p>The index is filled from the database with {@link #beginLoad()}, {@link #load(Collection)} and
+ * {@link #finishLoad()} while live changes are applied with {@link #put(NameMatch)} and {@link #remove(NameMatch.Type,
+ * Long)}. A loaded name never replaces one that was put meanwhile, and names removed during the load are not loaded.</p>
+ */
+public final class NameIndex {
+
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>();
+    private final Map<NameMatch.Type, Map<Long, Entry[]>> records = new EnumMap<>(NameMatch.Type.class);
+
+    // Guarded by this
+    private Map<NameMatch.Type, Set<Long>> removedWhileLoading;
+
+    public NameIndex() {
+        for (NameMatch.Type type : NameMatch.Type.values()) {
+            records.put(type, new ConcurrentHashMap<Long, Entry[]>());
+        }
+    }
+
+    /**
+     * <p>Adds a name, or replaces the name previously indexed for the same record.</p>
+     */
+    public synchronized void put(NameMatch match) {
+        if (match.getId() == null) {
+            return;
+        }
+        removeRecord(match.getType(), match.getId());
+
+        Entry[] words = entriesOf(match);
+        for (Entry word : words) {
+            entries.add(word);
+        }
+        records.get(match.getType()).put(match.getId(), words);
+    }
+
+    /**
+     * <p>Removes the name of a record, if it is indexed.</p>
+     */
+    public synchronized void remove(NameMatch.Type type, Long id) {
+        if (id == null) {
+            return;
+        }
+        removeRecord(type, id);
+
+        if (removedWhileLoading != null) {
+            removedWhileLoading.get(type).add(id);
+        }
+    }
+
+    /**
+     * <p>Returns the names that have a word starting with the given prefix, ignoring case, in alphabetical order of
+     * the matching word.</p>
+     *
+     * @param prefix The start of a word, or of several consecutive words
+     * @param limit The maximum number of matches to return
+     * @return The matches, each record at most once
+     */
+    public List<NameMatch> search(String prefix, int limit) {
+        String from = normalize(prefix);
+        // The entries of one record share a NameMatch, which has identity equality
+        Set<NameMatch> matches = new LinkedHashSet<>();
+
+        for (Entry entry : entries.subSet(new Entry(from, 0, null), true, new Entry(from + Character.MAX_VALUE, 0, null), false)) {
+            if (matches.add(entry.match) && matches.size() == limit) {
+                break;
+            }
+        }
+        return new ArrayList<>(matches);
+    }
+
+    /**
+     * @return The number of records indexed
+     */
+    public int size() {
+        int size = 0;
+        for (Map<Long, Entry[]> ids : records.values()) {
+            size += ids.size();
+        }
+        return size;
+    }
+
+    public synchronized void beginLoad() {
+        removedWhileLoading = new EnumMap<>(NameMatch.Type.class);
+        for (NameMatch.Type type : NameMatch.Type.values()) {
+            removedWhileLoading.put(type, new HashSet<Long>());
+        }
+    }
+
+    /**
+     * <p>Adds one page of names read from the database, skipping the records changed since the load began.</p>
+     */
+    public synchronized void load(Collection<NameMatch> matches) {
+        for (NameMatch match : matches) {
+            boolean changed = records.get(match.getType()).containsKey(match.getId())
+                    || (removedWhileLoading != null && removedWhileLoading.get(match.getType()).contains(match.getId()));
+            if (!changed) {
+                put(match);
+            }
+        }
+    }
+
+    public synchronized void finishLoad() {
+        removedWhileLoading = null;
+    }
+
+    private void removeRecord(NameMatch.Type type, Long id) {
+        Entry[] words = records.get(type).remove(id);
+        if (words != null) {
+            for (Entry word : words) {
+                entries.remove(word);
+            }
+        }
+    }
+
+    /** One entry per word of the name, all sharing the lower-cased name. */
+    private static Entry[] entriesOf(NameMatch match) {
+        String name = normalize(match.getName());
+        List<Entry> words = new ArrayList<>(2);
+
+        for (int i = 0; i < name.length(); i++) {
+            if (i == 0 || name.charAt(i - 1) == ' ') {
+                words.add(new Entry(name, i, match));
+            }
+        }
+        return words.toArray(new Entry[words.size()]);
+    }
+
+    /** Lower-cases the name and reduces every run of white space to one space, dropping it at either end. */
+    private static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+
+        StringBuilder normalized = new StringBuilder(name.length());
+        boolean space = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * <p>A name from one of its words to the end, ordered by that text and then by record. Search bounds have no
+     * record and sort before the entries with the same text.</p>
+     */
+    private static final class Entry implements Comparable<Entry> {
+        private final String name;
+        private final int offset;
+        private final NameMatch match;
+
+        Entry(String name, int offset, NameMatch match) {
+            this.name = name;
+            this.offset = offset;
+            this.match = match;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int length = name.length() - offset;
+            int otherLength = other.name.length() - other.offset;
+            for (int i = 0; i < Math.min(length, otherLength); i++) {
+                char c = name.charAt(offset + i);
+                char otherC = other.name.charAt(other.offset + i);
+                if (c != otherC) {
+                    return c - otherC;
+                }
+            }
+            if (length != otherLength) {
+                return length - otherLength;
+            }
+
+            if (match == null || other.match == null) {
+                return match == other.match ? 0 : (match == null ? -1 : 1);
+            }
+            int byType = match.getType().compareTo(other.match.getType());
+            return byType != 0 ? byType : match.getId().compareTo(other.match.getId());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.search;
+
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.jboss.quickstarts.wfk.customer.Customer;
+
+import java.io.Serializable;
+
+/**
+ * <p>A customer or contact found by its name, as returned by the {@link NameSearchRestService}.</p>
+ *
+ * @see NameIndex
+ */
+public class NameMatch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Type {
+        CUSTOMER, CONTACT
+    }
+
+    private final Type type;
+    private final Long id;
+    private final String name;
+
+    public NameMatch(Type type, Long id, String name) {
+        this.type = type;
+        this.id = id;
+        this.name = name;
+    }
+
+    public static NameMatch of(Customer customer) {
+        return new NameMatch(Type.CUSTOMER, customer.getId(), customer.getName());
+    }
+
+    public static NameMatch of(Contact contact) {
+        return new NameMatch(Type.CONTACT, contact.getId(), contact.getFirstName() + " " + contact.getLastName());
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return type + "[" + id + "]: " + name;
+    }
+}
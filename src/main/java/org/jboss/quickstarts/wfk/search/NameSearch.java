@@ -0,0 +1,173 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.search;
+
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.jboss.quickstarts.wfk.customer.Customer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.persistence.EntityManager;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * <p>Application wide {@link NameIndex} of customer and contact names.</p>
+ *
+ * <p>The index is loaded from the database in the background once the application has started, so that a large
+ * table does not hold up the deployment; until the load has finished searches may miss names. The customer and contact
+ * services report every name they write or delete, and the index applies the change once the transaction making it
+ * has committed, so that it never shows a name that was rolled back.</p>
+ *
+ * <p>Concurrency is bean managed, the index does its own locking.</p>
+ *
+ * @see NameSearchRestService
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class NameSearch {
+
+    /** Number of rows read per query when the index is loaded. */
+    private static final int PAGE_SIZE = 10000;
+
+    @Inject
+    private @Named("logger") Logger log;
+
+    @Inject
+    private EntityManager em;
+
+    @Resource(lookup = "java:comp/TransactionSynchronizationRegistry")
+    private TransactionSynchronizationRegistry transactions;
+
+    @Resource
+    private TimerService timers;
+
+    private final NameIndex index = new NameIndex();
+
+    @PostConstruct
+    void init() {
+        timers.createSingleActionTimer(0, new TimerConfig(null, false));
+    }
+
+    @Timeout
+    void load() {
+        index.beginLoad();
+        try {
+            Long after = 0L;
+            List<Object[]> rows;
+            do {
+                rows = em.createNamedQuery(Customer.FIND_NAMES, Object[].class)
+                        .setParameter("after", after).setMaxResults(PAGE_SIZE).getResultList();
+                List<NameMatch> page = new ArrayList<>(rows.size());
+                for (Object[] row : rows) {
+                    after = (Long) row[0];
+                    page.add(new NameMatch(NameMatch.Type.CUSTOMER, after, (String) row[1]));
+                }
+                index.load(page);
+            } while (rows.size() == PAGE_SIZE);
+
+            after = 0L;
+            do {
+                rows = em.createNamedQuery(Contact.FIND_NAMES, Object[].class)
+                        .setParameter("after", after).setMaxResults(PAGE_SIZE).getResultList();
+                List<NameMatch> page = new ArrayList<>(rows.size());
+                for (Object[] row : rows) {
+                    after = (Long) row[0];
+                    page.add(new NameMatch(NameMatch.Type.CONTACT, after, row[1] + " " + row[2]));
+                }
+                index.load(page);
+            } while (rows.size() == PAGE_SIZE);
+
+            log.info("NameSearch.load() - Indexed " + index.size() + " names");
+        } finally {
+            index.finishLoad();
+        }
+    }
+
+    /**
+     * @see NameIndex#search(String, int)
+     */
+    public List<NameMatch> search(String prefix, int limit) {
+        return index.search(prefix, limit);
+    }
+
+    /**
+     * <p>Indexes the name of a customer or contact being written, once the current transaction commits.</p>
+     */
+    public void saved(final NameMatch match) {
+        afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                index.put(match);
+            }
+        });
+    }
+
+    /**
+     * <p>Removes the name of a customer or contact being deleted, once the current transaction commits.</p>
+     */
+    public void deleted(final NameMatch.Type type, final Long id) {
+        afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                index.remove(type, id);
+            }
+        });
+    }
+
+    private void afterCommit(final Runnable change) {
+        switch (transactions.getTransactionStatus()) {
+            case Status.STATUS_NO_TRANSACTION:
+                change.run();
+                return;
+            case Status.STATUS_MARKED_ROLLBACK:
+            case Status.STATUS_ROLLING_BACK:
+            case Status.STATUS_ROLLEDBACK:
+                // The transaction is doomed, so the change will never be committed.
+                return;
+            default:
+                break;
+        }
+
+        transactions.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    change.run();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.search;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.jboss.quickstarts.wfk.util.RestServiceException;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * <p>Typeahead search over the names of customers and contacts.</p>
+ *
+ * <p>Example: <pre>GET api/names?prefix=geo&limit=5</pre></p>
+ *
+ * <p>Answers come from the in-memory {@link NameIndex} held by {@link NameSearch}, without a database query.</p>
+ */
+@Path("/names")
+@Produces(MediaType.APPLICATION_JSON)
+@Api(value = "/names", description = "Typeahead search of customer and contact names")
+@Stateless
+public class NameSearchRestService {
+
+    public static final int DEFAULT_LIMIT = 10;
+    public static final int MAX_LIMIT = 100;
+
+    @Inject
+    private NameSearch names;
+
+    /**
+     * <p>Returns the customers and contacts that have a name word starting with the given prefix, ignoring case.</p>
+     *
+     * @param prefix The start of a name word, or of several consecutive words
+     * @param limit The maximum number of matches to return
+     * @return A Response containing a list of NameMatches
+     */
+    @GET
+    @ApiOperation(value = "Find names by prefix", notes = "Returns a JSON array of the customers and contacts with a name "
+            + "word starting with the prefix, in alphabetical order of that word")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Matches found, possibly none"),
+            @ApiResponse(code = 400, message = "Missing prefix or invalid limit")
+    })
+    public Response findNames(
+            @ApiParam(value = "Start of a name", required = true)
+            @QueryParam("prefix") String prefix,
+            @ApiParam(value = "Maximum number of matches to return", allowableValues = "range[1, 100]", required = false)
+            @QueryParam("limit") Integer limit) {
+
+        if (prefix == null || prefix.trim().isEmpty()) {
+            throw new RestServiceException("A name prefix is required", Response.Status.BAD_REQUEST);
+        }
+        if (limit != null && limit < 1) {
+            throw new RestServiceException("The limit must be a positive number", Response.Status.BAD_REQUEST);
+        }
+
+        int maxResults = limit == null ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+        return Response.ok(names.search(prefix, maxResults)).build();
+    }
+}
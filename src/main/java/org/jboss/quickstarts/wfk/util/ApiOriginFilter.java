@@ -17,29 +17,125 @@
 package org.jboss.quickstarts.wfk.util;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
 
 import javax.servlet.*;
-import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 
 /**
- * <p>This filter adds response headers allowing for Cross-Origin Resource Sharing (CORS).</p>
+ * <p>This filter sits in front of every API call. It adds response headers allowing for Cross-Origin Resource Sharing
+ * (CORS), answers CORS preflight requests itself, and compresses responses.</p>
  *
- * <p>This enables an API to serve requests from other domains.</p>
+ * <p>This enables an API to serve requests from other domains. A preflight (an OPTIONS request carrying an
+ * <code>Access-Control-Request-Method</code> header) never reaches JAX-RS. It is answered directly with an
+ * <code>Access-Control-Max-Age</code>, so that browsers cache the result rather than preflighting every call.</p>
+ *
+ * <p>Responses are gzip or deflate encoded, whichever the <code>Accept-Encoding</code> of the request prefers, once
+ * their body reaches a size threshold. Smaller bodies are sent as they are, since compressing them saves less than it
+ * costs. A compressed response is a representation of its own, so its ETag gets the content coding appended. The
+ * coding is stripped again from the <code>If-Match</code> and <code>If-None-Match</code> headers of requests, so that
+ * the resources evaluate them against the ETags they compute.</p>
+ *
+ * <p>Both are configured through system properties:</p>
+ *
+ * <ul>
+ *     <li><code>api.cors.maxAge</code> - how long browsers may cache a preflight, in seconds (default 86400)</li>
+ *     <li><code>api.compression.threshold</code> - the smallest body compressed, in bytes (default 1024), or -1 to
+ *     never compress</li>
+ * </ul>
+ *
+ * <p>It supports asynchronous requests, the response of which is finished once the request completes. It is mapped
+ * in web.xml, after the MetricsFilter and before the {@link IdempotencyFilter}.</p>
  *
  * @author hugofirth
  * @see javax.servlet.Filter
+ * @see CompressingResponseWrapper
  */
-@WebFilter("/api/*")
 public class ApiOriginFilter implements Filter {
+
+    private static final String IF_MATCH = "If-Match";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+
+    private static final String ALLOWED_METHODS = "GET, POST, DELETE, PUT, OPTIONS";
+    private static final String ALLOWED_HEADERS = "Content-Type, " + IF_MATCH + ", " + IF_NONE_MATCH + ", "
+            + IdempotencyFilter.KEY_HEADER;
+    private static final String EXPOSED_HEADERS = "ETag, " + PageCursor.NEXT_CURSOR_HEADER + ", "
+            + IdempotencyFilter.REPLAYED_HEADER;
+
+    private final int maxAge = Integer.getInteger("api.cors.maxAge", 86400);
+    private final int compressionThreshold = Integer.getInteger("api.compression.threshold", 1024);
+
     @Override
     public void doFilter(ServletRequest request, ServletResponse response,
                          FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
         HttpServletResponse res = (HttpServletResponse) response;
         res.addHeader("Access-Control-Allow-Origin", "*");
-        res.addHeader("Access-Control-Allow-Methods", "GET, POST, DELETE, PUT");
-        res.addHeader("Access-Control-Allow-Headers", "Content-Type");
-        chain.doFilter(request, response);
+        res.addHeader("Access-Control-Allow-Methods", ALLOWED_METHODS);
+        res.addHeader("Access-Control-Allow-Headers", ALLOWED_HEADERS);
+
+        if ("OPTIONS".equals(req.getMethod()) && req.getHeader("Access-Control-Request-Method") != null) {
+            // A preflight: the answer is the same for every resource, so there is no need to dispatch it.
+            res.addHeader("Access-Control-Max-Age", String.valueOf(maxAge));
+            res.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            return;
+        }
+        res.addHeader("Access-Control-Expose-Headers", EXPOSED_HEADERS);
+
+        boolean codedIfNoneMatch = hasCoding(req.getHeader(IF_NONE_MATCH));
+        if (codedIfNoneMatch || hasCoding(req.getHeader(IF_MATCH))) {
+            request = req = new UncodedValidatorsRequest(req);
+        }
+
+        if (compressionThreshold < 0 || "HEAD".equals(req.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        // The body depends on the Accept-Encoding of the request, whether or not this one gets it compressed.
+        res.addHeader("Vary", "Accept-Encoding");
+        String encoding = CompressingResponseWrapper.negotiate(req.getHeader("Accept-Encoding"));
+        if (encoding == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        final CompressingResponseWrapper compressing = new CompressingResponseWrapper(res, encoding, compressionThreshold,
+                codedIfNoneMatch);
+        chain.doFilter(request, compressing);
+
+        if (req.isAsyncStarted()) {
+            // The response of an asynchronous request is written later, by another thread, so finish it on completion.
+            req.getAsyncContext().addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) throws IOException {
+                    compressing.finish();
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+        } else {
+            compressing.finish();
+        }
+    }
+
+    private static boolean hasCoding(String header) {
+        return header != null && !header.equals(EntityTags.withoutCoding(header));
     }
 
     @Override
@@ -49,4 +145,37 @@ public class ApiOriginFilter implements Filter {
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
     }
-}
\ No newline at end of file
+
+    /**
+     * <p>Request with the content codings stripped from the ETags of its conditional headers.</p>
+     */
+    private static final class UncodedValidatorsRequest extends HttpServletRequestWrapper {
+
+        UncodedValidatorsRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        private static boolean isValidator(String name) {
+            return IF_MATCH.equalsIgnoreCase(name) || IF_NONE_MATCH.equalsIgnoreCase(name);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            String value = super.getHeader(name);
+            return isValidator(name) ? EntityTags.withoutCoding(value) : value;
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            Enumeration<String> values = super.getHeaders(name);
+            if (!isValidator(name) || values == null) {
+                return values;
+            }
+            List<String> uncoded = new ArrayList<>();
+            while (values.hasMoreElements()) {
+                uncoded.add(EntityTags.withoutCoding(values.nextElement()));
+            }
+            return Collections.enumeration(uncoded);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * <p>Log handler which hands the records over to other handlers on a thread of its own, so that the threads logging
+ * neither format the messages nor wait for the console or the log file.</p>
+ *
+ * <p>The records wait in a bounded ring buffer. When it is full, because records come in faster than the handlers can
+ * write them, further records are dropped rather than blocking the threads logging, and counted: the number dropped
+ * is logged as a warning once there is room again, and published at /api/metrics.</p>
+ *
+ * @see LogPipeline
+ */
+public class AsyncLogHandler extends Handler {
+
+    private final Handler[] targets;
+    private final BlockingQueue<LogRecord> buffer;
+    private final Thread writer;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong unreported = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * @param targets The handlers to write the records with
+     * @param capacity How many records may wait to be written
+     */
+    public AsyncLogHandler(Handler[] targets, int capacity) {
+        this.targets = targets.clone();
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "async-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        // The caller is found on the thread logging, by walking its stack, unless it has been given.
+        record.getSourceClassName();
+
+        if (!buffer.offer(record)) {
+            dropped.incrementAndGet();
+            unreported.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return The number of records dropped because the buffer was full, since the handler was created
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void flush() {
+        for (Handler target : targets) {
+            target.flush();
+        }
+    }
+
+    /**
+     * <p>Writes the records still waiting, then stops the writer thread.</p>
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        LogRecord record;
+        while ((record = buffer.poll()) != null) {
+            deliver(record);
+        }
+        flush();
+    }
+
+    private void write() {
+        while (!closed) {
+            LogRecord record;
+            try {
+                // Polled rather than taken, so that the writer notices when the handler is closed.
+                record = buffer.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (record == null) {
+                continue;
+            }
+
+            long count = unreported.getAndSet(0);
+            if (count > 0) {
+                LogRecord report = new LogRecord(Level.WARNING,
+                        count + " log records were dropped, the log buffer was full");
+                report.setLoggerName(record.getLoggerName());
+                report.setSourceClassName(AsyncLogHandler.class.getName());
+                report.setSourceMethodName("publish");
+                deliver(report);
+            }
+            deliver(record);
+        }
+    }
+
+    private void deliver(LogRecord record) {
+        for (Handler target : targets) {
+            try {
+                target.publish(record);
+            } catch (RuntimeException e) {
+                reportError(null, e, ErrorManager.WRITE_FAILURE);
+            }
+        }
+    }
+}
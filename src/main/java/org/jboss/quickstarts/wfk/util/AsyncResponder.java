@@ -0,0 +1,236 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import org.jboss.quickstarts.wfk.metrics.RequestStatements;
+import org.jboss.quickstarts.wfk.metrics.SqlAccounting;
+import org.jboss.resteasy.spi.AsynchronousResponse;
+
+import javax.annotation.Resource;
+import javax.ejb.Asynchronous;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.SessionContext;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionManagement;
+import javax.ejb.TransactionManagementType;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.transaction.NotSupportedException;
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.TransactionSynchronizationRegistry;
+import javax.transaction.UserTransaction;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+
+/**
+ * <p>Runs the work of asynchronous REST requests off the request thread.</p>
+ *
+ * <p>An asynchronous resource method suspends its request with <code>@Suspend({@link #TIMEOUT})</code> and hands the
+ * work over to {@link #submit(AsynchronousResponse, Callable)}. The work then runs on the container's asynchronous EJB
+ * thread pool, which is bounded, while the request thread goes back to serving other requests. Blocking calls, such as
+ * the lookups of the upstream area service, therefore no longer hold a request thread each.</p>
+ *
+ * <p>Every request is answered with 503 Service Unavailable by RESTEasy once {@link #TIMEOUT} milliseconds have
+ * passed, which invites the client to retry. A write must therefore never commit after that, so the work runs in a
+ * transaction begun here, which the work joins, with a deadline {@link #COMMIT_MARGIN} milliseconds earlier:</p>
+ *
+ * <ul>
+ *     <li>work still waiting for a thread by the deadline is dropped rather than run for a client which has given
+ *     up;</li>
+ *     <li>the transaction times out at the deadline, and is rolled back rather than committed if the deadline has
+ *     passed when it completes, in which case the request is answered with 503 as well;</li>
+ *     <li>no more than <code>api.async.maxPending</code> requests (system property, default 200) are accepted at once,
+ *     further ones are answered with 503 straight away instead of queueing up behind them.</li>
+ * </ul>
+ *
+ * <p>The work is typically the synchronous variant of the resource method, called through its EJB, and its
+ * {@link RestServiceException}s are turned into responses here just as {@link RestServiceExceptionHandler} does for
+ * synchronous requests. They roll the transaction back, as they do the transaction of a synchronous request.</p>
+ *
+ * <p>The work must not wait for other asynchronous EJB calls of its own: these would queue up on the same bounded pool
+ * as the work holding its threads, and could starve it. {@link #isResponding()} tells the work that it runs here, so
+ * that it makes such calls synchronously instead.</p>
+ *
+ * @see org.jboss.resteasy.annotations.Suspend
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionManagement(TransactionManagementType.BEAN)
+public class AsyncResponder {
+
+    /** How long an asynchronous request may take, in milliseconds, before it is answered with a 503. */
+    public static final long TIMEOUT = 10000;
+
+    /**
+     * How long before {@link #TIMEOUT} the work must be ready to commit, in milliseconds: time for the request to be
+     * submitted once suspended, and for the transaction to commit.
+     */
+    static final long COMMIT_MARGIN = 1000;
+
+    @Inject
+    private @Named("logger") Logger log;
+
+    @Resource
+    private SessionContext context;
+
+    @Resource
+    private UserTransaction transaction;
+
+    @Resource(lookup = "java:comp/TransactionSynchronizationRegistry")
+    private TransactionSynchronizationRegistry transactions;
+
+    private static final ThreadLocal<Boolean> RESPONDING = new ThreadLocal<>();
+
+    private final Semaphore pending = new Semaphore(Integer.getInteger("api.async.maxPending", 200));
+
+    /**
+     * <p>Runs the work of a suspended request on the asynchronous EJB thread pool, and answers the request with the
+     * Response it returns.</p>
+     *
+     * @param response The suspended request
+     * @param work The work, returning the Response or throwing a {@link RestServiceException}
+     */
+    public void submit(AsynchronousResponse response, Callable<Response> work) {
+        if (!pending.tryAcquire()) {
+            response.setResponse(errorResponse(new RestServiceException("Too many pending requests, try again",
+                    Response.Status.SERVICE_UNAVAILABLE)));
+            return;
+        }
+
+        try {
+            // Through the business object, since a call on this instance would not be asynchronous.
+            context.getBusinessObject(AsyncResponder.class).run(response, work,
+                    System.currentTimeMillis() + TIMEOUT - COMMIT_MARGIN);
+        } catch (RuntimeException e) {
+            pending.release();
+            throw e;
+        }
+    }
+
+    @Asynchronous
+    public void run(AsynchronousResponse response, Callable<Response> work, long deadline) {
+        try {
+            // Transaction timeouts are in whole seconds, and a timeout of 0 would be the default one.
+            int seconds = (int) ((deadline - System.currentTimeMillis()) / 1000);
+            if (seconds < 1) {
+                log.warning("AsyncResponder.run() - Dropped a request which timed out waiting for a thread");
+                return;
+            }
+            RESPONDING.set(Boolean.TRUE);
+            response.setResponse(callInTransaction(work, deadline, seconds));
+        } finally {
+            RESPONDING.remove();
+            pending.release();
+        }
+    }
+
+    /**
+     * <p>Tells whether the current thread runs the work of an asynchronous request.</p>
+     *
+     * @return true on the asynchronous EJB thread pool, whilst running work submitted here
+     */
+    public static boolean isResponding() {
+        return RESPONDING.get() != null;
+    }
+
+    /**
+     * <p>Calls the work in a transaction which is only committed if it completes before the deadline.</p>
+     */
+    private Response callInTransaction(Callable<Response> work, final long deadline, int seconds) {
+        try {
+            transaction.setTransactionTimeout(seconds);
+            transaction.begin();
+            transaction.setTransactionTimeout(0);
+        } catch (NotSupportedException | SystemException e) {
+            log.warning("AsyncResponder.callInTransaction() - Unable to begin a transaction: " + e.getMessage());
+            return errorResponse(new RestServiceException(e));
+        }
+        transactions.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                if (System.currentTimeMillis() >= deadline) { //the client is being answered with a 503
+                    transactions.setRollbackOnly();
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+            }
+        });
+
+        Response response = call(work);
+        try {
+            if (transaction.getStatus() == Status.STATUS_ACTIVE) {
+                transaction.commit();
+                return response;
+            }
+            // Marked for rollback by the work, which has answered why, or rolled back by the transaction timeout
+            try {
+                transaction.rollback();
+            } catch (IllegalStateException e) { //rolled back and ended already
+            }
+            return response.getStatus() >= 400 ? response : timedOut();
+        } catch (RollbackException e) {
+            if (System.currentTimeMillis() >= deadline) {
+                return timedOut();
+            }
+            log.warning("AsyncResponder.callInTransaction() - Unable to commit an asynchronous request: "
+                    + e.getMessage());
+            return errorResponse(new RestServiceException(e));
+        } catch (Exception e) {
+            log.warning("AsyncResponder.callInTransaction() - Unable to complete the transaction of an asynchronous "
+                    + "request: " + e.getMessage());
+            return errorResponse(new RestServiceException(e));
+        }
+    }
+
+    private static Response timedOut() {
+        return errorResponse(new RestServiceException("The request timed out and has been rolled back, try again",
+                Response.Status.SERVICE_UNAVAILABLE));
+    }
+
+    private Response call(Callable<Response> work) {
+        // The work runs its statements on this thread, so they are accounted for here rather than by the MetricsFilter.
+        RequestStatements statements = SqlAccounting.begin();
+        try {
+            Response response = work.call();
+            if (SqlAccounting.isDebug()) {
+                return Response.fromResponse(response).header(SqlAccounting.COUNT_HEADER, statements.getCount())
+                        .header(SqlAccounting.TIME_HEADER, statements.getMillis()).build();
+            }
+            return response;
+        } catch (RestServiceException e) {
+            return errorResponse(e);
+        } catch (Exception e) {
+            log.warning("AsyncResponder.call() - Internal exception upon an asynchronous request: " + e.getMessage());
+            return errorResponse(new RestServiceException(e));
+        } finally {
+            SqlAccounting.end();
+        }
+    }
+
+    private static Response errorResponse(RestServiceException e) {
+        return RestServiceExceptionHandler.errorResponse(e).type(MediaType.APPLICATION_JSON_TYPE).build();
+    }
+}
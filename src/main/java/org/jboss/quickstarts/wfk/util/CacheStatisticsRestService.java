@@ -0,0 +1,114 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import org.hibernate.Session;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+
+import javax.ejb.Stateless;
+import javax.enterprise.inject.Any;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>Read-only view of the Hibernate second-level and query cache statistics.</p>
+ *
+ * <p>For each cache region the hit, miss and put counts are reported together with the number of entries it holds.
+ * Entity regions also report an invalidation count, which is the number of updates and deletes of that entity: each of
+ * them invalidates the cached copy of the row. It is not an eviction count: entries dropped by the cache itself to stay
+ * within its size limits are managed by the application server's cache container and are not visible to Hibernate, so
+ * they are not reported here.</p>
+ *
+ * <p>The statistics of every {@link EmailBloomFilter} published by its owner are listed as well.</p>
+ *
+ * <p>All counts are cumulative since the application was deployed.</p>
+ */
+@Path("/cache")
+@Produces(MediaType.APPLICATION_JSON)
+@Stateless
+public class CacheStatisticsRestService {
+
+    @Inject
+    private EntityManager em;
+
+    @Inject
+    @Any
+    private Instance<EmailBloomFilter> emailFilters;
+
+    @GET
+    public Response getCacheStatistics() {
+        Statistics statistics = em.unwrap(Session.class).getSessionFactory().getStatistics();
+
+        Map<String, Object> regions = new TreeMap<>();
+        for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            SecondLevelCacheStatistics region = statistics.getSecondLevelCacheStatistics(regionName);
+
+            Map<String, Long> counts = new LinkedHashMap<>();
+            counts.put("hitCount", region.getHitCount());
+            counts.put("missCount", region.getMissCount());
+            counts.put("putCount", region.getPutCount());
+            counts.put("elementCount", region.getElementCountInMemory());
+
+            String entityName = entityNameOf(statistics, regionName);
+            if (entityName != null) {
+                EntityStatistics entity = statistics.getEntityStatistics(entityName);
+                counts.put("invalidationCount", entity.getUpdateCount() + entity.getDeleteCount());
+            }
+            regions.put(regionName, counts);
+        }
+
+        Map<String, Long> queries = new LinkedHashMap<>();
+        queries.put("hitCount", statistics.getQueryCacheHitCount());
+        queries.put("missCount", statistics.getQueryCacheMissCount());
+        queries.put("putCount", statistics.getQueryCachePutCount());
+
+        List<Map<String, Object>> filters = new ArrayList<>();
+        for (EmailBloomFilter filter : emailFilters) {
+            filters.add(filter.getStatistics());
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", statistics.isStatisticsEnabled());
+        result.put("regions", regions);
+        result.put("queryCache", queries);
+        result.put("emailFilters", filters);
+        return Response.ok(result).build();
+    }
+
+    /** Entity regions are named after the entity, behind a prefix that the container derives from the deployment. */
+    private static String entityNameOf(Statistics statistics, String regionName) {
+        for (String entityName : statistics.getEntityNames()) {
+            if (regionName.endsWith(entityName)) {
+                return entityName;
+            }
+        }
+        return null;
+    }
+}
@@ -14,6 +14,10 @@ public class CompareStringsValidator implements ConstraintValidator<CompareStrin
     private StringComparisonMode comparisonMode;
     private boolean allowNull;
 
+    // The readers of the properties, for the last class validated. A constraint is declared on one class, so in
+    // practice they are looked up once.
+    private volatile Readers readers;
+
     @Override
     public void initialize(CompareStrings constraintAnnotation) {
         this.propertyNames = constraintAnnotation.propertyNames();
@@ -23,22 +27,39 @@ public class CompareStringsValidator implements ConstraintValidator<CompareStrin
 
     @Override
     public boolean isValid(Object target, ConstraintValidatorContext context) {
+        if (target == null) {
+            throw new IllegalArgumentException("Argument is invalid. Object Instance cannot be null");
+        }
+        ConstraintValidatorHelper.PropertyReader[] propertyReaders = readersFor(target.getClass());
         boolean isValid = true;
-        List<String> propertyValues = new ArrayList<String> (propertyNames.length);
-        for (int i = 0; i < propertyNames.length; i++) {
-            String propertyValue = ConstraintValidatorHelper.getPropertyValue(String.class, propertyNames[i], target);
-            if(propertyValue == null) { 
-                if(!allowNull) {
-                    isValid = false;
-                    break;
-                }
+
+        if (propertyReaders.length == 2) {
+            // The common case, compared without allocating
+            String first = propertyReaders[0].read(String.class, target);
+            String second = propertyReaders[1].read(String.class, target);
+
+            if ((first == null || second == null) && !allowNull) {
+                isValid = false;
             } else {
-                propertyValues.add(propertyValue);
+                isValid = ConstraintValidatorHelper.isValid(first, second, comparisonMode);
+            }
+        } else {
+            List<String> propertyValues = new ArrayList<String> (propertyReaders.length);
+            for (int i = 0; i < propertyReaders.length; i++) {
+                String propertyValue = propertyReaders[i].read(String.class, target);
+                if(propertyValue == null) { 
+                    if(!allowNull) {
+                        isValid = false;
+                        break;
+                    }
+                } else {
+                    propertyValues.add(propertyValue);
+                }
             }
-        }
 
-        if(isValid) {
-            isValid = ConstraintValidatorHelper.isValid(propertyValues, comparisonMode);
+            if(isValid) {
+                isValid = ConstraintValidatorHelper.isValid(propertyValues, comparisonMode);
+            }
         }
 
         if (!isValid) {
@@ -57,4 +78,27 @@ public class CompareStringsValidator implements ConstraintValidator<CompareStrin
 
         return isValid;
     }
+
+    private ConstraintValidatorHelper.PropertyReader[] readersFor(Class<?> type) {
+        Readers current = readers;
+        if (current == null || current.type != type) {
+            ConstraintValidatorHelper.PropertyReader[] propertyReaders = new ConstraintValidatorHelper.PropertyReader[propertyNames.length];
+            for (int i = 0; i < propertyNames.length; i++) {
+                propertyReaders[i] = ConstraintValidatorHelper.getPropertyReader(type, propertyNames[i]);
+            }
+            current = new Readers(type, propertyReaders);
+            readers = current;
+        }
+        return current.propertyReaders;
+    }
+
+    private static final class Readers {
+        final Class<?> type;
+        final ConstraintValidatorHelper.PropertyReader[] propertyReaders;
+
+        Readers(Class<?> type, ConstraintValidatorHelper.PropertyReader[] propertyReaders) {
+            this.type = type;
+            this.propertyReaders = propertyReaders;
+        }
+    }
 }
@@ -0,0 +1,342 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>Response wrapper that compresses the body with a content encoding negotiated with the client.</p>
+ *
+ * <p>The body is buffered until it reaches the threshold. If the response is complete before that, it is sent as it
+ * is, with its Content-Length. Otherwise the content encoding is set and the buffered and remaining bytes go through the
+ * compressor. A flush of the response, such as the one a streamed JSON array does every few rows, flushes the
+ * compressor too, so the client keeps receiving data as it is produced.</p>
+ *
+ * <p>Only textual content types are compressed, and never a response that already has a content encoding. The ETag of a
+ * compressed response gets the content coding appended, see {@link EntityTags#withCoding(String, String)}, and so
+ * does the ETag of a 304 answering a request conditional on a compressed representation.</p>
+ *
+ * @see ApiOriginFilter
+ */
+final class CompressingResponseWrapper extends HttpServletResponseWrapper {
+
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    private static final int COMPRESSOR_BUFFER_SIZE = 8192;
+
+    private final String encoding;
+    private final int threshold;
+    private final boolean codedIfNoneMatch;
+
+    private CompressingOutputStream stream;
+    private PrintWriter writer;
+    private boolean encoded;
+
+    /**
+     * @param response The response to compress
+     * @param encoding The content coding negotiated with {@link #negotiate(String)}
+     * @param threshold The smallest body compressed, in bytes
+     * @param codedIfNoneMatch Whether the If-None-Match of the request holds the ETag of a compressed representation
+     */
+    CompressingResponseWrapper(HttpServletResponse response, String encoding, int threshold, boolean codedIfNoneMatch) {
+        super(response);
+        this.encoding = encoding;
+        this.threshold = threshold;
+        this.codedIfNoneMatch = codedIfNoneMatch;
+    }
+
+    /**
+     * <p>Picks the content encoding to respond with.</p>
+     *
+     * @param acceptEncoding The Accept-Encoding header of the request, or null
+     * @return {@link #GZIP} or {@link #DEFLATE}, the one with the higher quality (gzip on a tie), or null if the client
+     * accepts neither
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+
+        float gzip = -1;
+        float deflate = -1;
+        float any = -1;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ENGLISH);
+            float quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Float.parseFloat(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+
+            if (coding.equals(GZIP) || coding.equals("x-gzip")) {
+                gzip = quality;
+            } else if (coding.equals(DEFLATE)) {
+                deflate = quality;
+            } else if (coding.equals("*")) {
+                any = quality;
+            }
+        }
+
+        // Codings that are not listed take the quality of "*", if any
+        gzip = gzip < 0 ? any : gzip;
+        deflate = deflate < 0 ? any : deflate;
+        if (gzip > 0 && gzip >= deflate) {
+            return GZIP;
+        }
+        return deflate > 0 ? DEFLATE : null;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        return stream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (stream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called");
+            }
+            writer = new PrintWriter(new OutputStreamWriter(stream(), getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    private CompressingOutputStream stream() throws IOException {
+        if (stream == null) {
+            stream = new CompressingOutputStream(getResponse().getOutputStream());
+        }
+        return stream;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        // The length is only known once it is decided whether the body is compressed, see finish()
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (!isContentLength(name)) {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (!isContentLength(name)) {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        if (!isContentLength(name)) {
+            super.setIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        if (!isContentLength(name)) {
+            super.addIntHeader(name, value);
+        }
+    }
+
+    private static boolean isContentLength(String name) {
+        return "Content-Length".equalsIgnoreCase(name);
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        } else if (stream != null) {
+            stream.flush();
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        if (stream != null) {
+            stream.resetBuffer();
+        }
+        super.resetBuffer();
+    }
+
+    @Override
+    public void reset() {
+        if (stream != null) {
+            stream.resetBuffer();
+        }
+        super.reset();
+    }
+
+    /**
+     * <p>Completes the response once the request has been processed, writing what is still buffered.</p>
+     */
+    void finish() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (stream != null) {
+            stream.close();
+        } else if (codedIfNoneMatch && getStatus() == SC_NOT_MODIFIED) {
+            // No body is written for a 304, so the stream that would tag it in close() was never opened
+            tagCoding();
+        }
+    }
+
+    /**
+     * <p>Appends the content coding to the ETag of the response, if it has one.</p>
+     */
+    private void tagCoding() {
+        String tag = getHeader("ETag");
+        if (tag != null) {
+            super.setHeader("ETag", EntityTags.withCoding(tag, encoding));
+        }
+    }
+
+    private boolean shouldEncode() {
+        if (containsHeader("Content-Encoding")) {
+            return false;
+        }
+        String contentType = getContentType();
+        if (contentType == null) {
+            return false;
+        }
+        contentType = contentType.toLowerCase(Locale.ENGLISH);
+        return contentType.startsWith("text/") || contentType.contains("json") || contentType.contains("xml")
+                || contentType.contains("javascript");
+    }
+
+    /**
+     * <p>Buffers up to the threshold, then decides between sending the body as it is and compressing it.</p>
+     */
+    private final class CompressingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream raw;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.min(threshold, 8192));
+        private OutputStream out;
+        private boolean closed;
+
+        CompressingOutputStream(ServletOutputStream raw) {
+            this.raw = raw;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("The response has already been completed");
+            }
+            if (out == null) {
+                if (buffer.size() + len < threshold) {
+                    buffer.write(b, off, len);
+                    return;
+                }
+                start();
+            }
+            out.write(b, off, len);
+        }
+
+        /**
+         * <p>Called once the threshold is reached: picks the stream the body goes to and writes the buffered bytes to
+         * it.</p>
+         */
+        private void start() throws IOException {
+            if (shouldEncode()) {
+                encoded = true;
+                CompressingResponseWrapper.super.setHeader("Content-Encoding", encoding);
+                tagCoding();
+                // Both streams sync flush, so that flushing the response flushes what has been compressed so far
+                out = GZIP.equals(encoding)
+                        ? new GZIPOutputStream(raw, COMPRESSOR_BUFFER_SIZE, true)
+                        : new DeflaterOutputStream(raw, true);
+            } else {
+                out = raw;
+            }
+            buffer.writeTo(out);
+            buffer = null;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // Whilst buffering there is nothing to flush yet, the response may still turn out to be small
+            if (out != null) {
+                out.flush();
+            }
+        }
+
+        void resetBuffer() {
+            if (out == null) {
+                buffer.reset();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            if (out == null) {
+                // A 304 stands for the representation the client holds, which was compressed
+                if (codedIfNoneMatch && getStatus() == SC_NOT_MODIFIED) {
+                    tagCoding();
+                }
+                // The whole body is below the threshold, so it is sent uncompressed with its length
+                if (buffer.size() > 0) {
+                    CompressingResponseWrapper.super.setContentLength(buffer.size());
+                    buffer.writeTo(raw);
+                }
+                raw.flush();
+            } else if (encoded) {
+                // Writes the end of the compressed data and releases the compressor
+                out.close();
+            } else {
+                out.flush();
+            }
+        }
+    }
+}
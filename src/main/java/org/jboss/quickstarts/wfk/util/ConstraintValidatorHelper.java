@@ -2,15 +2,30 @@ package org.jboss.quickstarts.wfk.util;
 
 import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public abstract class ConstraintValidatorHelper {
 
+    /**
+     * Getters are looked up once per class and property, and kept as method handles for the life of the class.
+     */
+    private static final ClassValue<ConcurrentMap<String, PropertyReader>> READERS = new ClassValue<ConcurrentMap<String, PropertyReader>>() {
+        @Override
+        protected ConcurrentMap<String, PropertyReader> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<String, PropertyReader>();
+        }
+    };
+
 public static <T> T getPropertyValue(Class<T> requiredType, String propertyName, Object instance) {
         if(requiredType == null) {
             throw new IllegalArgumentException("Argument is invalid. Required Type cannot be null");
@@ -21,25 +36,106 @@ public static <T> T getPropertyValue(Class<T> requiredType, String propertyName,
         if(instance == null) {
             throw new IllegalArgumentException("Argument is invalid. Object Instance cannot be null");
         }
-        T returnValue = null;
-        try {
-            PropertyDescriptor descriptor = new PropertyDescriptor(propertyName, instance.getClass());
-            Method readMethod = descriptor.getReadMethod();
-            if(readMethod == null) {
-                throw new IllegalStateException("Property '" + propertyName + "' of " + instance.getClass().getName() + " is not readable!");
+        return getPropertyReader(instance.getClass(), propertyName).read(requiredType, instance);
+    }
+
+    /**
+     * Returns the cached reader of a property, looking its getter up on first use.
+     *
+     * @throws IllegalArgumentException if the class has no such property
+     * @throws IllegalStateException if the property has no getter
+     */
+    static PropertyReader getPropertyReader(Class<?> type, String propertyName) {
+        ConcurrentMap<String, PropertyReader> readers = READERS.get(type);
+        PropertyReader reader = readers.get(propertyName);
+        if(reader == null) {
+            reader = new PropertyReader(type, propertyName);
+            PropertyReader existing = readers.putIfAbsent(propertyName, reader);
+            if(existing != null) {
+                reader = existing;
             }
-            if(requiredType.isAssignableFrom(readMethod.getReturnType())) {
-                try {
-                    Object propertyValue = readMethod.invoke(instance);
-                    returnValue = requiredType.cast(propertyValue);
-                } catch (Exception e) {
-                    e.printStackTrace(); // cannot invoke readMethod
+        }
+        return reader;
+    }
+
+    /**
+     * Reads one property of instances of one class through a method handle on its getter.
+     */
+    static final class PropertyReader {
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+        private final Class<?> returnType;
+        private final MethodHandle getter;
+
+        PropertyReader(Class<?> type, String propertyName) {
+            try {
+                PropertyDescriptor descriptor = new PropertyDescriptor(propertyName, type);
+                Method readMethod = descriptor.getReadMethod();
+                if(readMethod == null) {
+                    throw new IllegalStateException("Property '" + propertyName + "' of " + type.getName() + " is not readable!");
                 }
+                readMethod.setAccessible(true);
+                this.returnType = readMethod.getReturnType();
+                this.getter = MethodHandles.lookup().unreflect(readMethod).asType(GETTER_TYPE);
+            } catch (IntrospectionException e) {
+                throw new IllegalArgumentException("Property '" + propertyName + "' is not defined in " + type.getName() + "!", e);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Property '" + propertyName + "' of " + type.getName() + " is not readable!", e);
+            }
+        }
+
+        /**
+         * @return the value of the property, or null if it is not of the required type
+         */
+        <T> T read(Class<T> requiredType, Object instance) {
+            if(!requiredType.isAssignableFrom(returnType)) {
+                return null;
+            }
+            try {
+                return requiredType.cast((Object) getter.invokeExact(instance));
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Unable to read a property of " + instance.getClass().getName(), e);
             }
-        } catch (IntrospectionException e) {
-            throw new IllegalArgumentException("Property '" + propertyName + "' is not defined in " + instance.getClass().getName() + "!", e);
         }
-        return returnValue; 
+    }
+
+    /**
+     * Compares two values without allocating, with the same outcome as {@link #isValid(Collection, StringComparisonMode)}
+     * given the values that are not null. Values are compared ignoring case with String.equalsIgnoreCase() rather than
+     * by lower casing them first, which only differs for a few characters outside of the ASCII range.
+     */
+    public static boolean isValid(String first, String second, StringComparisonMode comparisonMode) {
+        boolean equal;
+        if(first == null || second == null) {
+            switch (comparisonMode) {
+            case EQUAL:
+            case EQUAL_IGNORE_CASE:
+                return first != null || second != null; // a single value is equal to itself, no value at all is not
+            default:
+                return true;
+            }
+        }
+
+        switch (comparisonMode) {
+        case EQUAL_IGNORE_CASE:
+        case NOT_EQUAL_IGNORE_CASE:
+            equal = first.equalsIgnoreCase(second);
+            break;
+        default:
+            equal = first.equals(second);
+        }
+
+        switch (comparisonMode) {
+        case EQUAL:
+        case EQUAL_IGNORE_CASE:
+            return equal;
+        case NOT_EQUAL:
+        case NOT_EQUAL_IGNORE_CASE:
+            return !equal;
+        }
+        return true;
     }
 
     public static boolean isValid(Collection<String> propertyValues, StringComparisonMode comparisonMode) {
@@ -0,0 +1,372 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Funnels;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * <p>Compact in-memory set of the email addresses stored in one table, used to skip the uniqueness query on sign-up.</p>
+ *
+ * <p>The filter answers "definitely not present" or "maybe present". Only the first answer is acted upon: a sign-up
+ * with an email the filter has never seen needs no query, anything else is still checked against the database, and the
+ * unique constraint on the email column remains the source of truth. For that to hold every email must be added
+ * before the row holding it is written, so the filter is a superset of the table.</p>
+ *
+ * <p>A Bloom filter cannot forget an element, so removed and replaced emails are only counted. Once they make up a
+ * tenth of the capacity, or the capacity has been exceeded, {@link #needsRebuild()} asks the owner to reload the filter
+ * from the table, usually with {@link #reload(EmailPages, int)}. Only one rebuild runs at a time. Emails added while a
+ * rebuild is running go into both the current and the new filter. Until the first load has finished every email is
+ * reported as maybe present.</p>
+ *
+ * <p>An email added before a rebuild may still be uncommitted when the rebuild reads the table, and be committed only
+ * after the page that would hold it has been read. Added emails are therefore kept as pending until the owner reports,
+ * with {@link #settle(String)} or {@link #settleOnCompletion(String, TransactionSynchronizationRegistry)}, that the
+ * transaction writing them has completed, and a rebuild starts out with every pending email.</p>
+ *
+ * <p>The capacity and the false positive probability are read from the system properties
+ * <code>&lt;name&gt;.emailFilter.expectedInsertions</code> (default {@value #DEFAULT_EXPECTED_INSERTIONS}) and
+ * <code>&lt;name&gt;.emailFilter.fpp</code> (default {@value #DEFAULT_FPP}). Each filter holds
+ * -n ln(p) / (ln 2)<sup>2</sup> bits, about 1.2MB for a million emails at 1%.</p>
+ *
+ * <p>The filter lives in one JVM only and sees the writes made by this application instance, so deployments where
+ * several instances share a database should disable it with <code>&lt;name&gt;.emailFilter.enabled=false</code>.</p>
+ */
+public final class EmailBloomFilter {
+
+    public static final int DEFAULT_EXPECTED_INSERTIONS = 1000000;
+    public static final double DEFAULT_FPP = 0.01;
+
+    /** Share of the capacity that may be taken by removed emails before a rebuild is due. */
+    private static final double STALE_RATIO = 0.1;
+
+    private static final Funnel<CharSequence> FUNNEL = Funnels.stringFunnel(Charsets.UTF_8);
+
+    private final String name;
+    private final int expectedInsertions;
+    private final double fpp;
+    private final boolean enabled;
+
+    // All fields below are guarded by this
+    private BloomFilter<CharSequence> filter;
+    private int capacity;
+    private long count;
+    private long stale;
+    private boolean loaded;
+
+    private BloomFilter<CharSequence> rebuilding;
+    private int rebuildingCapacity;
+    private long rebuildingCount;
+    private long rebuildingStale;
+
+    private final Multiset<String> pending = HashMultiset.create();
+
+    private long checks;
+    private long skipped;
+    private long rebuilds;
+
+    /**
+     * <p>Reads the emails stored in a table, in order.</p>
+     */
+    public interface EmailPages {
+
+        /**
+         * @param afterEmail The last email of the previous page, or the empty string for the first page
+         * @param maxResults The maximum number of emails to return
+         * @return The emails that sort after the given one
+         */
+        List<String> findEmailPage(String afterEmail, int maxResults);
+    }
+
+    private EmailBloomFilter(String name, int expectedInsertions, double fpp, boolean enabled) {
+        this.name = name;
+        this.expectedInsertions = expectedInsertions;
+        this.fpp = fpp;
+        this.enabled = enabled;
+        this.capacity = expectedInsertions;
+        this.filter = create(capacity);
+    }
+
+    /**
+     * <p>Creates an empty filter, configured from the <code>&lt;name&gt;.emailFilter.*</code> system properties.</p>
+     *
+     * @param name The name of the filter, by convention the name of the table it mirrors
+     * @return A filter that reports every email as maybe present until it has been loaded
+     */
+    public static EmailBloomFilter fromSystemProperties(String name) {
+        int expectedInsertions = Integer.getInteger(name + ".emailFilter.expectedInsertions", DEFAULT_EXPECTED_INSERTIONS);
+        double fpp = Double.parseDouble(System.getProperty(name + ".emailFilter.fpp", String.valueOf(DEFAULT_FPP)));
+
+        boolean enabled = Boolean.parseBoolean(System.getProperty(name + ".emailFilter.enabled", "true"));
+
+        if (expectedInsertions < 1 || !(fpp > 0 && fpp < 1)) {
+            throw new IllegalArgumentException("Invalid email filter configuration for " + name + ": expectedInsertions="
+                    + expectedInsertions + ", fpp=" + fpp);
+        }
+        return new EmailBloomFilter(name, expectedInsertions, fpp, enabled);
+    }
+
+    /**
+     * <p>Tells whether the email may be stored in the table. A false answer is definite.</p>
+     *
+     * @param email The email to look up
+     * @return false if the email is certainly not in the table, true if it has to be checked against the database
+     */
+    public synchronized boolean mightContain(String email) {
+        checks++;
+        if (!enabled || !loaded || email == null || filter.mightContain(email)) {
+            return true;
+        }
+        skipped++;
+        return false;
+    }
+
+    /**
+     * <p>Records an email that is about to be written to the table. The email is pending until {@link #settle(String)}
+     * is called for it.</p>
+     *
+     * @param email The email being inserted, or set on an existing row
+     * @return true if the email was certainly not in the filter before
+     */
+    public synchronized boolean add(String email) {
+        if (email == null) {
+            return false;
+        }
+        pending.add(email);
+        if (rebuilding != null) {
+            rebuilding.put(email);
+            rebuildingCount++;
+        }
+        count++;
+        return filter.put(email);
+    }
+
+    /**
+     * <p>Records that the transaction writing an email passed to {@link #add(String)} or {@link #replace(String)} has
+     * completed, committed or rolled back. From then on a rebuild either reads the email from the table or does not
+     * need it.</p>
+     *
+     * @param email The email that was added
+     */
+    public synchronized void settle(String email) {
+        pending.remove(email);
+    }
+
+    /**
+     * <p>Settles an email passed to {@link #add(String)} or {@link #replace(String)} once the current transaction has
+     * been committed or rolled back, or straight away outside of a transaction.</p>
+     *
+     * @param email The email that was added
+     * @param transactions The registry of the transaction writing the email
+     */
+    public void settleOnCompletion(final String email, TransactionSynchronizationRegistry transactions) {
+        if (transactions.getTransactionKey() != null) {
+            try {
+                transactions.registerInterposedSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        settle(email);
+                    }
+                });
+                return;
+            } catch (IllegalStateException e) {
+                // The transaction is completing already.
+            }
+        }
+        settle(email);
+    }
+
+    /**
+     * <p>Records that an email has been deleted from the table, or replaced by another one. The filter cannot forget
+     * it, so it is only counted towards the next rebuild.</p>
+     *
+     * @param email The email that is no longer stored
+     */
+    public synchronized void remove(String email) {
+        markStale();
+    }
+
+    /**
+     * <p>Records an email that is about to be set on an existing row. If the filter had certainly not seen it, the
+     * email it replaces is counted as removed.</p>
+     *
+     * @param email The email being set
+     */
+    public synchronized void replace(String email) {
+        if (add(email)) {
+            markStale();
+        }
+    }
+
+    /**
+     * <p>Tells whether the filter should be reloaded from the table, either because it has never been loaded or
+     * because removed emails and growth have pushed its false positive rate above the configured one. A disabled
+     * filter is never loaded.</p>
+     */
+    public synchronized boolean needsRebuild() {
+        return enabled && (!loaded || count > capacity || stale > capacity * STALE_RATIO);
+    }
+
+    /**
+     * <p>Reloads the filter from the table if {@link #needsRebuild()} and no other rebuild is running. The current
+     * filter keeps answering meanwhile, and is kept if the table cannot be read.</p>
+     *
+     * @param pages The table to read
+     * @param pageSize The number of emails to read per page
+     * @return true if the filter has been reloaded, false if no rebuild was due or another one was running
+     */
+    public boolean reload(EmailPages pages, int pageSize) {
+        if (!needsRebuild() || !beginRebuild()) {
+            return false;
+        }
+
+        boolean finished = false;
+        try {
+            List<String> emails;
+            String after = "";
+            do { // Seeks on the unique email column rather than using offsets
+                emails = pages.findEmailPage(after, pageSize);
+                load(emails);
+                if (!emails.isEmpty()) {
+                    after = emails.get(emails.size() - 1);
+                }
+            } while (emails.size() == pageSize);
+
+            finishRebuild();
+            finished = true;
+            return true;
+        } finally {
+            if (!finished) {
+                abortRebuild();
+            }
+        }
+    }
+
+    /**
+     * <p>Starts loading a new filter, sized for twice the current number of emails and no less than the configured
+     * capacity and holding the pending emails. The current filter keeps answering until {@link #finishRebuild()}.</p>
+     *
+     * <p>A rebuild that is already running is left alone, since replacing it would lose the pages it has loaded.</p>
+     *
+     * @return true if the rebuild has started, false if another one is in progress
+     */
+    public synchronized boolean beginRebuild() {
+        if (rebuilding != null) {
+            return false;
+        }
+        rebuildingCapacity = (int) Math.min(Integer.MAX_VALUE, Math.max(expectedInsertions, 2 * (count - stale)));
+        rebuilding = create(rebuildingCapacity);
+        for (String email : pending.elementSet()) {
+            rebuilding.put(email);
+        }
+        rebuildingCount = pending.elementSet().size();
+        rebuildingStale = 0;
+        return true;
+    }
+
+    /**
+     * <p>Adds one page of the emails read from the table to the filter being rebuilt.</p>
+     */
+    public synchronized void load(Collection<String> emails) {
+        if (rebuilding == null) {
+            throw new IllegalStateException("No rebuild of the " + name + " email filter is in progress");
+        }
+        for (String email : emails) {
+            rebuilding.put(email);
+        }
+        rebuildingCount += emails.size();
+    }
+
+    /**
+     * <p>Replaces the current filter with the one loaded since {@link #beginRebuild()}.</p>
+     */
+    public synchronized void finishRebuild() {
+        if (rebuilding == null) {
+            throw new IllegalStateException("No rebuild of the " + name + " email filter is in progress");
+        }
+        filter = rebuilding;
+        capacity = rebuildingCapacity;
+        count = rebuildingCount;
+        stale = rebuildingStale;
+        loaded = true;
+        rebuilds++;
+        rebuilding = null;
+    }
+
+    /**
+     * <p>Drops a rebuild that could not be completed, leaving the current filter in place.</p>
+     */
+    public synchronized void abortRebuild() {
+        rebuilding = null;
+    }
+
+    /**
+     * <p>Returns the configuration, memory use and effectiveness of the filter.</p>
+     *
+     * @return The statistics by name, in a stable order
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("name", name);
+        statistics.put("enabled", enabled);
+        statistics.put("loaded", loaded);
+        statistics.put("capacity", capacity);
+        statistics.put("count", count);
+        statistics.put("staleCount", stale);
+        statistics.put("pendingCount", pending.size());
+        statistics.put("configuredFpp", fpp);
+        statistics.put("expectedFpp", filter.expectedFpp());
+        statistics.put("memoryBytes", memoryBytes(capacity, fpp));
+        statistics.put("checkCount", checks);
+        statistics.put("skippedQueryCount", skipped);
+        statistics.put("rebuildCount", rebuilds);
+        return statistics;
+    }
+
+    private void markStale() {
+        stale++;
+        if (rebuilding != null) {
+            rebuildingStale++;
+        }
+    }
+
+    private BloomFilter<CharSequence> create(int insertions) {
+        return BloomFilter.create(FUNNEL, insertions, fpp);
+    }
+
+    /** The size of the bit array Guava allocates for the given capacity and probability, rounded up to whole words. */
+    private static long memoryBytes(int insertions, double fpp) {
+        long bits = (long) (-insertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        return (bits + 63) / 64 * 8;
+    }
+}
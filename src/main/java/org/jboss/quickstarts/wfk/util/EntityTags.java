@@ -0,0 +1,150 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Strong ETags derived from the optimistic lock version of {@link Versioned} entities.</p>
+ *
+ * <p>The ETag of a single entity is its id and version, so it changes whenever the entity is updated and the version of
+ * an <code>If-Match</code> header can be used as the condition of the update itself. The ETag of a list is a hash of the
+ * ids and versions of its entities. Either is computed without serializing the response body, so a request whose
+ * <code>If-None-Match</code> matches is answered with 304 before the body is written.</p>
+ *
+ * <p>A compressed response is a different representation, so the {@link ApiOriginFilter} appends its content coding
+ * to its ETag, as in <code>"12-3-gzip"</code>. The filter strips the coding again from the conditional headers of
+ * requests with {@link #withoutCoding(String)}, before they are evaluated here.</p>
+ *
+ * @see RestServiceException
+ */
+public final class EntityTags {
+
+    private static final String SEPARATOR = "-";
+
+    private static final Pattern CODING = Pattern.compile(SEPARATOR + "(?:" + CompressingResponseWrapper.GZIP + "|"
+            + CompressingResponseWrapper.DEFLATE + ")\"");
+
+    private EntityTags() {
+    }
+
+    /**
+     * @param entity A stored entity
+     * @return The ETag of the entity, or null if it has no version yet
+     */
+    public static EntityTag of(Versioned entity) {
+        if (entity.getVersion() == null) {
+            return null;
+        }
+        return new EntityTag(entity.getId() + SEPARATOR + entity.getVersion());
+    }
+
+    /**
+     * @param entities The entities of a list, in the order they are returned in
+     * @param nextCursor The cursor of the next page returned with the list, or null
+     * @return The ETag of the list
+     */
+    public static EntityTag of(List<? extends Versioned> entities, String nextCursor) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (Versioned entity : entities) {
+            hasher.putLong(entity.getId()).putLong(entity.getVersion());
+        }
+        if (nextCursor != null) {
+            hasher.putString(nextCursor, Charsets.UTF_8);
+        }
+        return new EntityTag(hasher.hash().toString());
+    }
+
+    /**
+     * <p>Derives the ETag of a compressed representation from the ETag of the uncompressed one.</p>
+     *
+     * @param tag The value of the ETag header, strong or weak
+     * @param coding The content coding of the representation
+     * @return The ETag with the coding appended to its opaque value, or the value as it is if it is not an ETag
+     */
+    public static String withCoding(String tag, String coding) {
+        if (tag == null || !tag.endsWith("\"")) {
+            return tag;
+        }
+        return tag.substring(0, tag.length() - 1) + SEPARATOR + coding + "\"";
+    }
+
+    /**
+     * <p>Strips the content codings appended by {@link #withCoding(String, String)} from the ETags of an
+     * <code>If-Match</code> or <code>If-None-Match</code> header.</p>
+     *
+     * @param header The value of the header, or null
+     * @return The header with the ETags of the uncompressed representations
+     */
+    public static String withoutCoding(String header) {
+        if (header == null) {
+            return null;
+        }
+        return CODING.matcher(header).replaceAll("\"");
+    }
+
+    /**
+     * <p>Evaluates the conditional headers of a request against the current ETag of the resource.</p>
+     *
+     * @param request The request, or null when the endpoint is called directly rather than over HTTP
+     * @param tag The current ETag of the resource
+     * @return A 304 (or 412) response to return as is, or null if the request should be served
+     */
+    public static Response.ResponseBuilder evaluatePreconditions(Request request, EntityTag tag) {
+        if (request == null || tag == null) {
+            return null;
+        }
+        return request.evaluatePreconditions(tag);
+    }
+
+    /**
+     * <p>Parses the <code>If-Match</code> header of an update into the version the update is conditional on.</p>
+     *
+     * <p>Only a single strong ETag, as returned by {@link #of(Versioned)} for the same entity, can match. A weak ETag, a
+     * list of ETags, or the ETag of another entity never match.</p>
+     *
+     * @param ifMatch The value of the If-Match header, or null
+     * @param id The id of the entity being updated
+     * @return The expected version, or null if the update is unconditional (no header, or <code>*</code>)
+     * @throws RestServiceException With status 412 if the header cannot match the entity
+     */
+    public static Long versionToMatch(String ifMatch, Long id) throws RestServiceException {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+
+        String prefix = "\"" + id + SEPARATOR;
+        String value = withoutCoding(ifMatch).trim();
+        if (value.startsWith(prefix) && value.endsWith("\"") && value.length() > prefix.length() + 1) {
+            try {
+                return Long.valueOf(value.substring(prefix.length(), value.length() - 1));
+            } catch (NumberFormatException e) {
+                // Falls through to the failed precondition below
+            }
+        }
+        throw new RestServiceException("If-Match " + ifMatch + " does not match the current ETag",
+                Response.Status.PRECONDITION_FAILED);
+    }
+}
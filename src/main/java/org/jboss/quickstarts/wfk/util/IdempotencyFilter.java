@@ -0,0 +1,204 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import javax.inject.Inject;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>Makes the writes sent with an {@value #KEY_HEADER} header idempotent, so that clients can safely retry them, on a
+ * timeout for example.</p>
+ *
+ * <p>The first request made with a key runs as usual, and its response is kept in the {@link IdempotencyStore}. A
+ * retry with the same key, to the same resource, is answered with that response again, marked with the
+ * {@value #REPLAYED_HEADER} header, without running the request and so without touching the database. A retry arriving
+ * while the first request is still running waits for it, rather than running in parallel with it. Responses are kept
+ * whatever their status, but for server errors, after which a retry runs the request again.</p>
+ *
+ * <p>The key identifies one request: a retry with the same key but another body is answered with 422 Unprocessable
+ * Entity. One still waiting for the first request after <code>api.idempotency.wait</code> milliseconds (system
+ * property, default 10000) is answered with 409 Conflict, for the client to retry later.</p>
+ *
+ * <p>It is mapped in web.xml, on the POST /bookings, /guestbookings and /customers resources, behind the
+ * {@link ApiOriginFilter} so that the responses are kept before they are compressed.</p>
+ *
+ * @see InMemoryIdempotencyStore
+ */
+public class IdempotencyFilter implements Filter {
+
+    public static final String KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    /**
+     * The headers of the responses kept, besides their status, content type and body. The content type is read on its
+     * own, since JBoss Web does not return a content type set with setContentType() from getHeader().
+     */
+    private static final String[] KEPT_HEADERS = { "Location", "ETag" };
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final long wait = Long.getLong("api.idempotency.wait", 10000);
+
+    @Inject
+    private IdempotencyStore store;
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
+        HttpServletResponse res = (HttpServletResponse) response;
+        String key = req.getHeader(KEY_HEADER);
+
+        if (key == null || !"POST".equals(req.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            error(res, HttpServletResponse.SC_BAD_REQUEST, "The " + KEY_HEADER + " must have 1 to " + MAX_KEY_LENGTH
+                    + " characters");
+            return;
+        }
+
+        byte[] body = ByteStreams.toByteArray(req.getInputStream());
+        String fingerprint = Hashing.sha256().hashBytes(body).toString();
+        String scopedKey = req.getRequestURI() + " " + key;
+
+        IdempotentRequest claimed = new IdempotentRequest(fingerprint);
+        IdempotentRequest previous;
+        while ((previous = store.claim(scopedKey, claimed)) != null) {
+            if (!previous.getFingerprint().equals(fingerprint)) {
+                error(res, 422, "The " + KEY_HEADER + " has already been used for another request");
+                return;
+            }
+            try {
+                if (!previous.await(wait)) {
+                    error(res, HttpServletResponse.SC_CONFLICT, "A request with this " + KEY_HEADER
+                            + " is still in progress, try again");
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServletException("Interrupted whilst waiting for a request with the same " + KEY_HEADER, e);
+            }
+            if (previous.hasResponse()) {
+                replay(res, previous);
+                return;
+            }
+            // The previous request failed and released its key, this one runs in its place.
+        }
+
+        RecordingResponseWrapper recorder = new RecordingResponseWrapper(res);
+        boolean kept = false;
+        try {
+            chain.doFilter(new BufferedRequest(req, body), recorder);
+
+            if (recorder.getStatus() < HttpServletResponse.SC_INTERNAL_SERVER_ERROR) {
+                Map<String, String> headers = new LinkedHashMap<>();
+                if (recorder.getContentType() != null) {
+                    headers.put("Content-Type", recorder.getContentType());
+                }
+                for (String name : KEPT_HEADERS) {
+                    String value = recorder.getHeader(name);
+                    if (value != null) {
+                        headers.put(name, value);
+                    }
+                }
+                claimed.complete(recorder.getStatus(), headers, recorder.getBody());
+                store.complete(scopedKey, claimed);
+                kept = true;
+            }
+        } finally {
+            if (!kept) {
+                store.release(scopedKey, claimed);
+                claimed.abandon();
+            }
+        }
+    }
+
+    private static void replay(HttpServletResponse res, IdempotentRequest request) throws IOException {
+        res.setStatus(request.getStatus());
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            res.setHeader(header.getKey(), header.getValue());
+        }
+        res.setHeader(REPLAYED_HEADER, "true");
+        res.setContentLength(request.getBody().length);
+        res.getOutputStream().write(request.getBody());
+    }
+
+    private static void error(HttpServletResponse res, int status, String message) throws IOException {
+        res.setStatus(status);
+        res.setContentType(MediaType.APPLICATION_JSON);
+        mapper.writeValue(res.getOutputStream(), new ErrorMessage(message));
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    /**
+     * <p>The request with its body read ahead, for the fingerprint, and read again by the resource.</p>
+     */
+    private static final class BufferedRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        BufferedRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            final ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+/**
+ * <p>Keeps the write requests made with an <code>Idempotency-Key</code>, for the {@link IdempotencyFilter} to replay
+ * their responses to retries.</p>
+ *
+ * <p>The application uses the {@link InMemoryIdempotencyStore}. A store shared by several nodes, such as one kept in a
+ * database table, can be used instead by enabling it as a CDI alternative in beans.xml. Such a store only has to keep
+ * completed requests: the retries of a request still running on another node are not made to wait for it, unless
+ * the store does so itself.</p>
+ */
+public interface IdempotencyStore {
+
+    /**
+     * <p>Claims a key for a request, unless it has already been claimed.</p>
+     *
+     * @param key The idempotency key, scoped to the resource it was sent to
+     * @param request The request claiming the key
+     * @return null if the key has been claimed for the given request, which must then be either completed or
+     * released; otherwise the request the key was claimed for before, which may still be running
+     */
+    IdempotentRequest claim(String key, IdempotentRequest request);
+
+    /**
+     * <p>Keeps a claimed request once it has completed with a response, so that it is replayed to retries.</p>
+     *
+     * @param key The idempotency key
+     * @param request The completed request
+     */
+    void complete(String key, IdempotentRequest request);
+
+    /**
+     * <p>Releases a claimed key, without a response, so that a retry runs the request again.</p>
+     *
+     * @param key The idempotency key
+     * @param request The request which claimed it
+     */
+    void release(String key, IdempotentRequest request);
+}
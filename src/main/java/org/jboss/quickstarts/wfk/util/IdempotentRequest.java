@@ -0,0 +1,113 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A write request made with an <code>Idempotency-Key</code>, as kept by an {@link IdempotencyStore}: the fingerprint
+ * of its body and, once it has completed, its response.</p>
+ *
+ * <p>Until then, the retries made with the same key wait for it in {@link #await(long)}. It completes either with a
+ * response, which is then replayed to every retry, or without one when it fails with a server error, in which case
+ * its key is released for a retry to run the request again.</p>
+ *
+ * @see IdempotencyFilter
+ */
+public class IdempotentRequest {
+
+    private final String fingerprint;
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private volatile int status;
+    private volatile Map<String, String> headers = Collections.emptyMap();
+    private volatile byte[] body;
+
+    /**
+     * @param fingerprint The digest of the request body, see {@link IdempotencyFilter}
+     */
+    public IdempotentRequest(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * <p>Builds a completed request, as read back by a store keeping them outside of the JVM.</p>
+     */
+    public IdempotentRequest(String fingerprint, int status, Map<String, String> headers, byte[] body) {
+        this(fingerprint);
+        complete(status, headers, body);
+    }
+
+    /**
+     * <p>Records the response of the request, and wakes up the retries waiting for it.</p>
+     *
+     * @param status The status code of the response
+     * @param headers The headers to replay, by name
+     * @param body The body of the response
+     */
+    public void complete(int status, Map<String, String> headers, byte[] body) {
+        this.status = status;
+        this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+        this.body = body;
+        done.countDown();
+    }
+
+    /**
+     * <p>Wakes up the retries waiting for the request, without a response for them to replay.</p>
+     */
+    public void abandon() {
+        done.countDown();
+    }
+
+    /**
+     * <p>Waits for the request to complete.</p>
+     *
+     * @param millis How long to wait for, in milliseconds
+     * @return true if it has completed, with a response or not, false if it is still running
+     * @throws InterruptedException If the thread waiting is interrupted
+     */
+    public boolean await(long millis) throws InterruptedException {
+        return done.await(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return Whether the request has completed with a response to replay
+     */
+    public boolean hasResponse() {
+        return body != null;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+}
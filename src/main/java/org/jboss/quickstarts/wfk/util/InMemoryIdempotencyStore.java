@@ -0,0 +1,81 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>{@link IdempotencyStore} keeping the requests in memory, local to the JVM.</p>
+ *
+ * <p>Requests still running are held apart from the completed ones until they complete or are released, so that they
+ * are never evicted: a retry arriving meanwhile always waits for them rather than running the write a second time.
+ * Both the number of completed requests kept and how long they are kept for are bounded, through system
+ * properties:</p>
+ *
+ * <ul>
+ *     <li><code>api.idempotency.maxKeys</code> - how many completed keys are kept, the least recently used being evicted first
+ *     (default 10000)</li>
+ *     <li><code>api.idempotency.ttl</code> - how long a key is kept after its request has completed, in seconds
+ *     (default 86400)</li>
+ * </ul>
+ *
+ * <p>Responses to writes are small, so that the default bound is a few megabytes at most.</p>
+ */
+@ApplicationScoped
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final ConcurrentMap<String, IdempotentRequest> running = new ConcurrentHashMap<>();
+
+    private final Cache<String, IdempotentRequest> completed = CacheBuilder.newBuilder()
+            .maximumSize(Integer.getInteger("api.idempotency.maxKeys", 10000))
+            .expireAfterWrite(Integer.getInteger("api.idempotency.ttl", 86400), TimeUnit.SECONDS)
+            .build();
+
+    @Override
+    public IdempotentRequest claim(String key, IdempotentRequest request) {
+        IdempotentRequest previous = completed.getIfPresent(key);
+        if (previous == null) {
+            previous = running.putIfAbsent(key, request);
+        }
+        if (previous == null) {
+            // A request completing since the first lookup has moved from running to completed in the meantime.
+            previous = completed.getIfPresent(key);
+            if (previous != null) {
+                running.remove(key, request);
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    public void complete(String key, IdempotentRequest request) {
+        // Completed before it stops running, so that a claim in between finds it in either.
+        completed.put(key, request);
+        running.remove(key, request);
+    }
+
+    @Override
+    public void release(String key, IdempotentRequest request) {
+        running.remove(key, request);
+    }
+}
@@ -41,11 +41,20 @@ public class JacksonConfig implements ContextResolver<ObjectMapper> {
 
     private ObjectMapper objectMapper;
 
-    // Configure the Date coming from the client to be in ISO-8601 instead of milliseconds from the epoch.
     public JacksonConfig(){
 
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.setDateFormat(new SimpleDateFormat("yyyy-MM-dd"));
+        this.objectMapper = newObjectMapper();
+    }
+
+    /**
+     * <p>Creates an ObjectMapper configured the same way as the one used by the REST endpoints, for code that writes
+     * JSON itself.</p>
+     */
+    public static ObjectMapper newObjectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        // Configure the Date coming from the client to be in ISO-8601 instead of milliseconds from the epoch.
+        objectMapper.setDateFormat(new SimpleDateFormat("yyyy-MM-dd"));
+        return objectMapper;
     }
 
     @Override
@@ -0,0 +1,88 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+/**
+ * <p>Routes the log records of the application through an {@link AsyncLogHandler}, from the time it is deployed until
+ * it is undeployed.</p>
+ *
+ * <p>The handler is set on the parent logger of every application logger, in place of its parent handlers, and writes
+ * to the handlers of the root logger, the console and log file of the server. It is configured through system
+ * properties:</p>
+ *
+ * <ul>
+ *     <li><code>api.log.async</code> - set to false to log on the threads logging instead (default true)</li>
+ *     <li><code>api.log.bufferSize</code> - how many records may wait to be written (default 8192)</li>
+ * </ul>
+ *
+ * @see LogThrottle
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class LogPipeline {
+
+    /** The parent logger of every logger produced by {@link Resources}. */
+    private static final String APPLICATION_LOGGER = "org.jboss.quickstarts.wfk";
+
+    private final boolean async = Boolean.parseBoolean(System.getProperty("api.log.async", "true"));
+    private final int bufferSize = Integer.getInteger("api.log.bufferSize", 8192);
+
+    // Held, since the logging framework only keeps weak references to the loggers it has not configured itself.
+    private Logger logger;
+
+    private AsyncLogHandler handler;
+
+    @PostConstruct
+    void init() {
+        if (!async) {
+            return;
+        }
+
+        Handler[] targets = Logger.getLogger("").getHandlers();
+        handler = new AsyncLogHandler(targets, bufferSize);
+
+        logger = Logger.getLogger(APPLICATION_LOGGER);
+        logger.addHandler(handler);
+        logger.setUseParentHandlers(false);
+    }
+
+    @PreDestroy
+    void destroy() {
+        if (handler != null) {
+            logger.setUseParentHandlers(true);
+            logger.removeHandler(handler);
+            handler.close();
+        }
+    }
+
+    /**
+     * @return The number of log records dropped because the log buffer was full
+     */
+    public long getDropped() {
+        return handler == null ? 0 : handler.getDropped();
+    }
+}
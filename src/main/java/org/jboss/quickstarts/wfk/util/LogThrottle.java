@@ -0,0 +1,152 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * <p>One logging call site, which builds its message only when it is going to be logged, and logs no more than a set
+ * number of messages per second.</p>
+ *
+ * <p>A call site is a static field of the class logging, named after what it logs:</p>
+ *
+ * <pre>
+ * private static final LogThrottle CREATING = new LogThrottle(ContactService.class, "create", Level.INFO, 10);
+ * ...
+ * CREATING.log(log, "Creating {0} {1}", contact.getFirstName(), contact.getLastName());
+ * </pre>
+ *
+ * <p>When the level is not logged the call returns straight away, allocating nothing. Otherwise the message is handed
+ * over as a pattern and its parameters, and only formatted by the handler, which for the application loggers is the
+ * {@link AsyncLogHandler}, on its own thread.</p>
+ *
+ * <p>Past the limit, messages are suppressed until the next second, but counted: the next message logged tells how many
+ * were suppressed before it, and the totals of every call site are published at /api/metrics.</p>
+ */
+public final class LogThrottle {
+
+    private static final List<LogThrottle> CALL_SITES = new CopyOnWriteArrayList<>();
+
+    private final String sourceClass;
+    private final String sourceMethod;
+    private final Level level;
+    private final int perSecond;
+
+    private final AtomicLong second = new AtomicLong();
+    private final AtomicInteger logged = new AtomicInteger();
+    private final AtomicLong suppressed = new AtomicLong();
+    private final AtomicLong totalSuppressed = new AtomicLong();
+
+    /**
+     * @param source The class logging
+     * @param sourceMethod The method logging
+     * @param level The level of the messages
+     * @param perSecond How many messages may be logged per second
+     */
+    public LogThrottle(Class<?> source, String sourceMethod, Level level, int perSecond) {
+        this.sourceClass = source.getName();
+        this.sourceMethod = sourceMethod;
+        this.level = level;
+        this.perSecond = perSecond;
+        CALL_SITES.add(this);
+    }
+
+    public void log(Logger log, String message) {
+        if (log.isLoggable(level) && acquire()) {
+            publish(log, message, null, null);
+        }
+    }
+
+    public void log(Logger log, String pattern, Object param) {
+        if (log.isLoggable(level) && acquire()) {
+            publish(log, pattern, new Object[] { param }, null);
+        }
+    }
+
+    public void log(Logger log, String pattern, Object param1, Object param2) {
+        if (log.isLoggable(level) && acquire()) {
+            publish(log, pattern, new Object[] { param1, param2 }, null);
+        }
+    }
+
+    public void log(Logger log, String pattern, Object param1, Object param2, Throwable thrown) {
+        if (log.isLoggable(level) && acquire()) {
+            publish(log, pattern, new Object[] { param1, param2 }, thrown);
+        }
+    }
+
+    /**
+     * @return The number of messages suppressed by this call site since the application started
+     */
+    public long getSuppressed() {
+        return totalSuppressed.get();
+    }
+
+    public String getSourceClass() {
+        return sourceClass;
+    }
+
+    public String getSourceMethod() {
+        return sourceMethod;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * @return Every call site created
+     */
+    public static List<LogThrottle> getCallSites() {
+        return CALL_SITES;
+    }
+
+    private boolean acquire() {
+        long now = System.currentTimeMillis() / 1000;
+        long current = second.get();
+        if (now != current && second.compareAndSet(current, now)) {
+            logged.set(0);
+        }
+
+        if (logged.incrementAndGet() > perSecond) {
+            suppressed.incrementAndGet();
+            totalSuppressed.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private void publish(Logger log, String pattern, Object[] params, Throwable thrown) {
+        long skipped = suppressed.getAndSet(0);
+
+        LogRecord record = new LogRecord(level, skipped == 0 ? pattern
+                : pattern + " (" + skipped + " similar messages suppressed)");
+        record.setParameters(params);
+        record.setThrown(thrown);
+        record.setLoggerName(log.getName());
+        // Given, so that the handler does not have to find the caller by walking the stack.
+        record.setSourceClassName(sourceClass);
+        record.setSourceMethodName(sourceMethod);
+        log.log(record);
+    }
+}
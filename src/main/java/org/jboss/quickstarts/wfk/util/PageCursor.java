@@ -0,0 +1,117 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * <p>Opaque cursor used by the keyset paginated list endpoints.</p>
+ *
+ * <p>A cursor holds the sort key of the last row of a page. The next page is fetched by seeking past that key on the
+ * ordered columns, so the cost of a page does not depend on how deep into the table it is. To clients the cursor is an
+ * URL safe token, returned in the {@value #NEXT_CURSOR_HEADER} response header and passed back as the
+ * <code>after</code> query parameter.</p>
+ *
+ * @see RestServiceException
+ */
+public final class PageCursor {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private static final String SEPARATOR = "\u001f";
+    private static final BaseEncoding ENCODING = BaseEncoding.base64Url().omitPadding();
+
+    private final String[] keys;
+
+    private PageCursor(String[] keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * <p>Builds the cursor pointing past a row with the given sort key.</p>
+     *
+     * @param keys The values of the ordered columns of the last row of a page
+     * @return The cursor as an opaque token
+     */
+    public static String encode(Object... keys) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                builder.append(SEPARATOR);
+            }
+            builder.append(keys[i]);
+        }
+        return ENCODING.encode(builder.toString().getBytes(Charsets.UTF_8));
+    }
+
+    /**
+     * <p>Parses a token produced by {@link #encode(Object...)}.</p>
+     *
+     * @param cursor The token supplied by the client
+     * @param keyCount The number of sort key values the endpoint expects
+     * @return The parsed cursor
+     * @throws RestServiceException With status 400 if the token is malformed
+     */
+    public static PageCursor decode(String cursor, int keyCount) throws RestServiceException {
+        String[] keys;
+        try {
+            keys = new String(ENCODING.decode(cursor), Charsets.UTF_8).split(SEPARATOR, -1);
+        } catch (IllegalArgumentException e) {
+            throw new RestServiceException("Invalid cursor: " + cursor, Response.Status.BAD_REQUEST, e);
+        }
+
+        if (keys.length != keyCount) {
+            throw new RestServiceException("Invalid cursor: " + cursor, Response.Status.BAD_REQUEST);
+        }
+        return new PageCursor(keys);
+    }
+
+    /**
+     * <p>Applies the default and the upper bound to a page size requested by a client.</p>
+     *
+     * @param limit The requested page size, or null
+     * @return The page size to use
+     * @throws RestServiceException With status 400 if the requested page size is not positive
+     */
+    public static int limit(Integer limit) throws RestServiceException {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit < 1) {
+            throw new RestServiceException("The page limit must be a positive number", Response.Status.BAD_REQUEST);
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    public String getString(int index) {
+        return keys[index];
+    }
+
+    public Long getLong(int index) throws RestServiceException {
+        try {
+            return Long.valueOf(keys[index]);
+        } catch (NumberFormatException e) {
+            throw new RestServiceException("Invalid cursor", Response.Status.BAD_REQUEST, e);
+        }
+    }
+}
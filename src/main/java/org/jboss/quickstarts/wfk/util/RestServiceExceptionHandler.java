@@ -25,17 +25,27 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.ExceptionMapper;
 import javax.ws.rs.ext.Provider;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * <p>Handler object to convert {@link RestServiceException} exception into an actual {@link Response} containing JSON
  * so we can get a nice friendly error message, easily parsable by our API clients.</p>
  *
+ * <p>Client errors, such as 404 and 409, are routine and only logged at FINE. Server errors are logged as SEVERE, with
+ * their cause, but no more than 10 per second so that a storm of them is not slowed down further by its logging; the
+ * rest are counted, see {@link LogThrottle}.</p>
+ *
  * @author hugofirth
  */
 @Provider
 public class RestServiceExceptionHandler implements ExceptionMapper<RestServiceException> {
 
+    private static final LogThrottle CLIENT_ERRORS = new LogThrottle(RestServiceExceptionHandler.class, "toResponse",
+            Level.FINE, 100);
+    private static final LogThrottle SERVER_ERRORS = new LogThrottle(RestServiceExceptionHandler.class, "toResponse",
+            Level.SEVERE, 10);
+
     @Inject
     private @Named("logger") Logger log;
 
@@ -45,16 +55,21 @@ public class RestServiceExceptionHandler implements ExceptionMapper<RestServiceE
     @Override
     public Response toResponse(final RestServiceException e) {
 
-        log.severe("Mapping RestServiceException with status + \"" + e.getStatus() + "\", message: \"" + e.getMessage()
-                + "\" and stack trace:" + System.getProperty("line.separator") + e.toString());
+        if (e.getStatus().getStatusCode() < 500) {
+            CLIENT_ERRORS.log(log, "Mapping RestServiceException with status \"{0}\", message: \"{1}\"", e.getStatus(),
+                    e.getMessage());
+        } else {
+            SERVER_ERRORS.log(log, "Mapping RestServiceException with status \"{0}\", message: \"{1}\"", e.getStatus(),
+                    e.getMessage(), e);
+        }
 
-        Response.ResponseBuilder builder = Response.status(e.getStatus()).entity(new ErrorMessage(e.getMessage(), e.getReasons()));
+        Response.ResponseBuilder builder = errorResponse(e);
 
         List<MediaType> accepts = headers.getAcceptableMediaTypes();
         if (accepts!=null && accepts.size() > 0) {
             //just pick the first one
             MediaType m = accepts.get(0);
-            log.info("Setting response type to " + m);
+            log.log(Level.FINE, "Setting response type to {0}", m);
             builder = builder.type(m);
         }
         else {
@@ -64,4 +79,12 @@ public class RestServiceExceptionHandler implements ExceptionMapper<RestServiceE
         }
         return builder.build();
     }
+
+    /**
+     * <p>Builds the response of a {@link RestServiceException}, without its type. Also used for the requests answered
+     * by {@link AsyncResponder}, which are not mapped by this handler.</p>
+     */
+    static Response.ResponseBuilder errorResponse(RestServiceException e) {
+        return Response.status(e.getStatus()).entity(new ErrorMessage(e.getMessage(), e.getReasons()));
+    }
 }
@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializationConfig;
+import org.hibernate.CacheMode;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import javax.persistence.EntityManager;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>Writes the result of a named query to the response as a JSON array, one row at a time.</p>
+ *
+ * <p>The rows are read through a forward-only Hibernate cursor and serialised straight onto the response stream, so no
+ * List of results is ever built. The persistence context is cleared every {@link #CLEAR_INTERVAL} rows, at which point
+ * the JSON written so far is also flushed to the client. Heap use therefore stays flat however large the table is,
+ * and the first rows reach the client before the last ones have been read.</p>
+ *
+ * <p>JAX-RS calls {@link #write(OutputStream)} after the resource method has returned, that is after its transaction
+ * and persistence context have ended. The query therefore runs in a read-only Session of its own, opened from the
+ * SessionFactory behind the given EntityManager. As the response has been committed by the time the rows are read,
+ * an error part way through can only abort the stream.</p>
+ */
+public class ScrollingJsonOutput implements StreamingOutput {
+
+    /** Number of rows written between two clears of the persistence context. */
+    public static final int CLEAR_INTERVAL = 500;
+
+    // The generator is flushed every CLEAR_INTERVAL rows rather than after every row.
+    private static final ObjectMapper MAPPER = JacksonConfig.newObjectMapper()
+            .configure(SerializationConfig.Feature.FLUSH_AFTER_WRITE_VALUE, false);
+
+    private final SessionFactory sessionFactory;
+    private final String queryName;
+    private final Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+
+    /**
+     * @param em An EntityManager of the persistence unit to read from, used to look up its SessionFactory
+     * @param queryName The name of the query selecting the rows, which should join fetch any association it serialises
+     */
+    public ScrollingJsonOutput(EntityManager em, String queryName) {
+        this.sessionFactory = em.unwrap(Session.class).getSessionFactory();
+        this.queryName = queryName;
+    }
+
+    /**
+     * <p>Binds a named parameter of the query.</p>
+     *
+     * @return this, for chaining
+     */
+    public ScrollingJsonOutput setParameter(String name, Object value) {
+        parameters.put(name, value);
+        return this;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        Session session = sessionFactory.openSession();
+        session.setDefaultReadOnly(true);
+        ScrollableResults rows = null;
+
+        try {
+            Query query = session.getNamedQuery(queryName)
+                    .setReadOnly(true)
+                    .setCacheMode(CacheMode.IGNORE)
+                    .setFetchSize(CLEAR_INTERVAL);
+            for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+                query.setParameter(parameter.getKey(), parameter.getValue());
+            }
+            rows = query.scroll(ScrollMode.FORWARD_ONLY);
+
+            JsonGenerator json = MAPPER.getJsonFactory().createJsonGenerator(output, JsonEncoding.UTF8);
+            json.writeStartArray();
+
+            int count = 0;
+            while (rows.next()) {
+                MAPPER.writeValue(json, rows.get(0));
+
+                if (++count % CLEAR_INTERVAL == 0) {
+                    session.clear();
+                    json.flush();
+                }
+            }
+
+            json.writeEndArray();
+            json.flush();
+        } finally {
+            if (rows != null) {
+                rows.close();
+            }
+            session.close();
+        }
+    }
+}
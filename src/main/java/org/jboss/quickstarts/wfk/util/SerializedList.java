@@ -0,0 +1,64 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * <p>Unmodifiable list which is serialized to JSON once, however many responses it is the entity of.</p>
+ *
+ * <p>It is meant for results shared by the reads a {@link SingleFlight} coalesces: the first response to be written
+ * serializes the list, and the others write the same bytes, through the {@link SerializedListWriter}.</p>
+ *
+ * @param <E> The type of the elements
+ */
+public final class SerializedList<E> extends AbstractList<E> {
+
+    private static final ObjectMapper mapper = JacksonConfig.newObjectMapper();
+
+    private final List<E> elements;
+    private byte[] json;
+
+    public SerializedList(List<E> elements) {
+        this.elements = elements;
+    }
+
+    @Override
+    public E get(int index) {
+        return elements.get(index);
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    /**
+     * @return The list as JSON, serialized the first time it is asked for
+     * @throws IOException If the elements cannot be serialized
+     */
+    public synchronized byte[] toJson() throws IOException {
+        if (json == null) {
+            json = mapper.writeValueAsBytes(elements);
+        }
+        return json;
+    }
+}
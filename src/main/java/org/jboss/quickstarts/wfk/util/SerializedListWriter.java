@@ -0,0 +1,61 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * <p>Writes a {@link SerializedList} as the JSON it has been serialized to, serializing it first if it has not been
+ * yet.</p>
+ *
+ * <p>Being an application provider, RESTEasy picks it over its built-in Jackson provider for those lists.</p>
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class SerializedListWriter implements MessageBodyWriter<SerializedList<?>> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return SerializedList.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public long getSize(SerializedList<?> list, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType) {
+        try {
+            return list.toJson().length;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void writeTo(SerializedList<?> list, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException, WebApplicationException {
+        entityStream.write(list.toJson());
+    }
+}
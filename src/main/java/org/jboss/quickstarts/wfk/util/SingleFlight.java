@@ -0,0 +1,128 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Coalesces identical concurrent reads, so that they share a single execution.</p>
+ *
+ * <p>The first caller for a key runs the work, on its own thread. Callers for the same key arriving while it runs do
+ * not run it again, but wait for it and share its result, or its exception. Once it has completed, the next caller
+ * for the key runs the work anew: nothing is cached beyond the reads in flight, so a caller never gets a result older
+ * than one which was being read when it arrived.</p>
+ *
+ * <p>The result is shared between threads as it is, so it must not be modified once returned. Every instance counts
+ * its calls and executions, published at /api/metrics along with their ratio, until it is {@link #unregister()
+ * unregistered}.</p>
+ *
+ * @param <K> The type of the keys identifying a read, such as its parameters
+ * @param <V> The type of the results
+ */
+public final class SingleFlight<K, V> {
+
+    private static final List<SingleFlight<?, ?>> INSTANCES = new CopyOnWriteArrayList<>();
+
+    private final String name;
+    private final ConcurrentMap<K, FutureTask<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong executions = new AtomicLong();
+
+    /**
+     * @param name The name of the read, which its metrics are labelled with
+     */
+    public SingleFlight(String name) {
+        this.name = name;
+        INSTANCES.add(this);
+    }
+
+    /**
+     * <p>Runs a read, unless an identical one is already running, in which case its result is shared.</p>
+     *
+     * @param key What identifies the read
+     * @param work The read
+     * @return The result of the read
+     * @throws Exception The exception the read has thrown
+     */
+    public V execute(K key, Callable<V> work) throws Exception {
+        calls.incrementAndGet();
+
+        FutureTask<V> task = new FutureTask<>(work);
+        FutureTask<V> running = inFlight.putIfAbsent(key, task);
+        if (running == null) {
+            executions.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(key, task);
+            }
+            running = task;
+        }
+
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted whilst waiting for a coalesced read of " + name, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw (Exception) e.getCause();
+        }
+    }
+
+    /**
+     * <p>Stops publishing the metrics of this instance, for one which is not used any more.</p>
+     */
+    public void unregister() {
+        INSTANCES.remove(this);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The number of reads asked for
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * @return The number of reads run, the others having shared their result
+     */
+    public long getExecutions() {
+        return executions.get();
+    }
+
+    /**
+     * @return Every instance created
+     */
+    public static List<SingleFlight<?, ?>> getInstances() {
+        return INSTANCES;
+    }
+}
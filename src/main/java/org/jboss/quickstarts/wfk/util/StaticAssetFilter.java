@@ -0,0 +1,208 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>Serves the static assets of the travelagent UI precompressed, and lets browsers cache them.</p>
+ *
+ * <p>When the application starts, every textual asset under <code>/travelagent</code> is gzip compressed once, at the
+ * best compression level, and kept in memory. A request whose <code>Accept-Encoding</code> allows gzip is answered with
+ * the compressed bytes, without compressing anything per request. Other requests, and the assets which are not worth
+ * compressing (such as images), are served by the container as usual.</p>
+ *
+ * <p>Every asset is sent with a <code>Cache-Control</code> max-age, and the precompressed ones with an ETag, so that
+ * browsers revalidate them with a 304 rather than download them again. The max-age is set in seconds by the
+ * <code>travelagent.cache.maxAge</code> system property (default 300).</p>
+ *
+ * @see ApiOriginFilter
+ */
+@WebFilter("/travelagent/*")
+public class StaticAssetFilter implements Filter {
+
+    private static final String ROOT = "/travelagent/";
+    private static final String WELCOME_FILE = "index.html";
+
+    /** Extensions of the assets compressed, other types are either small or already compressed. */
+    private static final String[] COMPRESSIBLE = {".html", ".js", ".css", ".json", ".svg", ".ttf", ".eot", ".txt"};
+
+    @Inject
+    private @Named("logger") Logger log;
+
+    private final int maxAge = Integer.getInteger("travelagent.cache.maxAge", 300);
+
+    /** The precompressed assets, by path. Built once in init() and only read afterwards. */
+    private final Map<String, Asset> assets = new HashMap<>();
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        ServletContext context = filterConfig.getServletContext();
+        long original = 0;
+        long compressed = 0;
+
+        try {
+            for (String path : listAssets(context, ROOT)) {
+                byte[] content;
+                try (InputStream in = context.getResourceAsStream(path)) {
+                    content = ByteStreams.toByteArray(in);
+                }
+                byte[] gzipped = gzip(content);
+
+                if (gzipped.length < content.length) {
+                    String tag = "\"" + Hashing.murmur3_128().hashBytes(content) + "-gzip\"";
+                    assets.put(path, new Asset(gzipped, context.getMimeType(path), tag));
+                    original += content.length;
+                    compressed += gzipped.length;
+                }
+            }
+        } catch (IOException e) {
+            throw new ServletException("Unable to precompress the assets under " + ROOT, e);
+        }
+
+        log.info("StaticAssetFilter.init() - Precompressed " + assets.size() + " assets from " + original + " to "
+                + compressed + " bytes");
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
+        HttpServletResponse res = (HttpServletResponse) response;
+
+        res.setHeader("Cache-Control", "public, max-age=" + maxAge);
+
+        String path = req.getRequestURI().substring(req.getContextPath().length());
+        if (path.endsWith("/")) {
+            path += WELCOME_FILE;
+        }
+        Asset asset = assets.get(path);
+        if (asset == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        res.setHeader("Vary", "Accept-Encoding");
+        boolean read = "GET".equals(req.getMethod()) || "HEAD".equals(req.getMethod());
+        if (!read || !"gzip".equals(CompressingResponseWrapper.negotiate(req.getHeader("Accept-Encoding")))) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        res.setHeader("ETag", asset.tag);
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.contains(asset.tag) || ifNoneMatch.trim().equals("*"))) {
+            res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        if (asset.contentType != null) {
+            res.setContentType(asset.contentType);
+        }
+        res.setHeader("Content-Encoding", "gzip");
+        res.setContentLength(asset.gzipped.length);
+        if ("GET".equals(req.getMethod())) {
+            res.getOutputStream().write(asset.gzipped);
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    /**
+     * <p>Lists the compressible assets under a directory of the web application, recursively.</p>
+     */
+    private static Set<String> listAssets(ServletContext context, String directory) {
+        Set<String> found = new TreeSet<>();
+        Set<String> paths = context.getResourcePaths(directory);
+        if (paths == null) {
+            return found;
+        }
+
+        for (String path : paths) {
+            if (path.endsWith("/")) {
+                found.addAll(listAssets(context, path));
+            } else if (isCompressible(path)) {
+                found.add(path);
+            }
+        }
+        return found;
+    }
+
+    private static boolean isCompressible(String path) {
+        String lowerCase = path.toLowerCase(Locale.ENGLISH);
+        for (String extension : COMPRESSIBLE) {
+            if (lowerCase.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 3);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(content);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * <p>An asset compressed ahead of time.</p>
+     */
+    private static final class Asset {
+        final byte[] gzipped;
+        final String contentType;
+        final String tag;
+
+        Asset(byte[] gzipped, String contentType, String tag) {
+            this.gzipped = gzipped;
+            this.contentType = contentType;
+            this.tag = tag;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import com.google.common.hash.Hashing;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ObjectNode;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <p>Serves the Swagger specification of the API, <code>swagger.json</code>.</p>
+ *
+ * <p>The specification is generated from the <code>@Api</code> and <code>@ApiOperation</code> annotations of the
+ * resources when the application is built, by the swagger-maven-plugin, and packaged as {@value #SPEC}. So no class is
+ * scanned for annotations when the application starts or the specification is first requested. Only its
+ * <code>basePath</code> is set here, from the path the API is deployed at, which is not known at build time.</p>
+ *
+ * <p>The specification does not change until the application is redeployed, so it is served with a strong ETag.</p>
+ */
+@Path("/swagger.json")
+@Produces(MediaType.APPLICATION_JSON)
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class SwaggerSpecRestService {
+
+    static final String SPEC = "/META-INF/swagger.json";
+
+    @Inject
+    private @Named("mapper") ObjectMapper mapper;
+
+    private volatile Spec spec;
+
+    @GET
+    public Response getSpec(@Context UriInfo uriInfo, @Context Request request) throws IOException {
+        Spec current = spec;
+        if (current == null) {
+            // Racing requests may both build it, to the same result.
+            current = spec = load(uriInfo.getBaseUri().getPath());
+        }
+
+        Response.ResponseBuilder notModified = EntityTags.evaluatePreconditions(request, current.tag);
+        if (notModified != null) {
+            return notModified.build();
+        }
+        return Response.ok(current.json).tag(current.tag).build();
+    }
+
+    private Spec load(String basePath) throws IOException {
+        ObjectNode root;
+        try (InputStream in = SwaggerSpecRestService.class.getResourceAsStream(SPEC)) {
+            if (in == null) {
+                throw new RestServiceException("The Swagger specification was not generated by the build");
+            }
+            root = (ObjectNode) mapper.readTree(in);
+        }
+
+        root.put("basePath", basePath.endsWith("/") ? basePath.substring(0, basePath.length() - 1) : basePath);
+        byte[] json = mapper.writeValueAsBytes(root);
+        return new Spec(json, new EntityTag(Hashing.murmur3_128().hashBytes(json).toString()));
+    }
+
+    private static final class Spec {
+        final byte[] json;
+        final EntityTag tag;
+
+        Spec(byte[] json, EntityTag tag) {
+            this.json = json;
+            this.tag = tag;
+        }
+    }
+}
@@ -16,15 +16,15 @@
 --
 
 -- You can use this file to load seed data into the database using SQL statements
--- Since the database doesn't know to increase the Sequence to match what is manually loaded here it starts at 1 and tries
---  to enter a record with the same PK and create an error.  If we use a high we don't interfere with the sequencing (at least until later).
+-- The ids are taken from the same sequences that Hibernate uses, so that they never clash with the ids it generates.
+-- Hibernate reserves ids 50 at a time, so each row loaded here uses up one block of 50 ids.
 -- NOTE: this file should be removed for production systems. 
 
-insert into customer (email, name, phone_number) values ('rovolisgiorgos@gmail.com', 'Georgios Rovolis', '07871545186')
-insert into customer (email, name, phone_number) values ('johnsmith@gmail.com', 'John Smith', '07871254586')
+insert into customer (id, email, name, phone_number, version) values (next value for customer_seq, 'rovolisgiorgos@gmail.com', 'Georgios Rovolis', '07871545186', 0)
+insert into customer (id, email, name, phone_number, version) values (next value for customer_seq, 'johnsmith@gmail.com', 'John Smith', '07871254586', 0)
 
-insert into flight (departure, destination, number) values ('NCL', 'ATH', 'GR852')
-insert into flight (departure, destination, number) values ('NCL', 'NYC', 'GR512')
-insert into flight (departure, destination, number) values ('NCL', 'SOT', 'GR111')
-insert into flight (departure, destination, number) values ('NCL', 'DNK', 'GR222')
-insert into flight (departure, destination, number) values ('NCL', 'COH', 'GR482')
+insert into flight (id, departure, destination, number, version) values (next value for flight_seq, 'NCL', 'ATH', 'GR852', 0)
+insert into flight (id, departure, destination, number, version) values (next value for flight_seq, 'NCL', 'NYC', 'GR512', 0)
+insert into flight (id, departure, destination, number, version) values (next value for flight_seq, 'NCL', 'SOT', 'GR111', 0)
+insert into flight (id, departure, destination, number, version) values (next value for flight_seq, 'NCL', 'DNK', 'GR222', 0)
+insert into flight (id, departure, destination, number, version) values (next value for flight_seq, 'NCL', 'COH', 'GR482', 0)
@@ -0,0 +1,228 @@
+package org.jboss.quickstarts.wfk.booking;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import javax.inject.Inject;
+import javax.ws.rs.core.Response;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.quickstarts.wfk.customer.Customer;
+import org.jboss.quickstarts.wfk.customer.CustomerRestService;
+import org.jboss.quickstarts.wfk.flight.Flight;
+import org.jboss.quickstarts.wfk.flight.FlightRestService;
+import org.jboss.quickstarts.wfk.util.AsyncResponder;
+import org.jboss.quickstarts.wfk.util.RestServiceException;
+import org.jboss.resteasy.spi.AsynchronousResponse;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+//stress test of the booking engine - many threads compete for a few flight dates at once
+@RunWith(Arquillian.class)
+public class BookingConcurrencyTest {
+	private static final int THREADS = 32;
+	private static final int ATTEMPTS_PER_THREAD = 20;
+	private static final String[] HOT_DATES = {"2030-01-01", "2030-01-02"};
+	
+    @Deployment
+    public static Archive<?> createTestArchive() { //contains all necessary external dependencies to run the tests
+        File[] libs = Maven.resolver().loadPomFromFile("pom.xml").resolve(
+                "org.codehaus.jackson:jackson-core-asl:1.9.9",
+                "org.codehaus.jackson:jackson-mapper-asl:1.9.9",
+                "org.codehaus.jackson:jackson-jaxrs:1.9.9",
+                "com.google.guava:guava:16.0"
+        ).withTransitivity().asFile();
+
+        Archive<?> archive = ShrinkWrap
+                .create(WebArchive.class, "test.war")
+                .addPackages(true, "org.jboss.quickstarts.wfk")
+                .addAsLibraries(libs)
+                .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
+                .addAsWebInfResource("arquillian-ds.xml")
+                .addAsWebInfResource(new File("src/main/webapp/WEB-INF/jboss-deployment-structure.xml"), "jboss-deployment-structure.xml")
+                .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml");
+
+        return archive;
+    }
+    
+    @Inject //calls booking rest service
+    BookingRestService bookingRestService;
+    
+    @Inject //calls flight rest service
+    FlightRestService flightRestService;
+    
+    @Inject //calls customer rest service
+    CustomerRestService customerRestService;
+    
+    @Inject //runs the asynchronous requests
+    AsyncResponder responder;
+    
+    @Test //every hot flight date is booked exactly once, every other attempt is told 409 rather than 500
+    public void concurrentBookingsOfHotFlightDates() throws Exception {
+    	final Customer customer = (Customer) customerRestService.createCustomer(
+    			new Customer(null, "Georgios Rovolis", "rovolisgiorgos40@gmail.com", "07871545186")).getEntity();
+    	final Flight[] flights = new Flight[] {
+    			(Flight) flightRestService.createFlight(new Flight(null, "HT001", "NCL", "ATH")).getEntity(),
+    			(Flight) flightRestService.createFlight(new Flight(null, "HT002", "NCL", "NYC")).getEntity()
+    	};
+    	final Date[] dates = parse(HOT_DATES);
+    	
+    	ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    	final CountDownLatch start = new CountDownLatch(1);
+    	List<Future<int[]>> outcomes = new ArrayList<>();
+    	
+    	for (int t = 0; t < THREADS; t++) {
+    		final int thread = t;
+    		outcomes.add(executor.submit(new Callable<int[]>() {
+				@Override
+				public int[] call() throws Exception {
+					int[] statuses = new int[600]; //counts by http status
+					start.await();
+					
+					for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+						int hot = (thread + i) % (flights.length * dates.length);
+						Booking booking = new Booking(customer, flights[hot % flights.length], dates[hot / flights.length]);
+						try {
+							statuses[bookingRestService.createBooking(booking).getStatus()]++;
+						} catch (RestServiceException e) {
+							statuses[e.getStatus().getStatusCode()]++;
+						}
+					}
+					return statuses;
+				}
+			}));
+    	}
+    	
+    	start.countDown();
+    	executor.shutdown();
+    	assertTrue("Bookings did not complete in time", executor.awaitTermination(2, TimeUnit.MINUTES));
+    	
+    	int[] statuses = new int[600];
+    	for (Future<int[]> outcome : outcomes) {
+    		int[] counts = outcome.get();
+    		for (int status = 0; status < counts.length; status++) {
+    			statuses[status] += counts[status];
+    		}
+    	}
+    	
+    	int hotFlightDates = flights.length * dates.length;
+    	assertEquals("Every flight date should be booked exactly once", hotFlightDates, statuses[201]);
+    	assertEquals("Every other attempt should be a conflict", THREADS * ATTEMPTS_PER_THREAD - hotFlightDates, statuses[409]);
+    	assertEquals("No attempt should fail with an internal error", 0, statuses[500]);
+    	
+    	for (Flight flight : flights) {
+    		for (Date date : dates) {
+    			assertNotNull("Booking not stored for " + flight + " on " + date, findBooking(flight, date));
+    		}
+    	}
+    }
+    
+    @Test //the asynchronous variant answers as the synchronous one would, 201 for the first booking of a flight date and 409 after
+    public void asyncBookings() throws Exception {
+    	Customer customer = (Customer) customerRestService.createCustomer(
+    			new Customer(null, "Async Booker", "async.booker@gmail.com", "07871545187")).getEntity();
+    	Flight flight = (Flight) flightRestService.createFlight(new Flight(null, "AS001", "NCL", "AMS")).getEntity();
+    	Date[] dates = parse(new String[] {"2031-01-01", "2031-01-02", "2031-01-03", "2031-01-04", "2031-01-05"});
+    	
+    	RecordingResponse responses = new RecordingResponse(dates.length + 1);
+    	for (Date date : dates) {
+    		bookingRestService.createBookingAsync(new Booking(customer, flight, date), responses);
+    	}
+    	bookingRestService.createBookingAsync(new Booking(customer, flight, dates[0]), responses); //a duplicate
+    	
+    	assertTrue("Bookings did not complete in time", responses.await(AsyncResponder.TIMEOUT));
+    	assertEquals("Every flight date should be booked once", dates.length, responses.count(201));
+    	assertEquals("The duplicate should be a conflict", 1, responses.count(409));
+    	
+    	for (Date date : dates) {
+    		assertNotNull("Booking not stored for " + flight + " on " + date, findBooking(flight, date));
+    	}
+    }
+    
+    @Test //slow requests, as with a slow area service, do not hold the thread submitting them
+    public void slowAsyncRequestsReleaseTheRequestThread() throws Exception {
+    	final int requests = 40;
+    	final long slowness = 200; //milliseconds per request
+    	RecordingResponse responses = new RecordingResponse(requests);
+    	
+    	long start = System.nanoTime();
+    	for (int i = 0; i < requests; i++) {
+    		responder.submit(responses, new Callable<Response>() {
+				@Override
+				public Response call() throws Exception {
+					Thread.sleep(slowness);
+					return Response.ok().build();
+				}
+			});
+    	}
+    	long submitted = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    	
+    	//held for the whole of every request, a single request thread would take requests * slowness milliseconds
+    	assertTrue("Submitting took " + submitted + "ms", submitted < slowness * 2);
+    	assertTrue("Requests did not complete in time", responses.await(AsyncResponder.TIMEOUT));
+    	assertEquals("Every request should succeed", requests, responses.count(200));
+    }
+    
+    private BookingView findBooking(Flight flight, Date date) {
+    	@SuppressWarnings("unchecked")
+		List<BookingView> bookings = (List<BookingView>) bookingRestService.getAllBookings(null, null, 1000, false).getEntity();
+    	for (BookingView booking : bookings) {
+    		if (booking.getFlight().getId().equals(flight.getId()) && booking.getBookingDate().getTime() == date.getTime()) {
+    			return booking;
+    		}
+    	}
+    	return null;
+    }
+    
+    private static Date[] parse(String[] dates) throws ParseException {
+    	SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+    	Date[] parsed = new Date[dates.length];
+    	for (int i = 0; i < dates.length; i++) {
+    		parsed[i] = sdf.parse(dates[i]);
+    	}
+    	return parsed;
+    }
+    
+    //collects the responses of asynchronous requests
+    private static class RecordingResponse implements AsynchronousResponse {
+    	private final AtomicIntegerArray statuses = new AtomicIntegerArray(600);
+    	private final CountDownLatch remaining;
+    	
+    	RecordingResponse(int expected) {
+    		remaining = new CountDownLatch(expected);
+    	}
+    	
+		@Override
+		public void setResponse(Response response) {
+			statuses.incrementAndGet(response.getStatus());
+			remaining.countDown();
+		}
+		
+		boolean await(long timeout) throws InterruptedException {
+			return remaining.await(timeout, TimeUnit.MILLISECONDS);
+		}
+		
+		int count(int status) {
+			return statuses.get(status);
+		}
+    }
+}
@@ -0,0 +1,175 @@
+package org.jboss.quickstarts.wfk.booking;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.quickstarts.wfk.customer.Customer;
+import org.jboss.quickstarts.wfk.customer.CustomerRestService;
+import org.jboss.quickstarts.wfk.customer.CustomerService;
+import org.jboss.quickstarts.wfk.flight.Flight;
+import org.jboss.quickstarts.wfk.flight.FlightRestService;
+import org.jboss.quickstarts.wfk.metrics.RepeatedStatementException;
+import org.jboss.quickstarts.wfk.metrics.RequestStatements;
+import org.jboss.quickstarts.wfk.metrics.SqlAccounting;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+//counts the sql statements of the booking endpoints - the lists must not grow with the number of bookings listed,
+//and no statement may be repeated within one request
+@RunWith(Arquillian.class)
+public class BookingQueryCountTest {
+	
+    @Deployment
+    public static Archive<?> createTestArchive() { //contains all necessary external dependencies to run the tests
+        File[] libs = Maven.resolver().loadPomFromFile("pom.xml").resolve(
+                "org.codehaus.jackson:jackson-core-asl:1.9.9",
+                "org.codehaus.jackson:jackson-mapper-asl:1.9.9",
+                "org.codehaus.jackson:jackson-jaxrs:1.9.9",
+                "com.google.guava:guava:16.0"
+        ).withTransitivity().asFile();
+
+        Archive<?> archive = ShrinkWrap
+                .create(WebArchive.class, "test.war")
+                .addPackages(true, "org.jboss.quickstarts.wfk")
+                .addAsLibraries(libs)
+                .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
+                .addAsWebInfResource("arquillian-ds.xml")
+                .addAsWebInfResource(new File("src/main/webapp/WEB-INF/jboss-deployment-structure.xml"), "jboss-deployment-structure.xml")
+                .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml");
+
+        return archive;
+    }
+    
+    @Inject //calls booking rest service
+    BookingRestService bookingRestService;
+    
+    @Inject //calls flight rest service
+    FlightRestService flightRestService;
+    
+    @Inject //calls customer rest service
+    CustomerRestService customerRestService;
+    
+    @Inject //looks customers up directly
+    CustomerService customerService;
+    
+    @Inject //gives access to the hibernate statistics
+    EntityManager em;
+    
+    private static int created = 0; //numbers the customers and flights made by this test, across its test methods
+    
+    @Test //the statements of GET /bookings and GET /bookings?customerId= do not depend on how many bookings are listed
+    public void listingRunsAConstantNumberOfStatements() throws Exception {
+    	Customer customer = createBookings(null, 2);
+    	long all = statementsOfListing(null);
+    	long byCustomer = statementsOfListing(customer.getId());
+    	
+    	createBookings(customer, 10); //more bookings, of more customers and flights, none of them cached
+    	assertEquals("GET /bookings should not run more statements for more bookings", all, statementsOfListing(null));
+    	assertEquals("GET /bookings?customerId= should not run more statements for more bookings",
+    			byCustomer, statementsOfListing(customer.getId()));
+    	
+    	assertTrue("GET /bookings should run in a single statement, ran " + all, all <= 1);
+    	assertTrue("GET /bookings?customerId= should run in two statements at most, ran " + byCustomer, byCustomer <= 2);
+    }
+    
+    @Test //the lists are read into views, no entity is loaded into the persistence context
+    public void listingLoadsNoEntities() throws Exception {
+    	createBookings(null, 3);
+    	SessionFactory sessionFactory = em.unwrap(Session.class).getSessionFactory();
+    	sessionFactory.getCache().evictEntityRegions();
+    	Statistics statistics = sessionFactory.getStatistics();
+    	statistics.clear();
+    	
+    	bookingRestService.getAllBookings(null, null, 1000, false);
+    	customerRestService.getAllCustomers(null, 1000, false);
+    	assertEquals("GET /bookings and GET /customers should not load entities", 0, statistics.getEntityLoadCount());
+    }
+    
+    @Test //a booking is made without running any statement twice, each of them accounted for against the request
+    public void creatingABookingRunsEveryStatementOnce() throws Exception {
+    	Flight flight = (Flight) flightRestService.createFlight(new Flight(null, "QC900", "NCL", "ATH")).getEntity();
+    	Customer customer = (Customer) customerRestService.createCustomer(
+    			new Customer(null, "Query Counter", "querycounter900@gmail.com", "07871545186")).getEntity();
+    	em.unwrap(Session.class).getSessionFactory().getCache().evictEntityRegions();
+    	
+    	RequestStatements statements = SqlAccounting.begin(1); //fails the booking if any statement is run twice
+    	try {
+    		bookingRestService.createBooking(new Booking(customer, flight, new SimpleDateFormat("yyyy-MM-dd").parse("2031-01-01")));
+    	} finally {
+    		SqlAccounting.end();
+    	}
+    	assertTrue("POST /bookings should run its statements, ran " + statements.getCount(), statements.getCount() > 0);
+    	assertEquals("POST /bookings should run every statement once " + statements.getShapes(), 1, statements.getMaxRepeats());
+    }
+    
+    @Test //the same statement run more times than allowed fails the request running it
+    public void repeatedStatementsAreRejected() throws Exception {
+    	Customer customer = createBookings(null, 1);
+    	SessionFactory sessionFactory = em.unwrap(Session.class).getSessionFactory();
+    	
+    	SqlAccounting.begin(2);
+    	try {
+    		for (int i = 0; i < 3; i++) { //an n+1 select, each lookup missing the cache
+    			sessionFactory.getCache().evictEntityRegions();
+    			customerService.findById(customer.getId());
+    		}
+    		fail("The third lookup of the same customer should have been rejected");
+    	} catch (Exception e) {
+    		Throwable cause = e;
+    		while (cause != null && !(cause instanceof RepeatedStatementException)) {
+    			cause = cause.getCause();
+    		}
+    		assertNotNull("Expected a RepeatedStatementException, got " + e, cause);
+    	} finally {
+    		SqlAccounting.end();
+    	}
+    }
+    
+    private long statementsOfListing(Long customerId) {
+    	SessionFactory sessionFactory = em.unwrap(Session.class).getSessionFactory();
+    	sessionFactory.getCache().evictEntityRegions(); //every customer and flight has to come from the database
+    	Statistics statistics = sessionFactory.getStatistics();
+    	statistics.clear();
+    	
+    	@SuppressWarnings("unchecked")
+		List<BookingView> bookings = (List<BookingView>) bookingRestService.getAllBookings(customerId, null, 1000, false).getEntity();
+    	for (BookingView booking : bookings) { //what the json serializer reads
+    		assertNotNull(booking.getCustomer().getName());
+    		assertNotNull(booking.getFlight().getNumber());
+    	}
+    	return statistics.getPrepareStatementCount();
+    }
+    
+    //creates one booking for each of the given number of new flights, half of them for the given customer
+    private Customer createBookings(Customer customer, int count) throws Exception {
+    	SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+    	for (int i = 0; i < count; i++) {
+    		created++;
+    		Flight flight = (Flight) flightRestService.createFlight(
+    				new Flight(null, String.format("QC%03d", created), "NCL", "ATH")).getEntity();
+    		Customer owner = (Customer) customerRestService.createCustomer(
+    				new Customer(null, "Query Counter", "querycounter" + created + "@gmail.com", "07871545186")).getEntity();
+    		if (customer == null) {
+    			customer = owner;
+    		}
+    		bookingRestService.createBooking(new Booking(i % 2 == 0 ? customer : owner, flight, format.parse("2031-01-01")));
+    	}
+    	return customer;
+    }
+}
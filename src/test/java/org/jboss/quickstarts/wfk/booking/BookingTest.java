@@ -3,6 +3,7 @@ package org.jboss.quickstarts.wfk.booking;
 import static org.junit.Assert.*;
 
 import java.io.File;
+import java.net.URL;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.List;
@@ -10,13 +11,19 @@ import java.util.List;
 import javax.inject.Inject;
 import javax.ws.rs.core.Response;
 
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.container.test.api.RunAsClient;
 import org.jboss.arquillian.junit.Arquillian;
 import org.jboss.arquillian.junit.InSequence;
+import org.jboss.arquillian.test.api.ArquillianResource;
 import org.jboss.quickstarts.wfk.customer.Customer;
 import org.jboss.quickstarts.wfk.customer.CustomerRestService;
 import org.jboss.quickstarts.wfk.flight.Flight;
 import org.jboss.quickstarts.wfk.flight.FlightRestService;
+import org.jboss.quickstarts.wfk.util.HttpTestClient;
+import org.jboss.quickstarts.wfk.util.HttpTestClient.Exchange;
 import org.jboss.quickstarts.wfk.util.RestServiceException;
 import org.jboss.shrinkwrap.api.Archive;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
@@ -35,7 +42,8 @@ public class BookingTest {
         File[] libs = Maven.resolver().loadPomFromFile("pom.xml").resolve(
                 "org.codehaus.jackson:jackson-core-asl:1.9.9",
                 "org.codehaus.jackson:jackson-mapper-asl:1.9.9",
-                "org.codehaus.jackson:jackson-jaxrs:1.9.9"
+                "org.codehaus.jackson:jackson-jaxrs:1.9.9",
+                "com.google.guava:guava:16.0"
         ).withTransitivity().asFile();
 
         Archive<?> archive = ShrinkWrap
@@ -44,6 +52,7 @@ public class BookingTest {
                 .addAsLibraries(libs)
                 .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
                 .addAsWebInfResource("arquillian-ds.xml")
+                .addAsWebInfResource(new File("src/main/webapp/WEB-INF/jboss-deployment-structure.xml"), "jboss-deployment-structure.xml")
                 .addClasses(Booking.class, Flight.class, Customer.class, BookingRestService.class, FlightRestService.class, CustomerRestService.class)
                 .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml");
 
@@ -173,17 +182,93 @@ public class BookingTest {
     	}
     	
     	//validate that all bookings for a specific customer were stored in the database
-		List<Booking> customer1Bookings;
-		customer1Bookings = (List<Booking>) bookingRestService.getAllBookings(customer1.getId()).getEntity();
+		List<BookingView> customer1Bookings;
+		customer1Bookings = (List<BookingView>) bookingRestService.getAllBookings(customer1.getId(), null, null, false).getEntity();
     	assertEquals("1st Customer is not assigned to all the bookings", customer1Bookings.size(), 2);
     	
     	
-		List<Booking> customer2Bookings;
-		customer2Bookings = (List<Booking>) bookingRestService.getAllBookings(customer2.getId()).getEntity();
+		List<BookingView> customer2Bookings;
+		customer2Bookings = (List<BookingView>) bookingRestService.getAllBookings(customer2.getId(), null, null, false).getEntity();
     	assertEquals("2nd Customer is not assigned to all the bookings", customer2Bookings.size(), 1);
     	
     }
+    
+    @Test
+    @InSequence(6) //test 6 - a batch answers each booking with the status of the single endpoint, and stores the valid ones
+    @RunAsClient
+    public void createBatchOfBookings(@ArquillianResource URL deployment) throws Exception {
+    	HttpTestClient client = new HttpTestClient(deployment);
+    	long customer = idOf(client.send("POST", "api/customers",
+    			"{\"name\":\"Batch Customer\",\"email\":\"batch.customer@gmail.com\",\"phoneNumber\":\"07881545190\"}"));
+    	long flight = idOf(client.send("POST", "api/flights", "{\"number\":\"BT101\",\"departure\":\"NCL\",\"destination\":\"ATH\"}"));
+    	
+    	Exchange batch = client.send("POST", "api/bookings/batch", "["
+    			+ booking(customer, flight, "2099-01-01") + "," //stored
+    			+ booking(customer, flight, "2099-01-02") + "," //stored
+    			+ booking(customer, flight, "2099-01-01") + "," //same flight and date as the first one
+    			+ booking(999999, flight, "2099-01-03") + "," //no such customer
+    			+ booking(customer, 999999, "2099-01-04") + "," //no such flight
+    			+ booking(customer, flight, "2000-01-05") + "," //in the past
+    			+ "{\"customer\":{\"id\":" + customer + "},\"bookingDate\":\"2099-01-06\"}" //no flight
+    			+ "]");
+    	assertEquals("Unexpected response status", 200, batch.getStatus());
+    	
+    	JsonNode results = new ObjectMapper().readTree(batch.getText());
+    	int[] statuses = {201, 201, 409, 404, 404, 400, 400};
+    	assertEquals("One result per booking", statuses.length, results.size());
+    	for (int i = 0; i < statuses.length; i++) {
+    		JsonNode result = results.get(i);
+    		assertEquals("Results should be in the order of the request", i, result.get("index").getIntValue());
+    		assertEquals("Unexpected status of booking " + i, statuses[i], result.get("status").getIntValue());
+    		if (statuses[i] == 201) {
+    			assertNotNull("Stored booking " + i + " should have an ID", result.get("booking").get("id"));
+    			assertNull(result.get("errors"));
+    		} else {
+    			assertNull("Rejected booking " + i + " should not be returned", result.get("booking"));
+    			assertTrue("Rejected booking " + i + " should say why", result.get("errors").size() > 0);
+    		}
+    	}
+    	
+    	//the stored bookings now conflict with a later batch, the others were not stored
+    	Exchange again = client.send("POST", "api/bookings/batch", "["
+    			+ booking(customer, flight, "2099-01-02") + ","
+    			+ booking(customer, flight, "2099-01-06") + "]");
+    	assertEquals("Unexpected response status", 200, again.getStatus());
+    	JsonNode retried = new ObjectMapper().readTree(again.getText());
+    	assertEquals(409, retried.get(0).get("status").getIntValue());
+    	assertEquals(201, retried.get(1).get("status").getIntValue());
+    }
+    
+    @Test
+    @InSequence(7) //test 7 - a batch above the limit is refused as a whole
+    @RunAsClient
+    public void createOversizedBatchOfBookings(@ArquillianResource URL deployment) throws Exception {
+    	HttpTestClient client = new HttpTestClient(deployment);
+    	long customer = idOf(client.send("POST", "api/customers",
+    			"{\"name\":\"Batch Customer\",\"email\":\"batch.oversized@gmail.com\",\"phoneNumber\":\"07881545191\"}"));
+    	long flight = idOf(client.send("POST", "api/flights", "{\"number\":\"BT102\",\"departure\":\"NCL\",\"destination\":\"ATH\"}"));
+    	
+    	StringBuilder json = new StringBuilder("[");
+    	for (int i = 0; i <= BookingRestService.MAX_BATCH_SIZE; i++) {
+    		json.append(i == 0 ? "" : ",").append(booking(customer, flight, String.format("2099-%02d-%02d", i / 28 % 12 + 1, i % 28 + 1)));
+    	}
+    	Exchange oversized = client.send("POST", "api/bookings/batch", json.append("]").toString());
+    	assertEquals("Unexpected response status", 413, oversized.getStatus());
+    	
+    	//none of it was stored
+    	Exchange first = client.send("POST", "api/bookings/batch", "[" + booking(customer, flight, "2099-01-01") + "]");
+    	assertEquals(201, new ObjectMapper().readTree(first.getText()).get(0).get("status").getIntValue());
+    }
         
+    private static String booking(long customer, long flight, String date) {
+    	return "{\"customer\":{\"id\":" + customer + "},\"flight\":{\"id\":" + flight + "},\"bookingDate\":\"" + date + "\"}";
+    }
+    
+    private static long idOf(Exchange created) throws Exception {
+    	assertEquals("Unexpected response status", 201, created.getStatus());
+    	return new ObjectMapper().readTree(created.getText()).get("id").getLongValue();
+    }
+    
     private Customer addCustomer(Customer c) {
     	Response response = customerRestService.createCustomer(c);
     	return (Customer) response.getEntity();
@@ -0,0 +1,134 @@
+package org.jboss.quickstarts.wfk.contact;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import javax.inject.Inject;
+import javax.ws.rs.core.Response;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.quickstarts.wfk.area.AreaCodeResolver;
+import org.jboss.quickstarts.wfk.util.AsyncResponder;
+import org.jboss.quickstarts.wfk.util.RestServiceException;
+import org.jboss.resteasy.spi.AsynchronousResponse;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+//asynchronous contact writes against an area service which is slow, with no area code table loaded
+@RunWith(Arquillian.class)
+public class ContactAsyncTest {
+	private static final int REQUESTS = 40; //several times as many as the asynchronous EJB thread pool has threads
+	
+    @Deployment
+    public static Archive<?> createTestArchive() { //contains all necessary external dependencies to run the tests
+        File[] libs = Maven.resolver().loadPomFromFile("pom.xml").resolve(
+                "org.codehaus.jackson:jackson-core-asl:1.9.9",
+                "org.codehaus.jackson:jackson-mapper-asl:1.9.9",
+                "org.codehaus.jackson:jackson-jaxrs:1.9.9",
+                "com.google.guava:guava:16.0"
+        ).withTransitivity().asFile();
+
+        Archive<?> archive = ShrinkWrap
+                .create(WebArchive.class, "test.war")
+                .addPackages(true, "org.jboss.quickstarts.wfk")
+                .addAsLibraries(libs)
+                .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
+                .addAsWebInfResource("arquillian-ds.xml")
+                .addAsWebInfResource(new File("src/main/webapp/WEB-INF/jboss-deployment-structure.xml"), "jboss-deployment-structure.xml")
+                .addAsWebInfResource(new StringAsset("<beans><alternatives><class>" + SlowAreaServiceClient.class.getName()
+                		+ "</class></alternatives></beans>"), "beans.xml"); //the slow area service replaces the real one
+
+        return archive;
+    }
+    
+    @Inject //calls contact rest service
+    ContactRestService contactRestService;
+    
+    @Inject //to check that the writes fall back on area lookups
+    AreaCodeResolver areaCodes;
+    
+    @Test //the writes make their area lookups on their own threads, rather than queue them on the pool they hold
+    public void asyncWritesWithASlowAreaService() throws Exception {
+    	assertFalse("The area code table should not be loaded", areaCodes.isLoaded());
+    	RecordingResponse responses = new RecordingResponse(REQUESTS);
+    	
+    	long start = System.nanoTime();
+    	for (int i = 0; i < REQUESTS; i++) {
+    		contactRestService.createContactAsync(contact(i), responses);
+    	}
+    	long submitted = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    	
+    	assertTrue("Requests did not complete in time", responses.await(AsyncResponder.TIMEOUT));
+    	long completed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    	
+    	//held for the whole of every request, a single request thread would take REQUESTS * SLOWNESS milliseconds
+    	assertTrue("Submitting took " + submitted + "ms", submitted < SlowAreaServiceClient.SLOWNESS * 2);
+    	assertEquals("Every contact should be created, none should time out", REQUESTS, responses.count(201));
+    	//one request after the other would take REQUESTS * SLOWNESS milliseconds, the pool runs several at once
+    	assertTrue("Completing took " + completed + "ms", completed < REQUESTS * SlowAreaServiceClient.SLOWNESS / 2);
+    }
+    
+    @Test //a write still running at the deadline is rolled back, so that the 503 the client gets is true
+    public void asyncWritesPastTheDeadlineAreRolledBack() throws Exception {
+    	Contact contact = contact(0);
+    	contact.setEmail("async.overdue@gmail.com");
+    	contact.setPhoneNumber("(" + SlowAreaServiceClient.OVERDUE_AREA_CODE + ") 555-0000");
+    	RecordingResponse responses = new RecordingResponse(1);
+    	
+    	contactRestService.createContactAsync(contact, responses);
+    	
+    	assertTrue("Request did not complete", responses.await(AsyncResponder.TIMEOUT * 2));
+    	assertEquals("The request should time out", 1, responses.count(503));
+    	try {
+    		contactRestService.retrieveContactsByEmail("async.overdue@gmail.com");
+    		fail("The contact should not have been created");
+    	} catch (RestServiceException e) {
+    		assertEquals(Response.Status.NOT_FOUND, e.getStatus());
+    	}
+    }
+    
+    private static Contact contact(int i) {
+    	Contact contact = new Contact();
+    	contact.setFirstName("Async");
+    	contact.setLastName("Writer");
+    	contact.setEmail("async.writer" + i + "@gmail.com");
+    	contact.setPhoneNumber("(201) 555-" + String.format("%04d", i));
+    	contact.setBirthDate(new Date(0));
+    	return contact;
+    }
+    
+    //collects the responses of asynchronous requests
+    private static class RecordingResponse implements AsynchronousResponse {
+    	private final AtomicIntegerArray statuses = new AtomicIntegerArray(600);
+    	private final CountDownLatch remaining;
+    	
+    	RecordingResponse(int expected) {
+    		remaining = new CountDownLatch(expected);
+    	}
+    	
+		@Override
+		public void setResponse(Response response) {
+			statuses.incrementAndGet(response.getStatus());
+			remaining.countDown();
+		}
+		
+		boolean await(long timeout) throws InterruptedException {
+			return remaining.await(timeout, TimeUnit.MILLISECONDS);
+		}
+		
+		int count(int status) {
+			return statuses.get(status);
+		}
+    }
+}
@@ -0,0 +1,42 @@
+package org.jboss.quickstarts.wfk.contact;
+
+import java.util.List;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.enterprise.inject.Alternative;
+
+import org.jboss.quickstarts.wfk.area.Area;
+import org.jboss.quickstarts.wfk.area.AreaServiceClient;
+import org.jboss.quickstarts.wfk.util.AsyncResponder;
+
+//stands in for an area service which was down when the application started and is slow now, enabled by ContactAsyncTest
+@Alternative
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class SlowAreaServiceClient extends AreaServiceClient {
+	static final long SLOWNESS = 200; //milliseconds per lookup
+	static final int OVERDUE_AREA_CODE = 989; //looked up for longer than an asynchronous request may take
+	
+	@Override
+	public List<Area> getAreas() { //so the area code table is never loaded, and every write looks its area code up
+		throw new IllegalStateException("The area service is down");
+	}
+	
+	@Override
+	public Area getAreaById(int id) {
+		try {
+			Thread.sleep(id == OVERDUE_AREA_CODE ? AsyncResponder.TIMEOUT : SLOWNESS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted whilst looking an area code up", e);
+		}
+		
+		Area area = new Area();
+		area.setId(id);
+		area.setState("New Jersey");
+		area.setAbbr("NJ");
+		return area;
+	}
+}
@@ -3,15 +3,23 @@ package org.jboss.quickstarts.wfk.customer;
 import static org.junit.Assert.*;
 
 import java.io.File;
+import java.net.URL;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.inject.Inject;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 
 import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.container.test.api.RunAsClient;
 import org.jboss.arquillian.junit.Arquillian;
 import org.jboss.arquillian.junit.InSequence;
+import org.jboss.arquillian.test.api.ArquillianResource;
 import org.jboss.quickstarts.wfk.customer.Customer;
 import org.jboss.quickstarts.wfk.customer.CustomerRestService;
+import org.jboss.quickstarts.wfk.util.HttpTestClient;
+import org.jboss.quickstarts.wfk.util.HttpTestClient.Exchange;
 import org.jboss.quickstarts.wfk.util.RestServiceException;
 import org.jboss.shrinkwrap.api.Archive;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
@@ -30,7 +38,8 @@ public class CustomerTest {
         File[] libs = Maven.resolver().loadPomFromFile("pom.xml").resolve(
                 "org.codehaus.jackson:jackson-core-asl:1.9.9",
                 "org.codehaus.jackson:jackson-mapper-asl:1.9.9",
-                "org.codehaus.jackson:jackson-jaxrs:1.9.9"
+                "org.codehaus.jackson:jackson-jaxrs:1.9.9",
+                "com.google.guava:guava:16.0"
         ).withTransitivity().asFile();
 
         Archive<?> archive = ShrinkWrap
@@ -39,6 +48,7 @@ public class CustomerTest {
                 .addAsLibraries(libs)
                 .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
                 .addAsWebInfResource("arquillian-ds.xml")
+                .addAsWebInfResource(new File("src/main/webapp/WEB-INF/jboss-deployment-structure.xml"), "jboss-deployment-structure.xml")
                 .addClasses(Customer.class, CustomerRestService.class)
                 .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml");
 
@@ -96,7 +106,7 @@ public class CustomerTest {
     @InSequence(4) // test 4 - invalid customer id and throw exception
     public void getCustomerByInvalidId() {
     	try {
-    		customerRestService.getCustomer(null);
+    		customerRestService.getCustomer(null, null);
     		fail("Expected a RestServiceException to be thrown");
     	} catch (RestServiceException e) {
     		assertEquals("Unexpected response status", Response.Status.NOT_FOUND, e.getStatus());
@@ -115,7 +125,7 @@ public class CustomerTest {
     	assertFalse("Customer ID not received", customer.getId() == null);
     	
     	customer.setName("Georgios Test");
-    	response = customerRestService.updateCustomer(customer.getId(), customer);
+    	response = customerRestService.updateCustomer(customer.getId(), null, customer);
     	
     	customer = (Customer) response.getEntity();
     	assertTrue("Customer information update failed", customer.getName().equals("Georgios Test"));
@@ -134,4 +144,94 @@ public class CustomerTest {
     	assertEquals("Unexpected response status", 204, response.getStatus());
     }
     
-}
\ No newline at end of file
+    @Test
+    @InSequence(7) //test 7 - the email of a deleted customer can be used again
+    public void reuseDeletedCustomerEmail() {
+    	Customer customer = new Customer(null, "Georgios Rovolis", "rovolisgiorgos7@gmail.com", "07871545186");
+    	Response response;
+    	
+    	response = customerRestService.createCustomer(customer);
+    	customer = (Customer) response.getEntity();
+    	customerRestService.deleteCustomer(customer.getId());
+    	
+    	response = customerRestService.createCustomer(new Customer(null, "Georgios Rovolis", "rovolisgiorgos7@gmail.com", "07871545186"));
+    	assertEquals("Unexpected response status", 201, response.getStatus());
+    }
+    
+    @Test
+    @InSequence(8) //test 8 - an update sent with an outdated ETag is refused
+    public void updateWithOutdatedETag() {
+    	Customer customer = new Customer(null, "Georgios Rovolis", "rovolisgiorgos8@gmail.com", "07871545186");
+    	customer = (Customer) customerRestService.createCustomer(customer).getEntity();
+    	String etag = eTagOf(customerRestService.getCustomer(customer.getId(), null));
+    	
+    	customer.setName("Georgios First");
+    	Response response = customerRestService.updateCustomer(customer.getId(), etag, customer);
+    	assertEquals("Unexpected response status", 200, response.getStatus());
+    	assertFalse("The ETag should change with the update", etag.equals(eTagOf(response)));
+    	
+    	customer.setName("Georgios Second");
+    	try {
+    		customerRestService.updateCustomer(customer.getId(), etag, customer);
+    		fail("Expected a RestServiceException to be thrown");
+    	} catch (RestServiceException e) {
+    		assertEquals("Unexpected response status", Response.Status.PRECONDITION_FAILED, e.getStatus());
+    	}
+    	
+    	customer = (Customer) customerRestService.getCustomer(customer.getId(), null).getEntity();
+    	assertEquals("The first update should have been kept", "Georgios First", customer.getName());
+    }
+    
+    @Test
+    @InSequence(9) //test 9 - an update without If-Match is tagged with the new version too
+    public void unconditionalUpdateIsTagged() {
+    	Customer customer = new Customer(null, "Georgios Rovolis", "rovolisgiorgos9@gmail.com", "07871545186");
+    	customer = (Customer) customerRestService.createCustomer(customer).getEntity();
+    	String etag = eTagOf(customerRestService.getCustomer(customer.getId(), null));
+    	
+    	customer.setName("Georgios Unconditional");
+    	Response response = customerRestService.updateCustomer(customer.getId(), null, customer);
+    	String updated = eTagOf(response);
+    	assertFalse("The ETag should change with the update", etag.equals(updated));
+    	assertEquals("The ETag should be the one a GET returns", updated, 
+    			eTagOf(customerRestService.getCustomer(customer.getId(), null)));
+    	
+    	customer.setName("Georgios Conditional"); //the returned ETag can be used for the next update straight away
+    	response = customerRestService.updateCustomer(customer.getId(), updated, customer);
+    	assertEquals("Unexpected response status", 200, response.getStatus());
+    }
+    
+    @Test
+    @InSequence(10) //test 10 - a GET with the current ETag in If-None-Match is answered with 304, until the customer changes
+    @RunAsClient
+    public void notModifiedCustomer(@ArquillianResource URL deployment) throws Exception {
+    	HttpTestClient client = new HttpTestClient(deployment);
+    	String json = "{\"name\":\"Georgios Rovolis\",\"email\":\"rovolisgiorgos10@gmail.com\",\"phoneNumber\":\"07871545186\"}";
+    	Exchange created = client.send("POST", "api/customers", json);
+    	assertEquals("Unexpected response status", 201, created.getStatus());
+    	Matcher id = Pattern.compile("\"id\":(\\d+)").matcher(created.getText());
+    	assertTrue("Customer ID not received", id.find());
+    	String path = "api/customers/" + id.group(1);
+    	
+    	Exchange fetched = client.get(path);
+    	String etag = fetched.getHeader(HttpHeaders.ETAG);
+    	assertEquals("Unexpected response status", 200, fetched.getStatus());
+    	assertNotNull("ETag not received", etag);
+    	
+    	Exchange notModified = client.get(path, HttpHeaders.IF_NONE_MATCH, etag);
+    	assertEquals("Unexpected response status", 304, notModified.getStatus());
+    	assertEquals("A 304 should carry the ETag", etag, notModified.getHeader(HttpHeaders.ETAG));
+    	assertEquals("A 304 should have no body", 0, notModified.getBody().length);
+    	
+    	Exchange updated = client.send("PUT", path, json.replace("Rovolis", "Updated"));
+    	assertEquals("Unexpected response status", 200, updated.getStatus());
+    	assertEquals("The old ETag should no longer match", 200, client.get(path, HttpHeaders.IF_NONE_MATCH, etag).getStatus());
+    	assertEquals("The ETag of the update should match", 304, 
+    			client.get(path, HttpHeaders.IF_NONE_MATCH, updated.getHeader(HttpHeaders.ETAG)).getStatus());
+    }
+    
+    private static String eTagOf(Response response) {
+    	return response.getMetadata().getFirst(HttpHeaders.ETAG).toString();
+    }
+    
+}
@@ -0,0 +1,24 @@
+package org.jboss.quickstarts.wfk.customer;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.enterprise.inject.Alternative;
+import javax.validation.ConstraintViolationException;
+
+//fails the first time a customer with a "flaky" email is created, and creates it on a retry, enabled by IdempotencyFilterTest
+@Alternative
+public class FlakyCustomerService extends CustomerService {
+	static final String FLAKY = "flaky";
+	
+	private static final Set<String> failed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	
+	@Override
+	public Customer create(Customer customer) throws ConstraintViolationException, CustomerExistsException {
+		if (customer.getEmail() != null && customer.getEmail().startsWith(FLAKY) && failed.add(customer.getEmail())) {
+			throw new IllegalStateException("The database is unavailable");
+		}
+		return super.create(customer);
+	}
+}
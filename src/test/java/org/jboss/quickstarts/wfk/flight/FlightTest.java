@@ -3,14 +3,33 @@ package org.jboss.quickstarts.wfk.flight;
 import static org.junit.Assert.*;
 
 import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.inject.Inject;
 import javax.ws.rs.core.Response;
 
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.container.test.api.RunAsClient;
 import org.jboss.arquillian.junit.Arquillian;
 import org.jboss.arquillian.junit.InSequence;
+import org.jboss.arquillian.test.api.ArquillianResource;
 import org.jboss.quickstarts.wfk.flight.Flight;
+import org.jboss.quickstarts.wfk.util.HttpTestClient;
+import org.jboss.quickstarts.wfk.util.HttpTestClient.Exchange;
 import org.jboss.quickstarts.wfk.util.RestServiceException;
 import org.jboss.shrinkwrap.api.Archive;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
@@ -22,6 +41,7 @@ import org.junit.runner.RunWith;
 
 @RunWith(Arquillian.class)
 public class FlightTest {
+	private static final int CONCURRENT_REQUESTS = 16; //identical GETs sent at once, see concurrentFlightPages
 
     @Deployment
     public static Archive<?> createTestArchive() { //contains all necessary external dependencies to run the tests
@@ -29,7 +49,8 @@ public class FlightTest {
         File[] libs = Maven.resolver().loadPomFromFile("pom.xml").resolve(
                 "org.codehaus.jackson:jackson-core-asl:1.9.9",
                 "org.codehaus.jackson:jackson-mapper-asl:1.9.9",
-                "org.codehaus.jackson:jackson-jaxrs:1.9.9"
+                "org.codehaus.jackson:jackson-jaxrs:1.9.9",
+                "com.google.guava:guava:16.0"
         ).withTransitivity().asFile();
 
         Archive<?> archive = ShrinkWrap
@@ -38,6 +59,7 @@ public class FlightTest {
                 .addAsLibraries(libs)
                 .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
                 .addAsWebInfResource("arquillian-ds.xml")
+                .addAsWebInfResource(new File("src/main/webapp/WEB-INF/jboss-deployment-structure.xml"), "jboss-deployment-structure.xml")
                 .addClasses(Flight.class, FlightRestService.class)
                 .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml");
 
@@ -104,4 +126,136 @@ public class FlightTest {
     	response = flightRestService.deleteFlight(flight.getId());
     	assertEquals("Unexpected error occured", 204, response.getStatus());
     }
+    
+    @Test
+    @InSequence(5) //Test 5 - the cached flight list follows creates and deletes
+    @SuppressWarnings("unchecked")
+    public void cachedFlightsAreInvalidated() {
+    	Flight flight = new Flight(null, "GR105", "NCL", "ATH");
+    	
+    	List<Flight> before = (List<Flight>) flightRestService.getAllFlights(null, null, null).getEntity();
+    	assertFalse("Flight should not be listed yet", before.contains(flight));
+    	
+    	flight = (Flight) flightRestService.createFlight(flight).getEntity();
+    	List<Flight> created = (List<Flight>) flightRestService.getAllFlights(null, null, null).getEntity();
+    	assertTrue("Created flight should be listed", created.contains(flight));
+    	
+    	flightRestService.deleteFlight(flight.getId());
+    	List<Flight> deleted = (List<Flight>) flightRestService.getAllFlights(null, null, null).getEntity();
+    	assertFalse("Deleted flight should not be listed", deleted.contains(flight));
+    }
+    
+    @Test
+    @InSequence(6) //Test 6 - a GET of the list with its current ETag in If-None-Match is answered with 304, until a flight changes
+    @RunAsClient
+    public void notModifiedFlights(@ArquillianResource URL deployment) throws Exception {
+    	HttpTestClient client = new HttpTestClient(deployment);
+    	
+    	Exchange listed = client.get("api/flights");
+    	String etag = listed.getHeader("ETag");
+    	assertEquals("Unexpected response status", 200, listed.getStatus());
+    	assertNotNull("ETag not received", etag);
+    	
+    	Exchange notModified = client.get("api/flights", "If-None-Match", etag);
+    	assertEquals("Unexpected response status", 304, notModified.getStatus());
+    	assertEquals("A 304 should carry the ETag", etag, notModified.getHeader("ETag"));
+    	assertEquals("A 304 should have no body", 0, notModified.getBody().length);
+    	
+    	Exchange created = client.send("POST", "api/flights", "{\"number\":\"GR106\",\"departure\":\"NCL\",\"destination\":\"ATH\"}");
+    	assertEquals("Unexpected response status", 201, created.getStatus());
+    	Exchange changed = client.get("api/flights", "If-None-Match", etag);
+    	assertEquals("The list has changed", 200, changed.getStatus());
+    	assertFalse("The ETag should change with the list", etag.equals(changed.getHeader("ETag")));
+    }
+    
+    @Test
+    @InSequence(7) //Test 7 - identical concurrent GETs of a page share its read, and each gets the whole list or a 304
+    @RunAsClient
+    public void concurrentFlightPages(@ArquillianResource URL deployment) throws Exception {
+    	final HttpTestClient client = new HttpTestClient(deployment);
+    	Set<String> numbers = new HashSet<>();
+    	for (int i = 0; i < 20; i++) {
+    		String number = String.format("SF%03d", i);
+    		Exchange created = client.send("POST", "api/flights", "{\"number\":\"" + number + "\",\"departure\":\"NCL\",\"destination\":\"ATH\"}");
+    		assertEquals("Unexpected response status", 201, created.getStatus());
+    		numbers.add(number);
+    	}
+    	long[] before = pageReads(client);
+    	
+    	List<Exchange> pages = concurrently(client);
+    	String etag = pages.get(0).getHeader("ETag");
+    	String body = pages.get(0).getText();
+    	assertNotNull("ETag not received", etag);
+    	for (Exchange page : pages) {
+    		assertEquals("Unexpected response status", 200, page.getStatus());
+    		assertEquals("Every request should get the ETag of the shared page", etag, page.getHeader("ETag"));
+    		assertEquals("Every request should get the whole serialized page", body, page.getText());
+    	}
+    	
+    	//the list written once for all the requests is the flights as JSON
+    	JsonNode flights = new ObjectMapper().readTree(body);
+    	assertTrue("The page should be a JSON array", flights.isArray());
+    	Set<String> listed = new HashSet<>();
+    	for (JsonNode flight : flights) {
+    		assertNotNull("Flight ID not listed", flight.get("id"));
+    		assertNotNull("Departure not listed", flight.get("departure"));
+    		assertNotNull("Destination not listed", flight.get("destination"));
+    		listed.add(flight.get("number").getTextValue());
+    	}
+    	assertTrue("Created flights should be listed", listed.containsAll(numbers));
+    	
+    	for (Exchange notModified : concurrently(client, "If-None-Match", etag)) {
+    		assertEquals("Unexpected response status", 304, notModified.getStatus());
+    		assertEquals("A 304 should carry the ETag", etag, notModified.getHeader("ETag"));
+    		assertEquals("A 304 should have no body", 0, notModified.getBody().length);
+    	}
+    	
+    	//whether the requests overlapped is up to the scheduler, but each of them went through the single flight
+    	long[] after = pageReads(client);
+    	assertEquals("Every request should be counted", 2 * CONCURRENT_REQUESTS, after[0] - before[0]);
+    	assertTrue("At least one read should have run", after[1] - before[1] >= 1);
+    	assertTrue("No more reads than requests should have run", after[1] - before[1] <= after[0] - before[0]);
+    }
+    
+    //sends the same GET of every flight from as many threads at once, and returns the responses
+    private static List<Exchange> concurrently(final HttpTestClient client, final String... headers) throws Exception {
+    	final CountDownLatch start = new CountDownLatch(1);
+    	ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_REQUESTS);
+    	try {
+    		List<Future<Exchange>> requests = new ArrayList<>();
+    		for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+    			requests.add(executor.submit(new Callable<Exchange>() {
+    				@Override
+    				public Exchange call() throws Exception {
+    					start.await();
+    					return client.get("api/flights?limit=1000", headers);
+    				}
+    			}));
+    		}
+    		start.countDown();
+    		
+    		List<Exchange> responses = new ArrayList<>();
+    		for (Future<Exchange> request : requests) {
+    			responses.add(request.get(30, TimeUnit.SECONDS));
+    		}
+    		return responses;
+    	} finally {
+    		executor.shutdownNow();
+    	}
+    }
+    
+    //the reads of flight pages asked for and run so far, as published by the metrics endpoint
+    private static long[] pageReads(HttpTestClient client) throws Exception {
+    	String metrics = client.get("api/metrics").getText();
+    	return new long[] {
+    			counter(metrics, "coalesced_reads_total"),
+    			counter(metrics, "coalesced_executions_total")
+    	};
+    }
+    
+    private static long counter(String metrics, String name) {
+    	Matcher matcher = Pattern.compile(name + "\\{name=\"flights\\.page\"\\} (\\d+)").matcher(metrics);
+    	assertTrue(name + " not published", matcher.find());
+    	return Long.parseLong(matcher.group(1));
+    }
 }
@@ -0,0 +1,165 @@
+package org.jboss.quickstarts.wfk.metrics;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.inject.Inject;
+import javax.ws.rs.core.Request;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.quickstarts.wfk.flight.FlightRestService;
+import org.jboss.quickstarts.wfk.util.LogThrottle;
+import org.jboss.quickstarts.wfk.util.SingleFlight;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * <p>Checks that requests recorded as the metrics filter and interceptor do, log messages suppressed by their rate
+ * limit and coalesced reads are published by the metrics endpoint, in the Prometheus text format.</p>
+ */
+@RunWith(Arquillian.class)
+public class MetricsTest {
+
+    @Deployment
+    public static Archive<?> createTestArchive() { //contains all necessary external dependencies to run the tests
+        File[] libs = Maven.resolver().loadPomFromFile("pom.xml").resolve(
+                "org.codehaus.jackson:jackson-core-asl:1.9.9",
+                "org.codehaus.jackson:jackson-mapper-asl:1.9.9",
+                "org.codehaus.jackson:jackson-jaxrs:1.9.9",
+                "com.google.guava:guava:16.0"
+        ).withTransitivity().asFile();
+
+        Archive<?> archive = ShrinkWrap
+                .create(WebArchive.class, "test.war")
+                .addPackages(true, "org.jboss.quickstarts.wfk")
+                .addAsLibraries(libs)
+                .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
+                .addAsWebInfResource("arquillian-ds.xml")
+                .addAsWebInfResource(new File("src/main/webapp/WEB-INF/jboss-deployment-structure.xml"), "jboss-deployment-structure.xml")
+                .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml");
+
+        return archive;
+    }
+
+    @Inject
+    MetricsRestService metricsRestService;
+
+    @Test
+    public void recordedRequestsArePublished() throws Exception {
+        Method getFlights = FlightRestService.class.getMethod("getAllFlights", String.class, Integer.class, Request.class);
+
+        // Three requests: 2ms and 3ms answered with 200, then 50ms answered with 503
+        record(getFlights, 2000000L, 200);
+        record(getFlights, 3000000L, 200);
+        record(getFlights, 50000000L, 503);
+
+        String metrics = metricsRestService.getMetrics();
+        String labels = "{resource=\"FlightRestService\",method=\"getAllFlights\"";
+
+        assertTrue(metrics, metrics.contains("# TYPE api_request_duration_seconds histogram\n"));
+        assertTrue(metrics, metrics.contains("api_request_duration_seconds_bucket" + labels + ",le=\"0.004096\"} 2\n"));
+        assertTrue(metrics, metrics.contains("api_request_duration_seconds_bucket" + labels + ",le=\"0.065536\"} 3\n"));
+        assertTrue(metrics, metrics.contains("api_request_duration_seconds_bucket" + labels + ",le=\"+Inf\"} 3\n"));
+        assertTrue(metrics, metrics.contains("api_request_duration_seconds_sum" + labels + "} 0.055\n"));
+        assertTrue(metrics, metrics.contains("api_request_duration_seconds_count" + labels + "} 3\n"));
+        assertTrue(metrics, metrics.contains("api_responses_total" + labels + ",status=\"200\"} 2\n"));
+        assertTrue(metrics, metrics.contains("api_responses_total" + labels + ",status=\"503\"} 1\n"));
+    }
+
+    @Test
+    public void requestsNotDispatchedAreRecordedAsUnmatched() {
+        ApiMetrics.clear();
+        ApiMetrics.take().record(1000L, 404);
+
+        assertTrue(metricsRestService.getMetrics().contains(
+                "api_responses_total{resource=\"none\",method=\"none\",status=\"404\"}"));
+    }
+
+    @Test
+    public void suppressedLogMessagesArePublished() {
+        LogThrottle burst = new LogThrottle(MetricsTest.class, "burst", Level.INFO, 2);
+        Logger log = Logger.getLogger(MetricsTest.class.getName());
+
+        // No more than 2 per second are logged, so at least one of these is suppressed even across a second boundary
+        for (int i = 0; i < 5; i++) {
+            burst.log(log, "Logging message {0} of a burst", i);
+        }
+
+        assertTrue(burst.getSuppressed() > 0);
+        assertTrue(metricsRestService.getMetrics().contains("log_messages_suppressed_total{class=\""
+                + MetricsTest.class.getName() + "\",method=\"burst\",level=\"INFO\"} " + burst.getSuppressed() + "\n"));
+    }
+
+    @Test
+    public void coalescedReadsArePublished() throws Exception {
+        final SingleFlight<String, Object> flight = new SingleFlight<>("test.coalesced");
+        final CountDownLatch running = new CountDownLatch(1);
+        final Object result = new Object();
+        Callable<Object> read = new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return flight.execute("key", new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        running.await(10, TimeUnit.SECONDS);
+                        return result;
+                    }
+                });
+            }
+        };
+
+        // Four identical reads, the first of which holds the others until they have all joined it
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Object>> reads = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                reads.add(executor.submit(read));
+            }
+            for (long deadline = System.currentTimeMillis() + 10000; flight.getCalls() < 4
+                    && System.currentTimeMillis() < deadline; ) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(200);
+            running.countDown();
+
+            for (Future<Object> coalesced : reads) {
+                assertSame(result, coalesced.get(10, TimeUnit.SECONDS));
+            }
+
+            String metrics = metricsRestService.getMetrics();
+            assertTrue(metrics, metrics.contains("coalesced_reads_total{name=\"test.coalesced\"} 4\n"));
+            assertTrue(metrics, metrics.contains("coalesced_executions_total{name=\"test.coalesced\"} 1\n"));
+            assertTrue(metrics, metrics.contains("coalescing_ratio{name=\"test.coalesced\"} 4.0\n"));
+        } finally {
+            executor.shutdownNow();
+            flight.unregister();
+        }
+
+        String metrics = metricsRestService.getMetrics();
+        assertFalse("An unregistered instance should not be published", metrics.contains("test.coalesced"));
+    }
+
+    private static void record(Method resourceMethod, long nanos, int status) {
+        ApiMetrics.clear();
+        ApiMetrics.dispatched(resourceMethod);
+        ApiMetrics.take().record(nanos, status);
+    }
+}
@@ -0,0 +1,130 @@
+package org.jboss.quickstarts.wfk.search;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.transaction.UserTransaction;
+import javax.ws.rs.core.Response;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.arquillian.junit.InSequence;
+import org.jboss.quickstarts.wfk.customer.Customer;
+import org.jboss.quickstarts.wfk.customer.CustomerRestService;
+import org.jboss.quickstarts.wfk.util.RestServiceException;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(Arquillian.class)
+public class NameSearchTest {
+
+    @Deployment
+    public static Archive<?> createTestArchive() { //contains all necessary external dependencies to run the tests
+        File[] libs = Maven.resolver().loadPomFromFile("pom.xml").resolve(
+                "org.codehaus.jackson:jackson-core-asl:1.9.9",
+                "org.codehaus.jackson:jackson-mapper-asl:1.9.9",
+                "org.codehaus.jackson:jackson-jaxrs:1.9.9",
+                "com.google.guava:guava:16.0"
+        ).withTransitivity().asFile();
+
+        Archive<?> archive = ShrinkWrap
+                .create(WebArchive.class, "test.war")
+                .addPackages(true, "org.jboss.quickstarts.wfk")
+                .addAsLibraries(libs)
+                .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
+                .addAsWebInfResource("arquillian-ds.xml")
+                .addAsWebInfResource(new File("src/main/webapp/WEB-INF/jboss-deployment-structure.xml"), "jboss-deployment-structure.xml")
+                .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml");
+
+        return archive;
+    }
+    
+    @Inject //calls the name search rest service
+    NameSearchRestService nameSearchRestService;
+    
+    @Inject //calls the customer rest service
+    CustomerRestService customerRestService;
+    
+    @Inject //writes names in a transaction which rolls back
+    NameSearch nameSearch;
+    
+    @Inject
+    UserTransaction transaction;
+    
+    private static Long customerId;
+    
+    @Test
+    @InSequence(1) //test 1 - a new customer is found by the start of either name
+    public void findCreatedCustomer() {
+    	Customer customer = new Customer(null, "Zephyrine Quillfeather", "zephyrine@mail.com", "07871545186");
+    	customer = (Customer) customerRestService.createCustomer(customer).getEntity();
+    	customerId = customer.getId();
+    	
+    	assertTrue("Customer should be found by first name", isFound("zeph"));
+    	assertTrue("Customer should be found by last name", isFound("QUILL"));
+    	assertTrue("Customer should be found by full name", isFound("zephyrine q"));
+    	assertFalse("Customer should not be found by the middle of a name", isFound("phyr"));
+    }
+    
+    @Test
+    @InSequence(2) //test 2 - a renamed customer is only found by the new name
+    public void findUpdatedCustomer() {
+    	Customer customer = new Customer(customerId, "Zephyrine Marlowe", "zephyrine@mail.com", "07871545186");
+    	customerRestService.updateCustomer(customerId, null, customer);
+    	
+    	assertTrue("Customer should be found by the new name", isFound("marl"));
+    	assertFalse("Customer should not be found by the old name", isFound("quill"));
+    }
+    
+    @Test
+    @InSequence(3) //test 3 - a deleted customer is not found
+    public void findDeletedCustomer() {
+    	customerRestService.deleteCustomer(customerId);
+    	
+    	assertFalse("Deleted customer should not be found", isFound("zeph"));
+    }
+    
+    @Test
+    @InSequence(4) //test 4 - a prefix is required
+    public void findWithoutPrefix() {
+    	try {
+    		nameSearchRestService.findNames(" ", null);
+    		fail("Expected a RestServiceException to be thrown");
+    	} catch (RestServiceException e) {
+    		assertEquals("Unexpected response status", Response.Status.BAD_REQUEST, e.getStatus());
+    	}
+    }
+    
+    @Test
+    @InSequence(5) //test 5 - a name written in a transaction which rolls back is not found
+    public void findRolledBackName() throws Exception {
+    	transaction.begin();
+    	try {
+    		transaction.setRollbackOnly();
+    		nameSearch.saved(new NameMatch(NameMatch.Type.CUSTOMER, customerId, "Zephyrine Rolledback"));
+    	} finally {
+    		transaction.rollback();
+    	}
+    	
+    	assertFalse("A rolled back name should not be found", isFound("rolledb"));
+    }
+    
+    @SuppressWarnings("unchecked")
+    private boolean isFound(String prefix) {
+    	List<NameMatch> matches = (List<NameMatch>) nameSearchRestService.findNames(prefix, null).getEntity();
+    	for (NameMatch match : matches) {
+    		if (match.getType() == NameMatch.Type.CUSTOMER && match.getId().equals(customerId)) {
+    			return true;
+    		}
+    	}
+    	return false;
+    }
+}
@@ -0,0 +1,123 @@
+package org.jboss.quickstarts.wfk.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.net.URL;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.container.test.api.RunAsClient;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.arquillian.test.api.ArquillianResource;
+import org.jboss.quickstarts.wfk.util.HttpTestClient.Exchange;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * <p>Checks over HTTP that the {@link ApiOriginFilter} gives compressed responses ETags of their own, evaluates the
+ * conditional headers of requests carrying them, and completes asynchronous responses too small to be compressed.</p>
+ */
+@RunWith(Arquillian.class)
+@RunAsClient
+public class ApiOriginFilterTest {
+
+    private static final int FLIGHTS = 30; //enough for the list to be above the compression threshold
+
+    @Deployment(testable = false)
+    public static Archive<?> createTestArchive() { //contains all necessary external dependencies to run the tests
+        File[] libs = Maven.resolver().loadPomFromFile("pom.xml").resolve(
+                "org.codehaus.jackson:jackson-core-asl:1.9.9",
+                "org.codehaus.jackson:jackson-mapper-asl:1.9.9",
+                "org.codehaus.jackson:jackson-jaxrs:1.9.9",
+                "com.google.guava:guava:16.0"
+        ).withTransitivity().asFile();
+
+        Archive<?> archive = ShrinkWrap
+                .create(WebArchive.class, "test.war")
+                .addPackages(true, "org.jboss.quickstarts.wfk")
+                .addAsLibraries(libs)
+                .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
+                .addAsWebInfResource("arquillian-ds.xml")
+                .addAsWebInfResource(new File("src/main/webapp/WEB-INF/jboss-deployment-structure.xml"), "jboss-deployment-structure.xml")
+                .addAsWebResource(new File("src/main/webapp/health.jsp"))
+                .setWebXML(new File("src/main/webapp/WEB-INF/web.xml")) //maps the filters
+                .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml");
+
+        return archive;
+    }
+
+    @ArquillianResource
+    URL deployment;
+
+    @Test
+    public void compressedResponsesAreTaggedWithTheirCoding() throws Exception {
+        HttpTestClient client = new HttpTestClient(deployment);
+        for (int i = 0; i < FLIGHTS; i++) {
+            Exchange created = client.send("POST", "api/flights", String.format(
+                    "{\"number\":\"CZ%03d\",\"departure\":\"NCL\",\"destination\":\"ATH\"}", i));
+            assertEquals(201, created.getStatus());
+        }
+
+        Exchange plain = client.get("api/flights?limit=1000");
+        assertNull(plain.getHeader("Content-Encoding"));
+        String tag = plain.getHeader("ETag");
+        assertNotNull(tag);
+
+        Exchange gzip = client.get("api/flights?limit=1000", "Accept-Encoding", "gzip");
+        assertEquals("gzip", gzip.getHeader("Content-Encoding"));
+        assertEquals(EntityTags.withCoding(tag, "gzip"), gzip.getHeader("ETag"));
+        assertEquals(plain.getText(), gzip.getText());
+
+        Exchange deflate = client.get("api/flights?limit=1000", "Accept-Encoding", "deflate");
+        assertEquals("deflate", deflate.getHeader("Content-Encoding"));
+        assertEquals(EntityTags.withCoding(tag, "deflate"), deflate.getHeader("ETag"));
+        assertEquals(plain.getText(), deflate.getText());
+
+        // Revalidating either representation answers 304 with the ETag of that representation
+        Exchange gzipNotModified = client.get("api/flights?limit=1000", "Accept-Encoding", "gzip",
+                "If-None-Match", gzip.getHeader("ETag"));
+        assertEquals(304, gzipNotModified.getStatus());
+        assertEquals(gzip.getHeader("ETag"), gzipNotModified.getHeader("ETag"));
+
+        Exchange plainNotModified = client.get("api/flights?limit=1000", "If-None-Match", tag);
+        assertEquals(304, plainNotModified.getStatus());
+        assertEquals(tag, plainNotModified.getHeader("ETag"));
+    }
+
+    @Test
+    public void conditionalUpdatesAcceptTheTagsOfCompressedResponses() throws Exception {
+        HttpTestClient client = new HttpTestClient(deployment);
+        Exchange created = client.send("POST", "api/customers",
+                "{\"name\":\"Coded Tag\",\"email\":\"coded.tag@gmail.com\",\"phoneNumber\":\"07871545100\"}");
+        assertEquals(201, created.getStatus());
+        Matcher id = Pattern.compile("\"id\":(\\d+)").matcher(created.getText());
+        assertTrue(id.find());
+        String coded = EntityTags.withCoding(created.getHeader("ETag"), "gzip");
+
+        String update = "{\"name\":\"Coded Tag Updated\",\"email\":\"coded.tag@gmail.com\",\"phoneNumber\":\"07871545100\"}";
+        Exchange updated = client.send("PUT", "api/customers/" + id.group(1), update, "If-Match", coded);
+        assertEquals(200, updated.getStatus());
+
+        Exchange stale = client.send("PUT", "api/customers/" + id.group(1), update, "If-Match", coded);
+        assertEquals(412, stale.getStatus());
+    }
+
+    @Test
+    public void asyncResponsesBelowTheThresholdAreSentOnCompletion() throws Exception {
+        // An incomplete booking is answered with a small error body, written after the request thread has returned
+        Exchange rejected = new HttpTestClient(deployment).send("POST", "api/bookings/async", "{}",
+                "Accept-Encoding", "gzip");
+
+        assertEquals(400, rejected.getStatus());
+        assertNull("A body below the threshold should not be compressed", rejected.getHeader("Content-Encoding"));
+        assertEquals(String.valueOf(rejected.getBody().length), rejected.getHeader("Content-Length"));
+        assertTrue(rejected.getText(), rejected.getText().contains("Bad Request"));
+    }
+}
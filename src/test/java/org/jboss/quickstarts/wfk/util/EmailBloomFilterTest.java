@@ -0,0 +1,199 @@
+package org.jboss.quickstarts.wfk.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * <p>Checks that an {@link EmailBloomFilter} stays a superset of its table across rebuilds, including for emails whose
+ * writes are still running when a rebuild starts, and that removed and replaced emails make a rebuild due.</p>
+ */
+@RunWith(Arquillian.class)
+public class EmailBloomFilterTest {
+
+    @Deployment
+    public static Archive<?> createTestArchive() { //contains all necessary external dependencies to run the tests
+        File[] libs = Maven.resolver().loadPomFromFile("pom.xml").resolve(
+                "org.codehaus.jackson:jackson-core-asl:1.9.9",
+                "org.codehaus.jackson:jackson-mapper-asl:1.9.9",
+                "org.codehaus.jackson:jackson-jaxrs:1.9.9",
+                "com.google.guava:guava:16.0"
+        ).withTransitivity().asFile();
+
+        Archive<?> archive = ShrinkWrap
+                .create(WebArchive.class, "test.war")
+                .addPackages(true, "org.jboss.quickstarts.wfk")
+                .addAsLibraries(libs)
+                .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
+                .addAsWebInfResource("arquillian-ds.xml")
+                .addAsWebInfResource(new File("src/main/webapp/WEB-INF/jboss-deployment-structure.xml"), "jboss-deployment-structure.xml")
+                .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml");
+
+        return archive;
+    }
+
+    @Test
+    public void everyEmailIsMaybePresentUntilLoaded() {
+        EmailBloomFilter filter = EmailBloomFilter.fromSystemProperties("unloaded");
+        assertTrue(filter.needsRebuild());
+        assertTrue(filter.mightContain("nobody@example.com"));
+
+        load(filter, "somebody@example.com");
+        assertFalse(filter.needsRebuild());
+        assertTrue(filter.mightContain("somebody@example.com"));
+        assertFalse(filter.mightContain("nobody@example.com"));
+    }
+
+    @Test
+    public void emailsAddedDuringARebuildAreKept() {
+        EmailBloomFilter filter = EmailBloomFilter.fromSystemProperties("during");
+        load(filter);
+
+        filter.beginRebuild();
+        filter.add("during@example.com");
+        filter.settle("during@example.com");
+        filter.load(Collections.<String>emptyList());
+        filter.finishRebuild();
+
+        assertTrue(filter.mightContain("during@example.com"));
+    }
+
+    @Test
+    public void emailsStillBeingWrittenWhenARebuildStartsAreKept() {
+        EmailBloomFilter filter = EmailBloomFilter.fromSystemProperties("pending");
+        load(filter);
+
+        // Added before the rebuild, committed only after the table has been read, so the rebuild does not read them.
+        filter.add("pending@example.com");
+        filter.add("settled@example.com");
+        filter.settle("settled@example.com");
+        load(filter);
+
+        assertTrue("An email still being written should be kept", filter.mightContain("pending@example.com"));
+        assertFalse("A settled email should be read from the table", filter.mightContain("settled@example.com"));
+
+        filter.settle("pending@example.com");
+        load(filter);
+        assertFalse(filter.mightContain("pending@example.com"));
+    }
+
+    @Test
+    public void aReloadIsNotReplacedByAnOverlappingOne() {
+        final EmailBloomFilter filter = EmailBloomFilter.fromSystemProperties("overlapping");
+        final List<String> table = Arrays.asList("first@example.com", "second@example.com");
+
+        // Reads one email per page, and starts a second reload once the first page has been loaded.
+        EmailBloomFilter.EmailPages pages = new EmailBloomFilter.EmailPages() {
+            private boolean overlapped;
+
+            @Override
+            public List<String> findEmailPage(String afterEmail, int maxResults) {
+                if (afterEmail.equals("first@example.com") && !overlapped) {
+                    overlapped = true;
+                    assertFalse("A reload should not start while another one is running", filter.reload(this, maxResults));
+                }
+                int from = afterEmail.isEmpty() ? 0 : table.indexOf(afterEmail) + 1;
+                return table.subList(from, Math.min(table.size(), from + maxResults));
+            }
+        };
+
+        assertTrue(filter.reload(pages, 1));
+        assertTrue(filter.mightContain("first@example.com"));
+        assertTrue(filter.mightContain("second@example.com"));
+        assertEquals(1L, filter.getStatistics().get("rebuildCount"));
+        assertFalse("A loaded filter should not be reloaded until it is stale", filter.reload(pages, 1));
+    }
+
+    @Test
+    public void aFailedReloadKeepsTheCurrentFilter() {
+        System.setProperty("failing.emailFilter.expectedInsertions", "10");
+        EmailBloomFilter filter = EmailBloomFilter.fromSystemProperties("failing");
+        load(filter, "kept@example.com");
+        filter.remove("kept@example.com");
+        filter.remove("kept@example.com");
+        assertTrue(filter.needsRebuild());
+
+        try {
+            filter.reload(new EmailBloomFilter.EmailPages() {
+                @Override
+                public List<String> findEmailPage(String afterEmail, int maxResults) {
+                    throw new IllegalStateException("The table cannot be read");
+                }
+            }, 10);
+            fail("The failure should be reported");
+        } catch (IllegalStateException e) {
+            assertTrue(filter.mightContain("kept@example.com"));
+        }
+        assertTrue("A reload should be able to start after a failed one", filter.beginRebuild());
+    }
+
+    @Test
+    public void removedAndReplacedEmailsAreCountedAsStale() {
+        System.setProperty("stale.emailFilter.expectedInsertions", "20");
+        EmailBloomFilter filter = EmailBloomFilter.fromSystemProperties("stale");
+        load(filter, "first@example.com");
+
+        filter.replace("first@example.com"); //unchanged, nothing is replaced
+        assertEquals(0L, filter.getStatistics().get("staleCount"));
+
+        filter.replace("second@example.com"); //replaces an email the filter still holds
+        assertEquals(1L, filter.getStatistics().get("staleCount"));
+        assertFalse("A tenth of the capacity should be stale before a rebuild is due", filter.needsRebuild());
+
+        filter.remove("second@example.com");
+        filter.remove("first@example.com");
+        assertEquals(3L, filter.getStatistics().get("staleCount"));
+        assertTrue(filter.needsRebuild());
+
+        load(filter);
+        assertEquals(0L, filter.getStatistics().get("staleCount"));
+        assertFalse(filter.needsRebuild());
+    }
+
+    @Test
+    public void growingPastTheCapacityMakesARebuildDue() {
+        System.setProperty("growing.emailFilter.expectedInsertions", "10");
+        EmailBloomFilter filter = EmailBloomFilter.fromSystemProperties("growing");
+        load(filter);
+
+        for (int i = 0; i < 10; i++) {
+            settle(filter, "growing" + i + "@example.com");
+        }
+        assertFalse(filter.needsRebuild());
+
+        settle(filter, "growing10@example.com");
+        assertTrue(filter.needsRebuild());
+    }
+
+    @Test
+    public void disabledFiltersAreNeverLoaded() {
+        System.setProperty("disabled.emailFilter.enabled", "false");
+        EmailBloomFilter filter = EmailBloomFilter.fromSystemProperties("disabled");
+        assertFalse(filter.needsRebuild());
+        assertTrue(filter.mightContain("nobody@example.com"));
+    }
+
+    private static void settle(EmailBloomFilter filter, String email) {
+        filter.add(email);
+        filter.settle(email);
+    }
+
+    private static void load(EmailBloomFilter filter, String... emails) {
+        filter.beginRebuild();
+        filter.load(Arrays.asList(emails));
+        filter.finishRebuild();
+    }
+}
@@ -0,0 +1,143 @@
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * <p>Sends requests to a deployment over HTTP, for the tests that run as a client to check what the servlet filters in
+ * front of the REST endpoints do.</p>
+ *
+ * <p>Nothing is added to the requests, in particular no <code>Accept-Encoding</code>, and the responses are returned
+ * as they were received.</p>
+ */
+public final class HttpTestClient {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final URL base;
+
+    /**
+     * @param base The URL of the deployment, as injected with <code>@ArquillianResource</code>
+     */
+    public HttpTestClient(URL base) {
+        this.base = base;
+    }
+
+    /**
+     * @param path The path of the resource, relative to the deployment, such as <code>api/flights</code>
+     * @param headers The names and values of the request headers, in turn
+     */
+    public Exchange get(String path, String... headers) throws IOException {
+        return send("GET", path, null, headers);
+    }
+
+    /**
+     * @param method The HTTP method
+     * @param path The path of the resource, relative to the deployment
+     * @param json The JSON body of the request, or null
+     * @param headers The names and values of the request headers, in turn
+     */
+    public Exchange send(String method, String path, String json, String... headers) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(base, path).openConnection();
+        try {
+            connection.setRequestMethod(method);
+            connection.setInstanceFollowRedirects(false);
+            for (int i = 0; i < headers.length; i += 2) {
+                connection.addRequestProperty(headers[i], headers[i + 1]);
+            }
+
+            if (json != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                OutputStream out = connection.getOutputStream();
+                try {
+                    out.write(json.getBytes(UTF_8));
+                } finally {
+                    out.close();
+                }
+            }
+
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            return new Exchange(status, connection.getHeaderFields(), in == null ? new byte[0] : read(in));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * <p>The status, headers and body of a response.</p>
+     */
+    public static final class Exchange {
+
+        private final int status;
+        private final Map<String, List<String>> headers;
+        private final byte[] body;
+
+        Exchange(int status, Map<String, List<String>> headers, byte[] body) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * @return The first value of the header, or null if the response does not have it
+         */
+        public String getHeader(String name) {
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                    return header.getValue().get(0);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return The body as it was received
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * @return The body as text, decoded with the content coding of the response first, if it has one
+         */
+        public String getText() throws IOException {
+            String coding = getHeader("Content-Encoding");
+            if (coding == null) {
+                return new String(body, UTF_8);
+            }
+            InputStream decoded = coding.equals("gzip")
+                    ? new GZIPInputStream(new ByteArrayInputStream(body))
+                    : new InflaterInputStream(new ByteArrayInputStream(body));
+            return new String(read(decoded), UTF_8);
+        }
+    }
+}
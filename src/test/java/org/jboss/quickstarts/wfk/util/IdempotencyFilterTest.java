@@ -0,0 +1,155 @@
+package org.jboss.quickstarts.wfk.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.net.URL;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+import org.hibernate.Session;
+import org.hibernate.stat.Statistics;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.arquillian.test.api.ArquillianResource;
+import org.jboss.quickstarts.wfk.customer.FlakyCustomerService;
+import org.jboss.quickstarts.wfk.util.HttpTestClient.Exchange;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * <p>Checks over HTTP that the {@link IdempotencyFilter} replays the response of a request to its retries without
+ * touching the database, rejects a key reused for another request, gives up on a request still running after
+ * <code>api.idempotency.wait</code>, and runs a request again after a server error.</p>
+ *
+ * <p>The tests run in the container, posting to it, so that they can look at the {@link IdempotencyStore} and at the
+ * Hibernate statistics in between.</p>
+ */
+@RunWith(Arquillian.class)
+public class IdempotencyFilterTest {
+
+    private static final long WAIT = 10000; //the default api.idempotency.wait
+
+    @Deployment
+    public static Archive<?> createTestArchive() { //contains all necessary external dependencies to run the tests
+        File[] libs = Maven.resolver().loadPomFromFile("pom.xml").resolve(
+                "org.codehaus.jackson:jackson-core-asl:1.9.9",
+                "org.codehaus.jackson:jackson-mapper-asl:1.9.9",
+                "org.codehaus.jackson:jackson-jaxrs:1.9.9",
+                "com.google.guava:guava:16.0"
+        ).withTransitivity().asFile();
+
+        Archive<?> archive = ShrinkWrap
+                .create(WebArchive.class, "test.war")
+                .addPackages(true, "org.jboss.quickstarts.wfk")
+                .addAsLibraries(libs)
+                .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
+                .addAsWebInfResource("arquillian-ds.xml")
+                .addAsWebInfResource(new File("src/main/webapp/WEB-INF/jboss-deployment-structure.xml"), "jboss-deployment-structure.xml")
+                .addAsWebResource(new File("src/main/webapp/health.jsp"))
+                .setWebXML(new File("src/main/webapp/WEB-INF/web.xml")) //maps the filters
+                .addAsWebInfResource(new StringAsset("<beans><alternatives><class>" + FlakyCustomerService.class.getName()
+                        + "</class></alternatives></beans>"), "beans.xml"); //fails the first create of a flaky customer
+
+        return archive;
+    }
+
+    @ArquillianResource
+    URL deployment;
+
+    @Inject
+    IdempotencyStore store;
+
+    @Inject
+    EntityManager em;
+
+    @Test
+    public void retriesAreReplayedWithoutTouchingTheDatabase() throws Exception {
+        HttpTestClient client = new HttpTestClient(deployment);
+        String customer = customer("replayed@example.com");
+
+        Exchange created = client.send("POST", "api/customers", customer, IdempotencyFilter.KEY_HEADER, "replayed");
+        assertEquals(201, created.getStatus());
+        assertNull(created.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+
+        Statistics statistics = em.unwrap(Session.class).getSessionFactory().getStatistics();
+        long statements = statistics.getPrepareStatementCount();
+
+        Exchange replayed = client.send("POST", "api/customers", customer, IdempotencyFilter.KEY_HEADER, "replayed");
+        assertEquals(201, replayed.getStatus());
+        assertEquals("true", replayed.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(created.getHeader("Content-Type"), replayed.getHeader("Content-Type"));
+        assertNotNull(replayed.getHeader("Content-Type"));
+        assertEquals(created.getHeader("ETag"), replayed.getHeader("ETag"));
+        assertNotNull(replayed.getHeader("ETag"));
+        assertEquals(created.getText(), replayed.getText());
+        assertEquals("The replay should not touch the database", statements, statistics.getPrepareStatementCount());
+
+        // Without the key the same request runs, and the email is already in use
+        assertEquals(409, client.send("POST", "api/customers", customer).getStatus());
+    }
+
+    @Test
+    public void keysReusedForAnotherRequestAreRejected() throws Exception {
+        HttpTestClient client = new HttpTestClient(deployment);
+
+        Exchange created = client.send("POST", "api/customers", customer("reused@example.com"),
+                IdempotencyFilter.KEY_HEADER, "reused");
+        assertEquals(201, created.getStatus());
+
+        Exchange reused = client.send("POST", "api/customers", customer("another@example.com"),
+                IdempotencyFilter.KEY_HEADER, "reused");
+        assertEquals(422, reused.getStatus());
+        assertNull(reused.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    public void retriesGiveUpOnARequestStillRunning() throws Exception {
+        String customer = customer("running@example.com");
+        String key = new URL(deployment, "api/customers").getPath() + " running";
+        IdempotentRequest running = new IdempotentRequest(Hashing.sha256().hashBytes(customer.getBytes("UTF-8")).toString());
+        assertNull(store.claim(key, running)); //stands in for a first request which never completes
+
+        try {
+            long start = System.currentTimeMillis();
+            Exchange retry = new HttpTestClient(deployment).send("POST", "api/customers", customer,
+                    IdempotencyFilter.KEY_HEADER, "running");
+            assertEquals(409, retry.getStatus());
+            assertTrue("The retry should wait for the first request first", System.currentTimeMillis() - start >= WAIT);
+        } finally {
+            store.release(key, running);
+            running.abandon();
+        }
+    }
+
+    @Test
+    public void serverErrorsAreRunAgain() throws Exception {
+        HttpTestClient client = new HttpTestClient(deployment);
+        String customer = customer("flaky@example.com");
+
+        Exchange failed = client.send("POST", "api/customers", customer, IdempotencyFilter.KEY_HEADER, "flaky");
+        assertEquals(500, failed.getStatus());
+
+        Exchange retried = client.send("POST", "api/customers", customer, IdempotencyFilter.KEY_HEADER, "flaky");
+        assertEquals("The retry should run the request again", 201, retried.getStatus());
+        assertNull(retried.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+
+        // and its response is the one kept
+        Exchange replayed = client.send("POST", "api/customers", customer, IdempotencyFilter.KEY_HEADER, "flaky");
+        assertEquals(201, replayed.getStatus());
+        assertEquals("true", replayed.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(retried.getText(), replayed.getText());
+    }
+
+    private static String customer(String email) {
+        return "{\"name\":\"Georgios Rovolis\",\"email\":\"" + email + "\",\"phoneNumber\":\"07871545186\"}";
+    }
+}
@@ -0,0 +1,139 @@
+package org.jboss.quickstarts.wfk.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * <p>Checks that the {@link IdempotencyStore} replays the response of a request to its retries, including those made
+ * while it is still running, and lets a failed request be run again, and that requests still running are never
+ * evicted.</p>
+ */
+@RunWith(Arquillian.class)
+public class IdempotencyStoreTest {
+
+    @Deployment
+    public static Archive<?> createTestArchive() { //contains all necessary external dependencies to run the tests
+        File[] libs = Maven.resolver().loadPomFromFile("pom.xml").resolve(
+                "org.codehaus.jackson:jackson-core-asl:1.9.9",
+                "org.codehaus.jackson:jackson-mapper-asl:1.9.9",
+                "org.codehaus.jackson:jackson-jaxrs:1.9.9",
+                "com.google.guava:guava:16.0"
+        ).withTransitivity().asFile();
+
+        Archive<?> archive = ShrinkWrap
+                .create(WebArchive.class, "test.war")
+                .addPackages(true, "org.jboss.quickstarts.wfk")
+                .addAsLibraries(libs)
+                .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
+                .addAsWebInfResource("arquillian-ds.xml")
+                .addAsWebInfResource(new File("src/main/webapp/WEB-INF/jboss-deployment-structure.xml"), "jboss-deployment-structure.xml")
+                .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml");
+
+        return archive;
+    }
+
+    @Inject
+    IdempotencyStore store;
+
+    @Test
+    public void retriesAreAnsweredWithTheKeptResponse() throws Exception {
+        IdempotentRequest first = new IdempotentRequest("fingerprint");
+        assertNull(store.claim("/api/customers retried", first));
+
+        first.complete(201, Collections.singletonMap("Content-Type", "application/json"),
+                "{\"id\":1}".getBytes("UTF-8"));
+        store.complete("/api/customers retried", first);
+
+        IdempotentRequest retry = store.claim("/api/customers retried", new IdempotentRequest("fingerprint"));
+        assertSame(first, retry);
+        assertTrue(retry.await(0));
+        assertTrue(retry.hasResponse());
+        assertEquals(201, retry.getStatus());
+        assertEquals("{\"id\":1}", new String(retry.getBody(), "UTF-8"));
+    }
+
+    @Test
+    public void concurrentRetriesWaitForTheFirstRequest() throws Exception {
+        final IdempotentRequest first = new IdempotentRequest("fingerprint");
+        assertNull(store.claim("/api/bookings concurrent", first));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<IdempotentRequest> retry = executor.submit(new Callable<IdempotentRequest>() {
+                @Override
+                public IdempotentRequest call() throws Exception {
+                    IdempotentRequest previous = store.claim("/api/bookings concurrent",
+                            new IdempotentRequest("fingerprint"));
+                    return previous.await(10000) ? previous : null;
+                }
+            });
+
+            Thread.sleep(200);
+            assertFalse("The retry should wait for the first request", retry.isDone());
+
+            first.complete(409, Collections.<String, String>emptyMap(), new byte[0]);
+            store.complete("/api/bookings concurrent", first);
+            IdempotentRequest replayed = retry.get(10, TimeUnit.SECONDS);
+            assertSame(first, replayed);
+            assertEquals(409, replayed.getStatus());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void releasedKeysAreClaimedAgain() {
+        IdempotentRequest failed = new IdempotentRequest("fingerprint");
+        assertNull(store.claim("/api/guestbookings released", failed));
+        store.release("/api/guestbookings released", failed);
+        failed.abandon();
+
+        assertNull(store.claim("/api/guestbookings released", new IdempotentRequest("fingerprint")));
+    }
+
+    @Test
+    public void runningRequestsAreNotEvicted() {
+        InMemoryIdempotencyStore small;
+        System.setProperty("api.idempotency.maxKeys", "1");
+        try {
+            small = new InMemoryIdempotencyStore();
+        } finally {
+            System.clearProperty("api.idempotency.maxKeys");
+        }
+
+        IdempotentRequest running = new IdempotentRequest("fingerprint");
+        assertNull(small.claim("/api/bookings running", running));
+        for (int i = 0; i < 10; i++) {
+            IdempotentRequest other = new IdempotentRequest("fingerprint");
+            assertNull(small.claim("/api/bookings other" + i, other));
+            other.complete(201, Collections.<String, String>emptyMap(), new byte[0]);
+            small.complete("/api/bookings other" + i, other);
+        }
+
+        assertSame("A retry should wait for the running request rather than run it again", running,
+                small.claim("/api/bookings running", new IdempotentRequest("fingerprint")));
+
+        running.complete(201, Collections.<String, String>emptyMap(), new byte[0]);
+        small.complete("/api/bookings running", running);
+        assertSame(running, small.claim("/api/bookings running", new IdempotentRequest("fingerprint")));
+    }
+}
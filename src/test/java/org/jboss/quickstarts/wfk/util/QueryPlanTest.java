@@ -0,0 +1,156 @@
+package org.jboss.quickstarts.wfk.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.sql.DataSource;
+
+import org.hibernate.Filter;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.booking.BookingRestService;
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.jboss.quickstarts.wfk.contact.ContactRestService;
+import org.jboss.quickstarts.wfk.customer.Customer;
+import org.jboss.quickstarts.wfk.customer.CustomerRestService;
+import org.jboss.quickstarts.wfk.flight.Flight;
+import org.jboss.quickstarts.wfk.flight.FlightRestService;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * <p>Runs EXPLAIN on H2 for every query the repositories issue, and fails if any of them reads a whole table.</p>
+ *
+ * <p>The named queries are read from the entities. The Criteria queries are collected from the Hibernate statistics
+ * after the endpoints that build them have been called. Every query is translated to SQL by Hibernate, so the plan is
+ * that of the statement that actually runs.</p>
+ */
+@RunWith(Arquillian.class)
+public class QueryPlanTest {
+
+    /** The marker H2 puts in a plan for a table that is read in full, without an index. */
+    private static final String TABLE_SCAN = ".tableScan";
+
+    private static final Class<?>[] ENTITIES = { Booking.class, Contact.class, Customer.class, Flight.class };
+
+    @Deployment
+    public static Archive<?> createTestArchive() { //contains all necessary external dependencies to run the tests
+        File[] libs = Maven.resolver().loadPomFromFile("pom.xml").resolve(
+                "org.codehaus.jackson:jackson-core-asl:1.9.9",
+                "org.codehaus.jackson:jackson-mapper-asl:1.9.9",
+                "org.codehaus.jackson:jackson-jaxrs:1.9.9",
+                "com.google.guava:guava:16.0"
+        ).withTransitivity().asFile();
+
+        Archive<?> archive = ShrinkWrap
+                .create(WebArchive.class, "test.war")
+                .addPackages(true, "org.jboss.quickstarts.wfk")
+                .addAsLibraries(libs)
+                .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
+                .addAsWebInfResource("arquillian-ds.xml")
+                .addAsWebInfResource(new File("src/main/webapp/WEB-INF/jboss-deployment-structure.xml"), "jboss-deployment-structure.xml")
+                .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml");
+
+        return archive;
+    }
+
+    @Inject
+    EntityManager em;
+
+    @Resource(lookup = "java:jboss/datasources/JbossContactsMobileBasicTestDS")
+    DataSource dataSource;
+
+    @Inject
+    ContactRestService contactRestService;
+
+    @Inject
+    CustomerRestService customerRestService;
+
+    @Inject
+    FlightRestService flightRestService;
+
+    @Inject
+    BookingRestService bookingRestService;
+
+    @Test
+    public void noQueryScansATable() throws SQLException {
+        // Runs the Criteria queries, and the named queries once more, so that the statistics record them
+        contactRestService.retrieveAllContacts("John", null, null, null);
+        contactRestService.retrieveAllContacts(null, "Smith", null, null);
+        contactRestService.retrieveAllContacts("John", "Smith", null, null);
+        contactRestService.retrieveAllContacts(null, null, null, null);
+        customerRestService.getAllCustomers(null, null, false);
+        flightRestService.getAllFlights(null, null, null);
+        bookingRestService.getAllBookings(null, null, null, false);
+        bookingRestService.getAllBookings(1L, null, null, false);
+
+        Map<String, String> queries = new TreeMap<>(); //HQL to where it comes from
+        for (Class<?> entity : ENTITIES) {
+            for (NamedQuery query : entity.getAnnotation(NamedQueries.class).value()) {
+                queries.put(query.query(), query.name());
+            }
+        }
+        SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor) em.unwrap(Session.class).getSessionFactory();
+        for (String query : sessionFactory.getStatistics().getQueries()) {
+            if (!queries.containsKey(query)) {
+                queries.put(query, "Criteria query");
+            }
+        }
+
+        List<String> scans = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            for (Map.Entry<String, String> query : queries.entrySet()) {
+                String[] statements = sessionFactory.getQueryPlanCache()
+                        .getHQLQueryPlan(query.getKey(), false, Collections.<String, Filter>emptyMap()).getSqlStrings();
+
+                for (String sql : statements) {
+                    String plan = explain(connection, sql);
+                    if (plan.contains(TABLE_SCAN)) {
+                        scans.add(query.getValue() + ": " + plan);
+                    }
+                }
+            }
+        }
+
+        assertTrue("Queries without a usable index:\n" + scans, scans.isEmpty());
+        assertTrue("Expected the named queries of " + Arrays.toString(ENTITIES), queries.size() > ENTITIES.length);
+    }
+
+    private static String explain(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            // The plan is made when the statement is prepared, the values do not matter
+            for (int i = 1; i <= statement.getParameterMetaData().getParameterCount(); i++) {
+                statement.setNull(i, Types.VARCHAR);
+            }
+            try (ResultSet result = statement.executeQuery()) {
+                result.next();
+                return result.getString(1);
+            }
+        }
+    }
+}